@@ -8,11 +8,13 @@ import java.util.List;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import spring.jpa.model.*;
 import spring.jpa.repository.*;
 
 @SpringBootApplication
+@EnableScheduling // report artifact retention
 public class JpaSpringBootThymeleafApplication {
 
     // Repositories
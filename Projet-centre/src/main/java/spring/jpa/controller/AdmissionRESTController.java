@@ -0,0 +1,79 @@
+package spring.jpa.controller;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import spring.jpa.service.AdmissionQueue;
+
+/**
+ * Tickets of the enrollment admission queue (see AdmissionQueue): the
+ * queued endpoints answer 202 with a ticket, polled here until it holds the
+ * answer the endpoint would have given. Users only see their own tickets;
+ * admins see all of them.
+ */
+@RestController
+@RequestMapping("/admissions")
+public class AdmissionRESTController {
+
+    @Autowired
+    private AdmissionQueue admissionQueue;
+
+    @GetMapping("/{ticket}")
+    public ResponseEntity<?> status(@PathVariable String ticket, Principal principal) {
+        if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        AdmissionQueue.Ticket t = admissionQueue.get(ticket);
+        if (t == null || !(isAdmin() || principal.getName().equals(t.getProprietaire()))) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        Map<String, Object> body = view(t, admissionQueue.position(t));
+        AdmissionQueue.Resultat resultat = t.getResultat();
+        if (resultat != null) {
+            body.put("code", resultat.code());
+            body.put("resultat", resultat.corps());
+        }
+        body.put("termineLe", t.getTermineLe());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Answer of a queued endpoint: 202 with the ticket and its position, or
+     * 429 with Retry-After when the queue is full (ticket null).
+     */
+    static ResponseEntity<?> admitted(AdmissionQueue queue, AdmissionQueue.Ticket ticket) {
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(queue.getRetryAfterSeconds()))
+                .body(Map.of("message", "Trop de demandes en attente, reessayez plus tard."));
+        }
+        return ResponseEntity.accepted()
+            .header(HttpHeaders.LOCATION, "/admissions/" + ticket.getId())
+            .body(view(ticket, queue.position(ticket)));
+    }
+
+    private static Map<String, Object> view(AdmissionQueue.Ticket t, Long position) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ticket", t.getId());
+        body.put("type", t.getType());
+        body.put("statut", t.getStatut());
+        if (position != null) body.put("position", position);
+        body.put("creeLe", t.getCreeLe());
+        return body;
+    }
+
+    private boolean isAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities() == null) return false;
+        return auth.getAuthorities().stream().anyMatch(a ->
+            "ROLE_ADMIN".equalsIgnoreCase(a.getAuthority()) || "ADMIN".equalsIgnoreCase(a.getAuthority())
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package spring.jpa.controller;
 
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -16,7 +17,12 @@ import spring.jpa.model.Formateur;
 import spring.jpa.model.User;
 import spring.jpa.repository.CoursRepository;
 import spring.jpa.repository.FormateurRepository;
+import spring.jpa.repository.InscriptionRepository;
 import spring.jpa.repository.UserRepository;
+import spring.jpa.service.GradeStatsService;
+import spring.jpa.service.MembershipIndex;
+import spring.jpa.service.ReportCubeService;
+import spring.jpa.service.GradingEngine;
 
 @RestController
 @RequestMapping("/cours")
@@ -31,6 +37,21 @@ public class CoursRESTController {
     @Autowired 
     private UserRepository userRepository;
 
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private GradingEngine gradingEngine;
+
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
+    @Autowired
+    private ReportCubeService reportCubeService;
+
+    @Autowired
+    private MembershipIndex membershipIndex;
+
     // POST /cours/ - CREATE (Already exists, but adding comments)
     @PostMapping(
         value = "/",
@@ -83,6 +104,15 @@ public class CoursRESTController {
                 // existingCours.setCode(updatedCours.getCode()); 
                 existingCours.setTitre(updatedCours.getTitre());
                 existingCours.setActif(updatedCours.isActif());
+                double[] oldWeights = gradingEngine.weights(existingCours);
+                double oldCredits = gradingEngine.credits(existingCours);
+                // Grading scheme and credits are only changed when sent
+                if (updatedCours.getBareme() != null) {
+                    existingCours.setBareme(updatedCours.getBareme());
+                }
+                if (updatedCours.getCredits() != null) {
+                    existingCours.setCredits(updatedCours.getCredits());
+                }
                 
                 // Handle Formateur assignment/reassignment
                 if (updatedCours.getFormateur() != null && updatedCours.getFormateur().getId() != null) {
@@ -95,6 +125,13 @@ public class CoursRESTController {
                 }
                 
                 Cours savedCours = coursRepository.save(existingCours);
+                // Every average of the course changes with its scheme: its row,
+                // its students' rows and its cells are recomputed
+                if (!Arrays.equals(oldWeights, gradingEngine.weights(savedCours))
+                        || oldCredits != gradingEngine.credits(savedCours)) {
+                    gradeStatsService.refresh(List.of(code), inscriptionRepository.findEtudiantIdsByCours(code));
+                    reportCubeService.rebuildCours(code);
+                }
                 return new ResponseEntity<>(savedCours, HttpStatus.OK);
             })
             .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
@@ -105,7 +142,11 @@ public class CoursRESTController {
     @Transactional // Ensures cascading deletes (if any) are handled
     public ResponseEntity<Void> deleteCours(@PathVariable String code) {
         if (coursRepository.existsById(code)) {
+            List<Long> etudiants = inscriptionRepository.findEtudiantIdsByCours(code);
             coursRepository.deleteById(code);
+            gradeStatsService.coursDeleted(code, etudiants);
+            reportCubeService.coursDeleted(code);
+            membershipIndex.coursDeleted(code);
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -1,6 +1,7 @@
 package spring.jpa.controller;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -24,6 +25,10 @@ import spring.jpa.repository.GroupeRepository;
 import spring.jpa.repository.InscriptionRepository;
 import spring.jpa.repository.NoteRepository;
 import spring.jpa.repository.UserRepository; 
+import spring.jpa.service.GradeStatsService;
+import spring.jpa.service.GroupePlacesService;
+import spring.jpa.service.MembershipIndex;
+import spring.jpa.service.ReportCubeService;
 
 @RestController
 @RequestMapping("/etudiants") 
@@ -47,6 +52,18 @@ public class EtudiantRESTController {
     @Autowired // <-- NEW INJECTION
     private NoteRepository noteRepository;
 
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
+    @Autowired
+    private ReportCubeService reportCubeService;
+
+    @Autowired
+    private MembershipIndex membershipIndex;
+
+    @Autowired
+    private GroupePlacesService groupePlacesService;
+
     // Helper method to generate a unique Matricule (similar to AuthRestController)
     private String generateMatricule() {
         int year = 2026; 
@@ -187,14 +204,19 @@ public class EtudiantRESTController {
         User user = etudiant.getUser(); 
 
         // --- 0. REMOVE FROM GROUPES (JOIN TABLE CLEANUP) ---
+        List<Long> formerGroupes = new ArrayList<>();
         if (etudiant.getGroupes() != null && !etudiant.getGroupes().isEmpty()) {
             for (Groupe groupe : new java.util.HashSet<>(etudiant.getGroupes())) {
                 groupe.getEtudiants().remove(etudiant);
                 groupeRepository.save(groupe);
+                formerGroupes.add(groupe.getId());
             }
             etudiant.getGroupes().clear();
         }
         
+        // Withdraw the student from the grade summaries while notes still exist
+        gradeStatsService.etudiantDeleted(etudiant);
+
         // --- 1. CLEAN UP CHILD DEPENDENCIES (Notes FIRST) ---
         // Must be done before deleting the Etudiant, which is their parent.
         try {
@@ -223,6 +245,15 @@ public class EtudiantRESTController {
         
         // --- 4. DELETE THE ETUDIANT ---
         etudiantRepository.delete(etudiant);
+        membershipIndex.etudiantDeleted(etudiantId);
+
+        // The reporting cells of their groupes no longer include them
+        for (Long groupeId : formerGroupes) {
+            reportCubeService.rebuildGroupe(groupeId);
+            // Their seat goes to the next in line
+            groupePlacesService.membershipChanged(groupeId);
+        }
+        groupePlacesService.etudiantDeleted(etudiantId);
         
         return new ResponseEntity<>(HttpStatus.NO_CONTENT); // 204 Success
     }
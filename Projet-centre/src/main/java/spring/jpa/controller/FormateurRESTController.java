@@ -4,6 +4,8 @@ import java.security.Principal;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +19,7 @@ import spring.jpa.model.Groupe;
 import spring.jpa.model.Seance;
 import spring.jpa.model.User;
 import spring.jpa.dto.FormateurProfileUpdateRequest;
+import spring.jpa.dto.Paging;
 import spring.jpa.repository.CoursRepository;
 import spring.jpa.repository.GroupeRepository;
 import spring.jpa.repository.SeanceRepository;
@@ -108,24 +111,26 @@ public class FormateurRESTController {
     }
 
     @GetMapping("/me/seances")
-    public ResponseEntity<List<Seance>> getMySeances(Principal principal) {
+    public ResponseEntity<List<Seance>> getMySeances(
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "size", required = false) Integer size,
+            Principal principal) {
         User user = requireFormateur(principal);
         if (user == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
-        List<Cours> cours = coursRepository.findByFormateur(user.getFormateur());
-        List<Seance> seances = seanceRepository.findAll().stream()
-            .filter(s -> s.getCours() != null && cours.contains(s.getCours()))
-            .toList();
+        Pageable pageable = Paging.of(page, size, Sort.by("dateSeance", "heureDebut"));
+        List<Seance> seances = seanceRepository.findByCours_Formateur(user.getFormateur(), pageable).getContent();
         return ResponseEntity.ok(seances);
     }
 
     @GetMapping("/me/groupes")
-    public ResponseEntity<List<Groupe>> getMyGroupes(Principal principal) {
+    public ResponseEntity<List<Groupe>> getMyGroupes(
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "size", required = false) Integer size,
+            Principal principal) {
         User user = requireFormateur(principal);
         if (user == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
-        List<Cours> cours = coursRepository.findByFormateur(user.getFormateur());
-        List<Groupe> groupes = groupeRepository.findAll().stream()
-            .filter(g -> g.getCours() != null && g.getCours().stream().anyMatch(cours::contains))
-            .toList();
+        Pageable pageable = Paging.of(page, size, Sort.by("nom"));
+        List<Groupe> groupes = groupeRepository.findByCoursFormateur(user.getFormateur(), pageable).getContent();
         return ResponseEntity.ok(groupes);
     }
     
@@ -1,8 +1,9 @@
 package spring.jpa.controller;
 
-import java.util.Date;
-import java.util.HashMap;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -10,24 +11,30 @@ import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import spring.jpa.dto.GroupeRequest;
+import spring.jpa.dto.PartitionRequest;
 import spring.jpa.model.Cours;
 import spring.jpa.model.Etudiant;
 import spring.jpa.model.Groupe;
-import spring.jpa.model.Inscription;
-import spring.jpa.model.Note;
+import spring.jpa.model.GroupeSyncJob;
 import spring.jpa.model.SessionPedagogique;
 import spring.jpa.model.Specialite;
+import spring.jpa.model.User;
 import spring.jpa.repository.CoursRepository;
 import spring.jpa.repository.EtudiantRepository;
 import spring.jpa.repository.GroupeRepository;
-import spring.jpa.repository.InscriptionRepository;
-import spring.jpa.repository.NoteRepository;
 import spring.jpa.repository.SessionPedagogiqueRepository;
 import spring.jpa.repository.SpecialiteRepository;
-import spring.jpa.service.MailService;
+import spring.jpa.repository.UserRepository;
+import spring.jpa.service.AdmissionQueue;
+import spring.jpa.service.DataVersionListener;
+import spring.jpa.service.GroupePartitionService;
+import spring.jpa.service.GroupePlacesService;
+import spring.jpa.service.GroupeSyncService;
+import spring.jpa.service.MembershipIndex;
 
 @RestController
 @RequestMapping("/groupes")
@@ -49,14 +56,32 @@ public class GroupeRESTController {
     private EtudiantRepository etudiantRepository;
     
     @Autowired
-    private InscriptionRepository inscriptionRepository;
-    
+    private GroupeSyncService groupeSyncService;
+
     @Autowired
-    private NoteRepository noteRepository;
-    
+    private DataVersionListener dataVersionListener;
+
+    @Autowired
+    private MembershipIndex membershipIndex;
+
+    @Autowired
+    private GroupePlacesService groupePlacesService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdmissionQueue admissionQueue;
+
     @Autowired
-    private MailService mailService;
+    private GroupePartitionService groupePartitionService;
 
+    // Where to poll the inscription sync started by a write
+    public static final String SYNC_JOB_HEADER = "X-Sync-Job";
+
+    // Ids per join-table statement of the membership endpoints
+    private static final int MEMBERSHIP_CHUNK = 1000;
+    
     @GetMapping("/")
     public List<Groupe> getAll() {
         return groupeRepository.findAll();
@@ -70,46 +95,371 @@ public class GroupeRESTController {
     }
 
     @PostMapping("/")
+    @Transactional
     public ResponseEntity<?> create(@RequestBody GroupeRequest request) {
+        if (request.getCapacite() != null && request.getCapacite() < 0) return invalidCapacite();
         Groupe g = new Groupe();
         g.setNom(request.getNom());
         applyLinks(g, request);
         applyStudents(g, request);
         Groupe saved = groupeRepository.save(g);
-        syncInscriptionsForStudents(saved.getEtudiants());
-        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+        membershipIndex.groupeChanged(saved.getId());
+        groupePlacesService.membershipChanged(saved.getId());
+        GroupeSyncJob job = groupeSyncService.enqueue(saved.getId(), Set.of(), Set.of());
+        return ResponseEntity.status(HttpStatus.CREATED).header(SYNC_JOB_HEADER, syncJobUrl(job)).body(saved);
     }
 
     @PutMapping("/{id}")
+    @Transactional
     public ResponseEntity<?> update(@PathVariable Long id, @RequestBody GroupeRequest request) {
+        if (request.getCapacite() != null && request.getCapacite() < 0) return invalidCapacite();
         return groupeRepository.findById(id)
             .map(existing -> {
                 Set<Etudiant> oldStudents = new HashSet<>(existing.getEtudiants());
+                Set<Cours> oldCours = new HashSet<>(existing.getCours());
                 existing.setNom(request.getNom());
                 applyLinks(existing, request);
                 applyStudents(existing, request);
                 Groupe saved = groupeRepository.save(existing);
-                Set<Etudiant> affected = new HashSet<>(oldStudents);
-                affected.addAll(saved.getEtudiants());
-                syncInscriptionsForStudents(affected);
-                return new ResponseEntity<>(saved, HttpStatus.OK);
+                membershipIndex.groupeChanged(saved.getId());
+                // Admin edits ignore the capacity; a larger one promotes from the waitlist
+                groupePlacesService.membershipChanged(saved.getId());
+                // Inscriptions and report cells follow in the background
+                GroupeSyncJob job = groupeSyncService.enqueue(saved.getId(), oldStudents, oldCours);
+                return ResponseEntity.ok().header(SYNC_JOB_HEADER, syncJobUrl(job)).body((Object) saved);
             })
             .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         Groupe group = groupeRepository.findById(id).orElse(null);
         if (group != null) {
-            Set<Etudiant> affected = new HashSet<>(group.getEtudiants());
+            Set<Etudiant> oldStudents = new HashSet<>(group.getEtudiants());
+            Set<Cours> oldCours = new HashSet<>(group.getCours());
             groupeRepository.delete(group);
-            syncInscriptionsForStudents(affected);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            membershipIndex.groupeChanged(id);
+            groupePlacesService.groupeDeleted(id);
+            GroupeSyncJob job = groupeSyncService.enqueue(id, oldStudents, oldCours);
+            return ResponseEntity.noContent().header(SYNC_JOB_HEADER, syncJobUrl(job)).build();
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Splits the students of a specialite who have no groupe in the session
+     * into new groupes (see GroupePartitionService): 201 with the groupes and
+     * their sync jobs, or 200 with the plan alone for a dry run.
+     */
+    @PostMapping("/partition")
+    public ResponseEntity<?> partition(@RequestBody PartitionRequest request) {
+        if (request.getSessionId() == null || request.getSpecialiteId() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "La session et la specialite sont obligatoires."));
+        }
+        SessionPedagogique session = sessionRepository.findById(request.getSessionId()).orElse(null);
+        Specialite specialite = specialiteRepository.findById(request.getSpecialiteId()).orElse(null);
+        if (session == null || specialite == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        List<GroupePartitionService.Lot> lots;
+        try {
+            lots = groupePartitionService.partitionner(session, specialite, request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        List<Map<String, Object>> groupes = new ArrayList<>();
+        int etudiants = 0;
+        Double min = null;
+        Double max = null;
+        for (GroupePartitionService.Lot lot : lots) {
+            Map<String, Object> g = new LinkedHashMap<>();
+            if (lot.getId() != null) g.put("id", lot.getId());
+            g.put("nom", lot.getNom());
+            g.put("effectif", lot.getMembres().size());
+            g.put("moyenne", lot.getMoyenne());
+            g.put("etudiants", lot.getMembres());
+            if (lot.getJob() != null) g.put("syncJob", lot.getJob().getId());
+            groupes.add(g);
+            etudiants += lot.getMembres().size();
+            if (lot.getMoyenne() != null) {
+                min = min == null ? lot.getMoyenne() : Math.min(min, lot.getMoyenne());
+                max = max == null ? lot.getMoyenne() : Math.max(max, lot.getMoyenne());
+            }
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("dryRun", request.isDryRun());
+        body.put("etudiants", etudiants);
+        body.put("groupes", groupes);
+        // Spread between the strongest and the weakest groupe average
+        body.put("ecartMoyennes", min == null ? null : max - min);
+        return ResponseEntity.status(request.isDryRun() ? HttpStatus.OK : HttpStatus.CREATED).body(body);
+    }
+
+    /**
+     * Adds students to the groupe without rewriting its membership: one
+     * insert per batch of ids, then a sync job for these students only.
+     * Unknown ids and current members are ignored.
+     */
+    @PostMapping("/{id}/etudiants")
+    @Transactional
+    public ResponseEntity<?> addEtudiants(@PathVariable Long id, @RequestBody List<Long> etudiantIds) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Set<Long> cibles = new HashSet<>();
+        int added = 0;
+        for (List<Long> chunk : chunks(distinct(etudiantIds))) {
+            Set<Long> targets = new HashSet<>(chunk);
+            groupeRepository.findEtudiantIdsIn(id, chunk).forEach(targets::remove);
+            if (targets.isEmpty()) continue;
+            added += groupeRepository.addEtudiants(id, targets);
+            cibles.addAll(targets);
+        }
+        GroupeSyncJob job = null;
+        if (added > 0) {
+            dataVersionListener.touched(Groupe.class);
+            // Unknown ids were skipped by the insert: reload rather than guess which
+            if (added == cibles.size()) membershipIndex.etudiantsAdded(id, cibles);
+            else membershipIndex.groupeChanged(id);
+            groupePlacesService.membershipChanged(id);
+            job = groupeSyncService.enqueueEtudiants(id, cibles, Set.of(), new HashSet<>(groupeRepository.findCoursCodes(id)));
+        }
+        return membershipResponse(id, "ajoutes", added, job);
+    }
+
+    @DeleteMapping("/{id}/etudiants")
+    @Transactional
+    public ResponseEntity<?> removeEtudiants(@PathVariable Long id, @RequestBody List<Long> etudiantIds) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Set<Long> cibles = new HashSet<>();
+        int removed = 0;
+        for (List<Long> chunk : chunks(distinct(etudiantIds))) {
+            List<Long> members = groupeRepository.findEtudiantIdsIn(id, chunk);
+            if (members.isEmpty()) continue;
+            removed += groupeRepository.removeEtudiants(id, members);
+            cibles.addAll(members);
+        }
+        GroupeSyncJob job = null;
+        if (removed > 0) {
+            dataVersionListener.touched(Groupe.class);
+            membershipIndex.etudiantsRemoved(id, cibles);
+            groupePlacesService.membershipChanged(id);
+            job = groupeSyncService.enqueueEtudiants(id, cibles, cibles, new HashSet<>(groupeRepository.findCoursCodes(id)));
+        }
+        return membershipResponse(id, "retires", removed, job);
+    }
+
+    // Same for courses; every member is enrolled in (or withdrawn from) them
+    @PostMapping("/{id}/cours")
+    @Transactional
+    public ResponseEntity<?> addCours(@PathVariable Long id, @RequestBody List<String> codes) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Set<String> cibles = new HashSet<>();
+        int added = 0;
+        for (List<String> chunk : chunks(distinct(codes))) {
+            Set<String> targets = new HashSet<>(chunk);
+            groupeRepository.findCoursCodesIn(id, chunk).forEach(targets::remove);
+            if (targets.isEmpty()) continue;
+            added += groupeRepository.addCours(id, targets);
+            cibles.addAll(targets);
+        }
+        GroupeSyncJob job = null;
+        if (added > 0) {
+            dataVersionListener.touched(Groupe.class);
+            membershipIndex.groupeCoursChanged();
+            job = groupeSyncService.enqueueCours(id, cibles, Set.of(), new HashSet<>(groupeRepository.findEtudiantIds(id)));
+        }
+        return membershipResponse(id, "ajoutes", added, job);
+    }
+
+    @DeleteMapping("/{id}/cours")
+    @Transactional
+    public ResponseEntity<?> removeCours(@PathVariable Long id, @RequestBody List<String> codes) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Set<String> cibles = new HashSet<>();
+        int removed = 0;
+        for (List<String> chunk : chunks(distinct(codes))) {
+            List<String> present = groupeRepository.findCoursCodesIn(id, chunk);
+            if (present.isEmpty()) continue;
+            removed += groupeRepository.removeCours(id, present);
+            cibles.addAll(present);
+        }
+        GroupeSyncJob job = null;
+        if (removed > 0) {
+            dataVersionListener.touched(Groupe.class);
+            membershipIndex.groupeCoursChanged();
+            job = groupeSyncService.enqueueCours(id, cibles, cibles, new HashSet<>(groupeRepository.findEtudiantIds(id)));
+        }
+        return membershipResponse(id, "retires", removed, job);
+    }
+
+    private ResponseEntity<?> membershipResponse(Long id, String key, int count, GroupeSyncJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("groupeId", id);
+        body.put(key, count);
+        if (job == null) return ResponseEntity.ok(body);
+        body.put("syncJob", job.getId());
+        return ResponseEntity.ok().header(SYNC_JOB_HEADER, syncJobUrl(job)).body(body);
+    }
+
+    private static <T> List<T> distinct(List<T> values) {
+        List<T> result = new ArrayList<>();
+        if (values == null) return result;
+        Set<T> seen = new HashSet<>();
+        for (T v : values) {
+            if (v != null && seen.add(v)) result.add(v);
+        }
+        return result;
+    }
+
+    private static <T> List<List<T>> chunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += MEMBERSHIP_CHUNK) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + MEMBERSHIP_CHUNK)));
+        }
+        return chunks;
+    }
+
+    // ===== Self-service seats (capacity and waitlist) =====
+
+    /**
+     * Seats of the groupe, and the caller's place (member, or position in
+     * the waitlist) when they are a student.
+     */
+    @GetMapping("/{id}/places")
+    public ResponseEntity<?> places(@PathVariable Long id, Principal principal) {
+        List<Object[]> rows = groupeRepository.findPlaces(id);
+        if (rows.isEmpty()) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Integer capacite = (Integer) rows.get(0)[0];
+        int effectif = ((Number) rows.get(0)[1]).intValue();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("groupeId", id);
+        body.put("capacite", capacite);
+        body.put("effectif", effectif);
+        body.put("placesLibres", capacite == null ? null : Math.max(0, capacite - effectif));
+        body.put("enAttente", groupePlacesService.enAttente(id));
+        Etudiant etudiant = currentEtudiant(principal);
+        if (etudiant != null) {
+            body.put("membre", !groupeRepository.findEtudiantIdsIn(id, List.of(etudiant.getId())).isEmpty());
+            body.put("position", groupePlacesService.position(id, etudiant.getId()));
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Takes a seat for the calling student: 201 with the sync job when one
+     * was free, 202 with the waitlist position when the groupe is full.
+     * Behind the admission queue when it is on: 202 with a ticket.
+     */
+    @PostMapping("/{id}/places")
+    public ResponseEntity<?> claimPlace(@PathVariable Long id, Principal principal) {
+        Etudiant etudiant = currentEtudiant(principal);
+        if (etudiant == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        Long etudiantId = etudiant.getId();
+        if (admissionQueue.isEnabled()) {
+            return AdmissionRESTController.admitted(admissionQueue,
+                admissionQueue.submit(etudiantId, principal.getName(), "place", "groupe:" + id, () -> claim(id, etudiantId)));
+        }
+        return respond(claim(id, etudiantId));
+    }
+
+    // Gives the seat back, or leaves the waitlist; the next in line is promoted
+    @DeleteMapping("/{id}/places")
+    public ResponseEntity<?> releasePlace(@PathVariable Long id, Principal principal) {
+        Etudiant etudiant = currentEtudiant(principal);
+        if (etudiant == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        Long etudiantId = etudiant.getId();
+        if (admissionQueue.isEnabled()) {
+            return AdmissionRESTController.admitted(admissionQueue,
+                admissionQueue.submit(etudiantId, principal.getName(), "liberation", "groupe:" + id, () -> release(id, etudiantId)));
+        }
+        return respond(release(id, etudiantId));
+    }
+
+    private AdmissionQueue.Resultat claim(Long id, Long etudiantId) {
+        if (!groupeRepository.existsById(id)) return new AdmissionQueue.Resultat(HttpStatus.NOT_FOUND.value(), null);
+        GroupePlacesService.Demande demande = groupePlacesService.demander(id, etudiantId);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("groupeId", id);
+        body.put("statut", demande.statut());
+        if (demande.position() != null) body.put("position", demande.position());
+        if (demande.job() != null) body.put("syncJob", demande.job().getId());
+        HttpStatus status = switch (demande.statut()) {
+            case INSCRIT -> HttpStatus.CREATED;
+            case EN_ATTENTE -> HttpStatus.ACCEPTED;
+            default -> HttpStatus.OK;
+        };
+        return new AdmissionQueue.Resultat(status.value(), body);
+    }
+
+    private AdmissionQueue.Resultat release(Long id, Long etudiantId) {
+        HttpStatus status = groupePlacesService.quitter(id, etudiantId) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND;
+        return new AdmissionQueue.Resultat(status.value(), null);
+    }
+
+    private static ResponseEntity<?> respond(AdmissionQueue.Resultat resultat) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(resultat.code());
+        if (resultat.corps() instanceof Map<?, ?> body && body.get("syncJob") != null) {
+            builder.header(SYNC_JOB_HEADER, "/groupes/sync-jobs/" + body.get("syncJob"));
+        }
+        return builder.body(resultat.corps());
+    }
+
+    private Etudiant currentEtudiant(Principal principal) {
+        if (principal == null) return null;
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        return user == null ? null : user.getEtudiant();
+    }
+
+    private static ResponseEntity<?> invalidCapacite() {
+        return ResponseEntity.badRequest().body(Map.of("message", "La capacite doit etre positive ou nulle."));
+    }
+
+    /**
+     * State of an inscription sync job; progress (courses done / to do) while it runs.
+     */
+    @GetMapping("/sync-jobs/{jobId}")
+    public ResponseEntity<?> syncJob(@PathVariable Long jobId) {
+        GroupeSyncJob job = groupeSyncService.get(jobId);
+        if (job == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(syncJobView(job));
+    }
+
+    // Most recent first
+    @GetMapping("/{id}/sync-jobs")
+    public List<Map<String, Object>> syncJobs(@PathVariable Long id) {
+        List<Map<String, Object>> views = new ArrayList<>();
+        for (GroupeSyncJob job : groupeSyncService.recent(id, 20)) {
+            views.add(syncJobView(job));
+        }
+        return views;
+    }
+
+    private Map<String, Object> syncJobView(GroupeSyncJob job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", job.getId());
+        view.put("groupeId", job.getGroupeId());
+        view.put("statut", job.getStatut());
+        view.put("portee", job.getPortee());
+        int[] progress = groupeSyncService.progress(job.getId());
+        if (progress != null) {
+            view.put("coursTraites", progress[0]);
+            view.put("coursATraiter", progress[1]);
+        }
+        view.put("inscrites", job.getInscrites());
+        view.put("retirees", job.getRetirees());
+        view.put("tentatives", job.getTentatives());
+        view.put("erreur", job.getErreur());
+        view.put("creeLe", job.getCreeLe());
+        view.put("prochainEssai", job.getProchainEssai());
+        view.put("termineLe", job.getTermineLe());
+        return view;
+    }
+
+    private static String syncJobUrl(GroupeSyncJob job) {
+        return "/groupes/sync-jobs/" + job.getId();
+    }
+
     private void applyLinks(Groupe g, GroupeRequest request) {
+        g.setCapacite(request.getCapacite());
+
         if (request.getSessionId() != null) {
             SessionPedagogique s = sessionRepository.findById(request.getSessionId()).orElse(null);
             g.setSession(s);
@@ -134,78 +484,18 @@ public class GroupeRESTController {
                 }
             }
         }
-        g.setCours(cours);
+        // In place: Hibernate then writes only the join rows that changed,
+        // where a new set would be deleted and inserted again in full
+        g.getCours().retainAll(cours);
+        g.getCours().addAll(cours);
     }
 
     private void applyStudents(Groupe g, GroupeRequest request) {
         if (request.getEtudiantIds() == null) {
             return;
         }
-        List<Etudiant> selected = etudiantRepository.findAllById(request.getEtudiantIds());
-        g.setEtudiants(new HashSet<>(selected));
-    }
-
-    private void syncInscriptionsForStudents(Set<Etudiant> students) {
-        if (students == null || students.isEmpty()) return;
-
-        List<Groupe> allGroups = groupeRepository.findAll();
-        Map<Long, Set<Cours>> allowedByStudent = new HashMap<>();
-        for (Groupe g : allGroups) {
-            for (Etudiant e : g.getEtudiants()) {
-                if (e == null || e.getId() == null) continue;
-                allowedByStudent
-                    .computeIfAbsent(e.getId(), k -> new HashSet<>())
-                    .addAll(g.getCours());
-            }
-        }
-
-        for (Etudiant student : students) {
-            if (student == null || student.getId() == null) continue;
-            Set<Cours> allowedCourses = allowedByStudent.getOrDefault(student.getId(), Set.of());
-            Set<String> allowedCodes = new HashSet<>();
-            for (Cours c : allowedCourses) {
-                if (c != null && c.getCode() != null) {
-                    allowedCodes.add(c.getCode());
-                }
-            }
-
-            for (Cours c : allowedCourses) {
-                if (c == null) continue;
-                if (!inscriptionRepository.existsByEtudiantAndCours(student, c)) {
-                    Inscription ins = new Inscription();
-                    ins.setEtudiant(student);
-                    ins.setCours(c);
-                    ins.setDateInscription(new Date());
-                    inscriptionRepository.save(ins);
-
-                    if (!noteRepository.existsByEtudiantAndCours(student, c)) {
-                        Note note = new Note();
-                        note.setEtudiant(student);
-                        note.setCours(c);
-                        note.setNoteExamen(0);
-                        note.setNoteDs(0);
-                        note.setNoteOral(0);
-                        note.setValeur(0);
-                        noteRepository.save(note);
-                    }
-
-                    mailService.sendEnrollmentStudent(student, c);
-                    mailService.sendEnrollmentFormateur(c.getFormateur(), student, c);
-                }
-            }
-
-            for (Inscription existing : inscriptionRepository.findByEtudiant(student)) {
-                if (existing.getCours() == null || existing.getCours().getCode() == null) continue;
-                if (!allowedCodes.contains(existing.getCours().getCode())) {
-                    noteRepository.deleteByEtudiantAndCours(student, existing.getCours());
-                    mailService.sendUnenrollFormateur(
-                        existing.getCours().getFormateur(),
-                        student,
-                        existing.getCours()
-                    );
-                    inscriptionRepository.delete(existing);
-                }
-            }
-        }
+        Set<Etudiant> selected = new HashSet<>(etudiantRepository.findAllById(request.getEtudiantIds()));
+        g.getEtudiants().retainAll(selected);
+        g.getEtudiants().addAll(selected);
     }
 }
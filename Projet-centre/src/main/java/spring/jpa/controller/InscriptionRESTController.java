@@ -10,20 +10,25 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Value;
 
+import spring.jpa.dto.InscriptionRow;
 import spring.jpa.model.Cours;
 import spring.jpa.model.Etudiant;
 import spring.jpa.model.Formateur;
 import spring.jpa.model.Inscription;
-import spring.jpa.model.Note;
 import spring.jpa.model.User;
 import spring.jpa.repository.CoursRepository;
 import spring.jpa.repository.EtudiantRepository;
 import spring.jpa.repository.InscriptionRepository;
 import spring.jpa.repository.NoteRepository;
 import spring.jpa.repository.UserRepository; // NEW
+import spring.jpa.service.AdmissionQueue;
+import spring.jpa.service.GradeStatsService;
 import spring.jpa.service.MailService;
 
 @RestController
@@ -45,9 +50,15 @@ public class InscriptionRESTController {
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private AdmissionQueue admissionQueue;
+
     @Value("${app.inscriptions.manual.enabled:false}")
     private boolean manualInscriptionsEnabled;
 
@@ -60,6 +71,7 @@ public class InscriptionRESTController {
         consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE },
         produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE }
     )
+    @Transactional
     public ResponseEntity<?> inscrire(@RequestBody Inscription insc, Principal principal) { // ADD Principal
 
         if (!manualInscriptionsEnabled) {
@@ -74,64 +86,70 @@ public class InscriptionRESTController {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
-        // 2. Load the Course (still needs to be loaded from body's code)
+        // 2. The course code must be given; the course itself is loaded with the write
         if (insc.getCours() == null || insc.getCours().getCode() == null) {
             return new ResponseEntity<>("Cours introuvable.", HttpStatus.NOT_FOUND);
         }
-        Cours c = coursRepository
-                .findById(insc.getCours().getCode())
-                .orElse(null);
-
-        if (c == null) {
-            return new ResponseEntity<>("Cours introuvable.", HttpStatus.NOT_FOUND);
-        }
+        String code = insc.getCours().getCode();
 
         String role = normalizeRole(user.getRole());
         boolean isAdmin = "ADMIN".equals(role) || hasRole("ADMIN");
         boolean isEtudiant = "ETUDIANT".equals(role) || hasRole("ETUDIANT");
-        Etudiant etudiant;
+        Long etudiantId;
         if (isAdmin) {
             if (insc.getEtudiant() == null || insc.getEtudiant().getId() == null) {
                 return new ResponseEntity<>("Etudiant introuvable.", HttpStatus.NOT_FOUND);
             }
-            etudiant = etudiantRepository.findById(insc.getEtudiant().getId()).orElse(null);
-            if (etudiant == null) {
-                return new ResponseEntity<>("Etudiant introuvable.", HttpStatus.NOT_FOUND);
-            }
+            etudiantId = insc.getEtudiant().getId();
         } else if (isEtudiant && user.getEtudiant() != null) {
-            etudiant = user.getEtudiant();
+            etudiantId = user.getEtudiant().getId();
         } else {
             return new ResponseEntity<>("Seuls les etudiants ou l'admin peuvent inscrire.", HttpStatus.FORBIDDEN);
         }
 
+        Date date = insc.getDateInscription();
+        if (admissionQueue.isEnabled()) {
+            return AdmissionRESTController.admitted(admissionQueue,
+                admissionQueue.submit(etudiantId, principal.getName(), "inscription", "cours:" + code,
+                    () -> enroll(etudiantId, code, date)));
+        }
+        AdmissionQueue.Resultat resultat = enroll(etudiantId, code, date);
+        return new ResponseEntity<>(resultat.corps(), HttpStatus.valueOf(resultat.code()));
+    }
+
+    // The write itself; runs in the caller's transaction, or in an admission worker's
+    private AdmissionQueue.Resultat enroll(Long etudiantId, String code, Date dateInscription) {
+        Cours c = coursRepository.findById(code).orElse(null);
+        if (c == null) {
+            return new AdmissionQueue.Resultat(HttpStatus.NOT_FOUND.value(), "Cours introuvable.");
+        }
+        Etudiant etudiant = etudiantRepository.findById(etudiantId).orElse(null);
+        if (etudiant == null) {
+            return new AdmissionQueue.Resultat(HttpStatus.NOT_FOUND.value(), "Etudiant introuvable.");
+        }
+
         // 3. Check for double inscription
         if (inscriptionRepository.existsByEtudiantAndCours(etudiant, c)) {
-            return new ResponseEntity<>("Etudiant deja inscrit a ce cours.", HttpStatus.CONFLICT);
+            return new AdmissionQueue.Resultat(HttpStatus.CONFLICT.value(), "Etudiant deja inscrit a ce cours.");
         }
 
         // 4. Set Etudiant and Course
-        insc.setEtudiant(etudiant);
-        insc.setCours(c);
-        if (insc.getDateInscription() == null) {
-            insc.setDateInscription(new Date());
-        }
+        Inscription insc = new Inscription(dateInscription != null ? dateInscription : new Date(), etudiant, c);
 
+        // No Note row is created here: notes only exist once a grade is entered.
         Inscription saved = inscriptionRepository.save(insc);
+        gradeStatsService.changes().enrolled(etudiant, c, saved.getDateInscription()).apply();
+
+        // Only once committed: a queued batch may be rolled back and run again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mailService.sendEnrollmentStudent(etudiant, c);
+                mailService.sendEnrollmentFormateur(c.getFormateur(), etudiant, c);
+            }
+        });
 
-        if (!noteRepository.existsByEtudiantAndCours(etudiant, c)) {
-            Note note = new Note();
-            note.setEtudiant(etudiant);
-            note.setCours(c);
-            note.setNoteExamen(0);
-            note.setNoteDs(0);
-            note.setNoteOral(0);
-            noteRepository.save(note);
-        }
-
-        mailService.sendEnrollmentStudent(etudiant, c);
-        mailService.sendEnrollmentFormateur(c.getFormateur(), etudiant, c);
-
-        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+        return new AdmissionQueue.Resultat(HttpStatus.CREATED.value(), saved);
     }
 
 
@@ -140,7 +158,7 @@ public class InscriptionRESTController {
      * only the logged-in Etudiant's inscriptions.
      */
     @GetMapping("/")
-    public List<Inscription> getAll(Principal principal) {
+    public List<?> getAll(Principal principal) {
         if (principal == null) return List.of(); // Should be caught by SecurityConfig
 
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
@@ -149,14 +167,8 @@ public class InscriptionRESTController {
         // If the user is an Etudiant, return only their inscriptions
         if ("ETUDIANT".equals(normalizeRole(user.getRole())) || hasRole("ETUDIANT")) {
             if (user.getEtudiant() != null) {
-                // Assuming InscriptionRepository has findByEtudiant() method
-                // You will need to add this method to your InscriptionRepository interface.
-                // e.g., List<Inscription> findByEtudiant(Etudiant etudiant);
-                // return inscriptionRepository.findByEtudiant(user.getEtudiant());
-                // Placeholder for now:
-                return inscriptionRepository.findAll().stream()
-                        .filter(insc -> insc.getEtudiant().getId().equals(user.getEtudiant().getId()))
-                        .toList(); 
+                // Follows the enrollment mode, like by-course
+                return inscriptionRepository.findByEtudiant(user.getEtudiant());
             }
             return List.of();
         }
@@ -166,6 +178,7 @@ public class InscriptionRESTController {
     }
     
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<?> cancelInscription(@PathVariable Long id, Principal principal) {
         if (!manualInscriptionsEnabled) {
             return new ResponseEntity<>("Inscriptions are managed via groupes.", HttpStatus.FORBIDDEN);
@@ -184,6 +197,7 @@ public class InscriptionRESTController {
         boolean isEtudiant = "ETUDIANT".equals(role) || hasRole("ETUDIANT");
         if (isAdmin) {
             if (inscription.getEtudiant() != null && inscription.getCours() != null) {
+                gradeStatsService.changes().unenrolled(inscription.getEtudiant(), inscription.getCours()).apply();
                 noteRepository.deleteByEtudiantAndCours(inscription.getEtudiant(), inscription.getCours());
                 mailService.sendUnenrollFormateur(
                     inscription.getCours().getFormateur(),
@@ -199,6 +213,7 @@ public class InscriptionRESTController {
             Long etudiantId = user.getEtudiant().getId();
             if (inscription.getEtudiant() != null && inscription.getEtudiant().getId().equals(etudiantId)) {
                 if (inscription.getCours() != null) {
+                    gradeStatsService.changes().unenrolled(inscription.getEtudiant(), inscription.getCours()).apply();
                     noteRepository.deleteByEtudiantAndCours(inscription.getEtudiant(), inscription.getCours());
                     mailService.sendUnenrollFormateur(
                         inscription.getCours().getFormateur(),
@@ -218,7 +233,7 @@ public class InscriptionRESTController {
             value = "/by-course/{code}",
             produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE }
         )
-        public ResponseEntity<List<Inscription>> getStudentsByCourse(@PathVariable String code, Principal principal) {
+        public ResponseEntity<List<InscriptionRow>> getStudentsByCourse(@PathVariable String code, Principal principal) {
             if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 
             User user = userRepository.findByUsername(principal.getName()).orElse(null);
@@ -253,7 +268,7 @@ public class InscriptionRESTController {
             // 3. Fetch Inscriptions for the Course
             // This assumes you have implemented 'List<Inscription> findByCours(Cours cours);' 
             // in your InscriptionRepository (which is a standard derived query).
-            List<Inscription> inscriptions = inscriptionRepository.findByCours(course);
+            List<InscriptionRow> inscriptions = inscriptionRepository.findByCours(course);
 
             // 4. Return the list of inscriptions (which includes the Etudiant data)
             return new ResponseEntity<>(inscriptions, HttpStatus.OK);
@@ -1,14 +1,21 @@
 package spring.jpa.controller;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import spring.jpa.dto.NoteImportResult;
+import spring.jpa.dto.Paging;
 import spring.jpa.model.Cours;
 import spring.jpa.model.Etudiant;
 import spring.jpa.model.Formateur; // NEW
@@ -19,6 +26,9 @@ import spring.jpa.repository.EtudiantRepository;
 import spring.jpa.repository.InscriptionRepository;
 import spring.jpa.repository.NoteRepository;
 import spring.jpa.repository.UserRepository; // NEW
+import spring.jpa.service.GradeStatsService;
+import spring.jpa.service.NoteImportService;
+import spring.jpa.service.NoteWriteBuffer;
 
 @RestController
 @RequestMapping("/notes")
@@ -39,6 +49,18 @@ public class NoteRESTController {
     @Autowired
     private UserRepository userRepository; // NEW: To fetch the current user's entity
 
+    @Autowired
+    private NoteWriteBuffer noteWriteBuffer;
+
+    @Autowired
+    private NoteImportService noteImportService;
+
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Creation/Update of a Note. Restricted to Formateur (or Admin).
      * SECURITY: Must verify the authenticated user is the course's Formateur.
@@ -48,6 +70,7 @@ public class NoteRESTController {
         consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE },
         produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE }
     )
+    @Transactional
     public ResponseEntity<?> saveNote(@RequestBody Note n, Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 
@@ -72,19 +95,33 @@ public class NoteRESTController {
         }
 
         // 3. SECURITY CHECK: Only the assigned Formateur (or Admin) can save notes
-        if (!isAdmin) {
-            Formateur formateurAuthentifie = user.getFormateur();
-            if (formateurAuthentifie == null || c.getFormateur() == null || !c.getFormateur().getId().equals(formateurAuthentifie.getId())) {
-                return new ResponseEntity<>("Accès refusé. Vous n'êtes pas le formateur de ce cours.", HttpStatus.FORBIDDEN);
-            }
+        if (!isAdmin && !isCourseFormateur(user, c)) {
+            return new ResponseEntity<>("Accès refusé. Vous n'êtes pas le formateur de ce cours.", HttpStatus.FORBIDDEN);
         }
         
-        // 4. Save the Note
+        // 4. Save the Note (upsert: at most one note per etudiant/cours)
+        GradeStatsService.Changes stats = gradeStatsService.changes();
+        Note existing = noteRepository.lockByEtudiantAndCours(e, c).orElse(null);
+        if (existing != null) {
+            stats.noteRemoved(existing);
+            existing.setNoteExamen(n.getNoteExamen());
+            existing.setNoteDs(n.getNoteDs());
+            existing.setNoteOral(n.getNoteOral());
+            existing.setGraded(true);
+            noteWriteBuffer.discard(existing.getId());
+            Note saved = noteRepository.save(existing);
+            stats.noteAdded(saved).apply();
+            return new ResponseEntity<>(saved, HttpStatus.OK);
+        }
+        n.setId(null);
         n.setEtudiant(e);
         n.setCours(c);
         n.setValeur(0);
+        n.setGraded(true);
 
-        return new ResponseEntity<>(noteRepository.save(n), HttpStatus.CREATED);
+        Note saved = noteRepository.save(n);
+        stats.noteAdded(saved).apply();
+        return new ResponseEntity<>(saved, HttpStatus.CREATED);
     }
 
     /**
@@ -94,7 +131,10 @@ public class NoteRESTController {
      * - ADMIN: Sees all notes.
      */
     @GetMapping("/")
-    public List<Note> getAll(Principal principal) {
+    public List<Note> getAll(
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "size", required = false) Integer size,
+            Principal principal) {
         if (principal == null) return List.of(); 
         
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
@@ -104,42 +144,54 @@ public class NoteRESTController {
 
         // 1. ADMIN sees everything
         if ("ADMIN".equals(role)) {
-            return noteRepository.findAll();
+            return noteWriteBuffer.overlay(noteRepository.findAll());
         }
 
         // 2. ETUDIANT sees only their own notes
         if ("ETUDIANT".equals(role) && user.getEtudiant() != null) {
             // Uses the derived query method we added to NoteRepository
-            return noteRepository.findByEtudiant(user.getEtudiant());
+            return noteWriteBuffer.overlay(noteRepository.findByEtudiant(user.getEtudiant()));
         }
 
         // 3. FORMATEUR sees notes only for the courses they teach
         if ("FORMATEUR".equals(role) && user.getFormateur() != null) {
-            Formateur formateur = user.getFormateur();
-            
-            // This is a complex query: find all notes for courses taught by this formateur.
-            // We need to fetch all courses first, then all notes for those courses.
-            // Assuming CoursRepository has a method to find courses by formateur:
-            // List<Cours> taughtCourses = coursRepository.findByFormateur(formateur);
-            
-            // Since we don't have that method, we will implement the logic:
-            List<Cours> taughtCourses = coursRepository.findAll().stream()
-                .filter(c -> c.getFormateur() != null && c.getFormateur().getId().equals(formateur.getId()))
-                .toList();
-            
-            // Get notes for all taught courses
-            return noteRepository.findAll().stream()
-                .filter(note -> taughtCourses.contains(note.getCours()))
-                .toList();
-            
-            // NOTE: For performance, this should be a single custom query in the NoteRepository 
-            // like List<Note> findByCours_Formateur(Formateur formateur);
+            return noteWriteBuffer.overlay(
+                noteRepository.findByCours_Formateur(user.getFormateur(), Paging.of(page, size, Sort.by("cours.code", "id"))).getContent());
         }
         
         // All other cases (unlinked user, invalid role, etc.)
         return List.of();
     }
     
+    /**
+     * Bulk grade import for one course from a CSV or XLSX file (header row with
+     * matricule or email, and examen/ds/oral columns). Same authorization as saveNote.
+     */
+    @PostMapping(value = "/by-course/{code}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importNotes(@PathVariable String code, @RequestParam("file") MultipartFile file, Principal principal) {
+        if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+
+        Cours c = coursRepository.findById(code).orElse(null);
+        if (c == null) return new ResponseEntity<>("Cours introuvable.", HttpStatus.NOT_FOUND);
+
+        if (!isAdmin(user) && !isCourseFormateur(user, c)) {
+            return new ResponseEntity<>("Accès refusé. Vous n'êtes pas le formateur de ce cours.", HttpStatus.FORBIDDEN);
+        }
+        if (file == null || file.isEmpty()) {
+            return new ResponseEntity<>("Fichier vide.", HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            NoteImportResult result = noteImportService.importGrades(c, file);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException | IOException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/by-course/{code}")
     public ResponseEntity<List<Note>> getByCourse(@PathVariable String code, Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -151,8 +203,7 @@ public class NoteRESTController {
         if (course == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 
         if (isAdmin(user)) {
-            ensureNotesForCourse(course);
-            return new ResponseEntity<>(noteRepository.findByCours(course), HttpStatus.OK);
+            return new ResponseEntity<>(noteWriteBuffer.overlay(noteRepository.findByCoursWithDefaults(course)), HttpStatus.OK);
         }
 
         if (isFormateur(user) && user.getFormateur() != null) {
@@ -160,40 +211,19 @@ public class NoteRESTController {
             if (course.getFormateur() == null || !course.getFormateur().getId().equals(formateur.getId())) {
                 return new ResponseEntity<>(HttpStatus.FORBIDDEN);
             }
-            ensureNotesForCourse(course);
-            return new ResponseEntity<>(noteRepository.findByCours(course), HttpStatus.OK);
+            return new ResponseEntity<>(noteWriteBuffer.overlay(noteRepository.findByCoursWithDefaults(course)), HttpStatus.OK);
         }
 
         if (isEtudiant(user) && user.getEtudiant() != null) {
-            List<Note> notes = noteRepository.findByCours(course).stream()
-                .filter(n -> n.getEtudiant() != null && n.getEtudiant().getId().equals(user.getEtudiant().getId()))
-                .toList();
+            List<Note> notes = noteRepository.findFirstByEtudiantAndCours(user.getEtudiant(), course)
+                .map(n -> List.of(noteWriteBuffer.overlay(n)))
+                .orElse(List.of());
             return new ResponseEntity<>(notes, HttpStatus.OK);
         }
 
         return new ResponseEntity<>(HttpStatus.FORBIDDEN);
     }
     
-    private void ensureNotesForCourse(Cours course) {
-        List<Etudiant> enrolled = inscriptionRepository.findByCours(course).stream()
-            .map(insc -> insc.getEtudiant())
-            .filter(e -> e != null)
-            .toList();
-
-        for (Etudiant etudiant : enrolled) {
-            if (!noteRepository.existsByEtudiantAndCours(etudiant, course)) {
-                Note note = new Note();
-                note.setEtudiant(etudiant);
-                note.setCours(course);
-                note.setNoteExamen(0);
-                note.setNoteDs(0);
-                note.setNoteOral(0);
-                note.setValeur(0);
-                noteRepository.save(note);
-            }
-        }
-    }
-
     @GetMapping("/{id}")
     public ResponseEntity<Note> getNoteById(@PathVariable Long id, Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -208,9 +238,15 @@ public class NoteRESTController {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
-        return new ResponseEntity<>(note, HttpStatus.OK);
+        return new ResponseEntity<>(noteWriteBuffer.overlay(note), HttpStatus.OK);
     }
 
+    /**
+     * Grade edit. With app.notes.write-behind.enabled, plain grade edits are
+     * buffered (202 Accepted) and written by the background flusher, without
+     * a transaction or row lock of their own; edits that reassign the
+     * etudiant/cours are always written directly.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<?> updateNote(@PathVariable Long id, @RequestBody Note noteDetails, Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -218,54 +254,84 @@ public class NoteRESTController {
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
         if (user == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
 
-        Note existing = noteRepository.findById(id).orElse(null);
+        boolean reassign = isAdmin(user)
+            && ((noteDetails.getEtudiant() != null && noteDetails.getEtudiant().getId() != null)
+                || (noteDetails.getCours() != null && noteDetails.getCours().getCode() != null));
+        if (noteWriteBuffer.isEnabled() && !reassign) {
+            // Plain read for the access check: the flusher locks the row when it writes
+            Note existing = noteRepository.findById(id).orElse(null);
+            if (existing == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            if (!canModifyNote(user, existing)) {
+                return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+            }
+            noteWriteBuffer.submit(id, noteDetails.getNoteExamen(), noteDetails.getNoteDs(), noteDetails.getNoteOral());
+            return new ResponseEntity<>(noteWriteBuffer.overlay(existing), HttpStatus.ACCEPTED);
+        }
+        return transactionTemplate.execute(status -> writeNote(id, noteDetails, user));
+    }
+
+    // Direct edit, in the caller's transaction: the note is locked before its summary delta
+    private ResponseEntity<?> writeNote(Long id, Note noteDetails, User user) {
+        Note existing = noteRepository.lockById(id).orElse(null);
         if (existing == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 
         if (!canModifyNote(user, existing)) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
-        existing.setNoteExamen(noteDetails.getNoteExamen());
-        existing.setNoteDs(noteDetails.getNoteDs());
-        existing.setNoteOral(noteDetails.getNoteOral());
-        existing.setValeur(0);
-
+        // Resolve reassignment targets first: nothing is modified on a 404
+        Etudiant newEtudiant = null;
+        Cours newCours = null;
         if (isAdmin(user)) {
             if (noteDetails.getEtudiant() != null && noteDetails.getEtudiant().getId() != null) {
-                Etudiant e = etudiantRepository.findById(noteDetails.getEtudiant().getId()).orElse(null);
-                if (e == null) {
+                newEtudiant = etudiantRepository.findById(noteDetails.getEtudiant().getId()).orElse(null);
+                if (newEtudiant == null) {
                     return new ResponseEntity<>("Etudiant introuvable.", HttpStatus.NOT_FOUND);
                 }
-                existing.setEtudiant(e);
             }
 
             if (noteDetails.getCours() != null && noteDetails.getCours().getCode() != null) {
-                Cours c = coursRepository.findById(noteDetails.getCours().getCode()).orElse(null);
-                if (c == null) {
+                newCours = coursRepository.findById(noteDetails.getCours().getCode()).orElse(null);
+                if (newCours == null) {
                     return new ResponseEntity<>("Cours introuvable.", HttpStatus.NOT_FOUND);
                 }
-                existing.setCours(c);
             }
         }
 
-        return new ResponseEntity<>(noteRepository.save(existing), HttpStatus.OK);
+        GradeStatsService.Changes stats = gradeStatsService.changes().noteRemoved(existing);
+        existing.setNoteExamen(noteDetails.getNoteExamen());
+        existing.setNoteDs(noteDetails.getNoteDs());
+        existing.setNoteOral(noteDetails.getNoteOral());
+        existing.setValeur(0);
+        existing.setGraded(true);
+        if (newEtudiant != null) existing.setEtudiant(newEtudiant);
+        if (newCours != null) existing.setCours(newCours);
+        noteWriteBuffer.discard(id);
+
+        Note saved = noteRepository.save(existing);
+        stats.noteAdded(saved).apply();
+        return new ResponseEntity<>(saved, HttpStatus.OK);
     }
 
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<?> deleteNote(@PathVariable Long id, Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
 
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
         if (user == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
 
-        Note existing = noteRepository.findById(id).orElse(null);
+        Note existing = noteRepository.lockById(id).orElse(null);
         if (existing == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 
         if (!canModifyNote(user, existing)) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
+        noteWriteBuffer.discard(id);
+        GradeStatsService.Changes stats = gradeStatsService.changes().noteRemoved(existing);
         noteRepository.delete(existing);
+        stats.apply();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -289,6 +355,13 @@ public class NoteRESTController {
         return "ETUDIANT".equals(normalizeRole(user));
     }
 
+    private boolean isCourseFormateur(User user, Cours c) {
+        Formateur formateur = user.getFormateur();
+        return formateur != null
+            && c.getFormateur() != null
+            && c.getFormateur().getId().equals(formateur.getId());
+    }
+
     private boolean canAccessNote(User user, Note note) {
         if (isAdmin(user)) return true;
 
@@ -0,0 +1,116 @@
+package spring.jpa.controller;
+
+import java.nio.file.Files;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import spring.jpa.dto.ReportJob;
+import spring.jpa.dto.ReportJobRequest;
+import spring.jpa.service.ReportJobService;
+
+/**
+ * Asynchronous reports: submit, poll, download.
+ *
+ * POST returns 202 with the job; the artifact is then downloadable from
+ * /reports/jobs/{id}/download. Downloads are sent from the file on disk and
+ * honour Range requests (resume, partial fetch) and If-None-Match on the
+ * artifact hash. Users only see their own jobs; admins see all of them.
+ */
+@RestController
+@RequestMapping("/reports/jobs")
+public class ReportJobRESTController {
+
+    private static final int RETRY_AFTER_SECONDS = 30;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @GetMapping("/types")
+    public ResponseEntity<?> types() {
+        return ResponseEntity.ok(reportJobService.typeNames());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody ReportJobRequest request, Principal principal) {
+        if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        // Exports and transcripts are admin-only, like their synchronous endpoints
+        ReportJobService.ReportType type = reportJobService.type(request.getType());
+        if (type != null && type.adminOnly() && !isAdmin()) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        try {
+            ReportJob job = reportJobService.submit(request.getType(), request.getParams(), principal.getName());
+            return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/reports/jobs/" + job.getId())
+                .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                .body(Map.of("message", "Trop de rapports en attente, reessayez plus tard."));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ReportJob>> list(Principal principal) {
+        if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        return ResponseEntity.ok(reportJobService.list(isAdmin() ? null : principal.getName()));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> status(@PathVariable String id, Principal principal) {
+        ReportJob job = visibleJob(id, principal);
+        if (job == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(job);
+    }
+
+    @GetMapping("/{id}/download")
+    public ResponseEntity<?> download(@PathVariable String id, Principal principal) {
+        ReportJob job = visibleJob(id, principal);
+        if (job == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        if (job.getStatut() != ReportJob.Statut.TERMINE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+        }
+        if (job.getFichier() == null || !Files.exists(job.getFichier())) {
+            // Evicted by the retention policy: submit the job again
+            return ResponseEntity.status(HttpStatus.GONE).body(Map.of("message", "Rapport expire, relancez-le."));
+        }
+
+        ReportJobService.ReportType type = reportJobService.type(job.getType());
+        String filename = job.getType() + "." + type.extension();
+        // Spring answers Range / If-None-Match itself for a Resource body
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(type.mediaType()))
+            .eTag(job.getArtefact())
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .body(new FileSystemResource(job.getFichier()));
+    }
+
+    private ReportJob visibleJob(String id, Principal principal) {
+        if (principal == null) return null;
+        ReportJob job = reportJobService.get(id);
+        if (job == null) return null;
+        return isAdmin() || principal.getName().equals(job.getOwner()) ? job : null;
+    }
+
+    private boolean isAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities() == null) return false;
+        return auth.getAuthorities().stream().anyMatch(a ->
+            "ROLE_ADMIN".equalsIgnoreCase(a.getAuthority()) || "ADMIN".equalsIgnoreCase(a.getAuthority())
+        );
+    }
+}
@@ -1,45 +1,61 @@
 package spring.jpa.controller;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.security.Principal;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import com.itextpdf.text.Document;
-import com.itextpdf.text.Element;
-import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
-
+import jakarta.servlet.http.HttpServletResponse;
+import spring.jpa.dto.CoursInscriptionCount;
+import spring.jpa.dto.RankEntry;
 import spring.jpa.model.Cours;
-import spring.jpa.model.Etudiant;
-import spring.jpa.model.Inscription;
+import spring.jpa.model.CoursStats;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.SessionPedagogique;
 import spring.jpa.model.Note;
 import spring.jpa.model.User;
 import spring.jpa.repository.CoursRepository;
 import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
 import spring.jpa.repository.InscriptionRepository;
-import spring.jpa.repository.NoteRepository;
+import spring.jpa.repository.SessionPedagogiqueRepository;
+import spring.jpa.repository.SpecialiteRepository;
 import spring.jpa.repository.UserRepository;
+import spring.jpa.service.AdmissionQueue;
+import spring.jpa.service.DistributionService;
+import spring.jpa.service.EnrollmentTimeseriesService;
+import spring.jpa.service.ExportService;
+import spring.jpa.service.GradeStatsService;
+import spring.jpa.service.GradingEngine.StudentAverages;
+import spring.jpa.service.MembershipIndex;
+import spring.jpa.service.NotesPdfRenderer;
+import spring.jpa.service.RankingService;
+import spring.jpa.service.ReportCache;
+import spring.jpa.service.ReportCubeService;
+import spring.jpa.service.TranscriptRenderer;
 
 @RestController
 @RequestMapping("/reports")
 public class ReportingRESTController {
 
-    @Autowired
-    private NoteRepository noteRepository;
-
     @Autowired
     private EtudiantRepository etudiantRepository;
 
@@ -52,6 +68,50 @@ public class ReportingRESTController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Autowired
+    private SessionPedagogiqueRepository sessionRepository;
+
+    @Autowired
+    private SpecialiteRepository specialiteRepository;
+
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private DistributionService distributionService;
+
+    @Autowired
+    private NotesPdfRenderer notesPdfRenderer;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private TranscriptRenderer transcriptRenderer;
+
+    @Autowired
+    private ReportCubeService reportCubeService;
+
+    @Autowired
+    private EnrollmentTimeseriesService enrollmentTimeseriesService;
+
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private MembershipIndex membershipIndex;
+
+    @Autowired
+    private AdmissionQueue admissionQueue;
+
+    private static final int MAX_TOP = 100;
+
     @GetMapping("/etudiant/me/moyenne")
     public ResponseEntity<?> getMyAverage(Principal principal) {
         if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -59,144 +119,447 @@ public class ReportingRESTController {
         if (user == null || user.getEtudiant() == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         return ResponseEntity.ok(Map.of(
             "etudiantId", user.getEtudiant().getId(),
-            "moyenne", computeAverage(user.getEtudiant())
+            "moyenne", studentAverage(user.getEtudiant().getId())
         ));
     }
 
     @GetMapping("/etudiants/{id}/moyenne")
     public ResponseEntity<?> getAverageByStudent(@PathVariable Long id) {
-        Etudiant e = etudiantRepository.findById(id).orElse(null);
-        if (e == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        if (!etudiantRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         return ResponseEntity.ok(Map.of(
             "etudiantId", id,
-            "moyenne", computeAverage(e)
+            "moyenne", studentAverage(id)
         ));
     }
 
+    private double studentAverage(Long etudiantId) {
+        return reportCache.get("moyenne-etudiant", ReportCache.GRADES,
+            () -> gradeStatsService.etudiantStats(etudiantId).getMoyenne(), etudiantId);
+    }
+
     @GetMapping("/cours/{code}/taux-reussite")
     public ResponseEntity<?> getSuccessRate(@PathVariable String code) {
+        if (!coursRepository.existsById(code)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        double rate = reportCache.get("taux-reussite", ReportCache.GRADES, () -> {
+            // Enrolled students without a note count as 0/0/0
+            CoursStats stats = gradeStatsService.coursStats(code);
+            long inscrits = stats.getTotals().getInscrits();
+            return inscrits <= 0 ? 0.0 : (stats.getTotals().getPassMoyenne() * 100.0) / inscrits;
+        }, code);
+        return ResponseEntity.ok(Map.of("cours", code, "tauxReussite", rate));
+    }
+
+    // Recomputes the grade summary tables from the notes and inscriptions
+    @PostMapping("/admin/stats/rebuild")
+    public ResponseEntity<?> rebuildStats() {
+        long start = System.currentTimeMillis();
+        int courses = gradeStatsService.rebuildAll();
+        reportCache.clear();
+        return ResponseEntity.ok(Map.of("cours", courses, "dureeMs", System.currentTimeMillis() - start));
+    }
+
+    @PostMapping("/admin/cube/rebuild")
+    public ResponseEntity<?> rebuildCube() {
+        long start = System.currentTimeMillis();
+        int cells = reportCubeService.rebuildAll();
+        return ResponseEntity.ok(Map.of("cellules", cells, "dureeMs", System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Roll-up of the reporting cube along any subset of session, specialite,
+     * groupe and cours (dims=session,cours ...; none = grand total), with
+     * optional filters on each dimension.
+     */
+    @GetMapping("/cube")
+    public ResponseEntity<?> cube(@RequestParam(name = "dims", required = false) String dims,
+                                  @RequestParam(name = "session", required = false) Long sessionId,
+                                  @RequestParam(name = "specialite", required = false) Long specialiteId,
+                                  @RequestParam(name = "groupe", required = false) Long groupeId,
+                                  @RequestParam(name = "cours", required = false) String cours) {
+        try {
+            Set<ReportCubeService.Dimension> dimensions = ReportCubeService.parseDimensions(dims);
+            String code = cours == null || cours.isBlank() ? null : cours;
+            return ResponseEntity.ok(reportCache.get("cube", ReportCache.CUBE,
+                () -> reportCubeService.rollup(dimensions, sessionId, specialiteId, groupeId, code),
+                dimensions, sessionId, specialiteId, groupeId, code));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/admin/inscriptions/rebuild")
+    public ResponseEntity<?> rebuildEnrollmentRollups() {
+        long start = System.currentTimeMillis();
+        int rows = enrollmentTimeseriesService.rebuildAll();
+        reportCache.clear();
+        return ResponseEntity.ok(Map.of("lignes", rows, "dureeMs", System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Enrollments and withdrawals per day, week or month between from and to
+     * (default: the last 30 days), from the daily rollups. par=cours|groupe
+     * splits the series; cours / groupe filter it.
+     */
+    @GetMapping("/inscriptions/timeseries")
+    public ResponseEntity<?> enrollmentTimeseries(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "granularity", required = false) String granularity,
+            @RequestParam(name = "par", required = false) String par,
+            @RequestParam(name = "cours", required = false) String cours,
+            @RequestParam(name = "groupe", required = false) Long groupeId) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        try {
+            EnrollmentTimeseriesService.Granularity g = EnrollmentTimeseriesService.Granularity.of(granularity);
+            EnrollmentTimeseriesService.Split split = EnrollmentTimeseriesService.Split.of(par);
+            String code = cours == null || cours.isBlank() ? null : cours;
+            return ResponseEntity.ok(reportCache.get("inscriptions-timeseries", ReportCache.ENROLLMENTS,
+                () -> enrollmentTimeseriesService.timeseries(start, end, g, split, code, groupeId),
+                start, end, g, split, code, groupeId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Result cache statistics (entries, hits, misses, stale, evictions)
+    @GetMapping("/admin/cache")
+    public ResponseEntity<?> cacheStats() {
+        return ResponseEntity.ok(reportCache.stats());
+    }
+
+    @DeleteMapping("/admin/cache")
+    public ResponseEntity<?> clearCache() {
+        reportCache.clear();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    // Enrollment admission queue: waiting, admitted and refused requests
+    @GetMapping("/admin/admissions")
+    public ResponseEntity<?> admissionStats() {
+        return ResponseEntity.ok(admissionQueue.stats());
+    }
+
+    // Membership index statistics (bitmaps, ids, bytes)
+    @GetMapping("/admin/membership-index")
+    public ResponseEntity<?> membershipIndexStats() {
+        return ResponseEntity.ok(membershipIndex.stats());
+    }
+
+    @PostMapping("/admin/membership-index/rebuild")
+    public ResponseEntity<?> rebuildMembershipIndex() {
+        long start = System.currentTimeMillis();
+        int bitmaps = membershipIndex.rebuildAll();
+        return ResponseEntity.ok(Map.of("bitmaps", bitmaps, "dureeMs", System.currentTimeMillis() - start));
+    }
+
+    // ===== Bulk averages (one query, parallel per-student pass) =====
+
+    @GetMapping("/sessions/{id}/moyennes")
+    public ResponseEntity<?> sessionAverages(@PathVariable Long id,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            @RequestParam(name = "sort", defaultValue = "rang") String sort) {
+        if (!sessionRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(averagesPage("session", id, () -> averagesOfSession(id), page, size, sort));
+    }
+
+    @GetMapping("/groupes/{id}/moyennes")
+    public ResponseEntity<?> groupeAverages(@PathVariable Long id,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            @RequestParam(name = "sort", defaultValue = "rang") String sort) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(averagesPage("groupe", id, () -> averagesOfGroupe(id), page, size, sort));
+    }
+
+    @GetMapping("/specialites/{id}/moyennes")
+    public ResponseEntity<?> specialiteAverages(@PathVariable Long id,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            @RequestParam(name = "sort", defaultValue = "rang") String sort) {
+        if (!specialiteRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(averagesPage("specialite", id, () -> averagesOfSpecialite(id), page, size, sort));
+    }
+
+    // Per-student averages of a scope, for the bulk lists
+    private StudentAverages averagesOfGroupe(Long id) {
+        return reportCache.get("moyennes-groupe", ReportCache.GRADES, () -> rankingService.forGroupe(id), id);
+    }
+
+    private StudentAverages averagesOfSession(Long id) {
+        return reportCache.get("moyennes-session", ReportCache.GRADES, () -> rankingService.forSession(id), id);
+    }
+
+    private StudentAverages averagesOfSpecialite(Long id) {
+        return reportCache.get("moyennes-specialite", ReportCache.GRADES, () -> rankingService.forSpecialite(id), id);
+    }
+
+    /**
+     * sort=rang (best first, default) or sort=nom (alphabetical). The sorted
+     * scope is cached, so a page is a slice of it rather than a new sort.
+     * Names are read as a projection: for the whole list when sorting by name,
+     * otherwise only for (copies of) the returned page.
+     */
+    private Map<String, Object> averagesPage(String scope, Object id, Supplier<StudentAverages> averages,
+                                             int page, int size, String sort) {
+        boolean byName = "nom".equalsIgnoreCase(sort);
+        List<RankEntry> all = reportCache.get("classement-" + scope, ReportCache.GRADES,
+            () -> sorted(averages.get(), byName), id, byName);
+        int pageSize = Math.max(1, Math.min(500, size));
+        int pageIndex = Math.max(0, page);
+
+        int from = (int) Math.min((long) pageIndex * pageSize, all.size());
+        List<RankEntry> content = all.subList(from, Math.min(all.size(), from + pageSize));
+        if (!byName) {
+            // The cached entries are shared: the names go on copies
+            content = withNames(content.stream()
+                .map(e -> new RankEntry(e.getRang(), e.getEffectif(), e.getPercentile(), e.getEtudiantId(), e.getMoyenne()))
+                .collect(Collectors.toList()));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", content);
+        result.put("page", pageIndex);
+        result.put("size", pageSize);
+        result.put("totalElements", all.size());
+        result.put("totalPages", (all.size() + pageSize - 1) / pageSize);
+        return result;
+    }
+
+    private List<RankEntry> sorted(StudentAverages averages, boolean byName) {
+        List<RankEntry> all = rankingService.ranked(averages);
+        if (byName) {
+            fillNames(all);
+            all.sort(Comparator.comparing((RankEntry e) -> e.getNom() == null ? "" : e.getNom(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(e -> e.getPrenom() == null ? "" : e.getPrenom(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(RankEntry::getEtudiantId));
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    private void fillNames(List<RankEntry> entries) {
+        if (entries.isEmpty()) return;
+        List<Long> ids = entries.stream().map(RankEntry::getEtudiantId).toList();
+        Map<Long, Object[]> byId = new HashMap<>();
+        for (Object[] row : etudiantRepository.findNamesByIdIn(ids)) {
+            byId.put((Long) row[0], row);
+        }
+        for (RankEntry entry : entries) {
+            Object[] row = byId.get(entry.getEtudiantId());
+            if (row != null) {
+                entry.setNom((String) row[1]);
+                entry.setPrenom((String) row[2]);
+            }
+        }
+    }
+
+    // ===== Distribution (histogram, mean, median, std dev, min/max) =====
+
+    @GetMapping("/cours/{code}/distribution")
+    public ResponseEntity<?> courseDistribution(@PathVariable String code,
+            @RequestParam(name = "bins", defaultValue = "" + DistributionService.DEFAULT_BINS) int bins) {
         Cours cours = coursRepository.findById(code).orElse(null);
         if (cours == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(Map.of("cours", code, "distributions", reportCache.get("distribution-cours", ReportCache.GRADES,
+            () -> distributionService.forCours(cours, bins), code, bins)));
+    }
 
-        List<Note> notes = noteRepository.findByCours(cours);
-        if (notes.isEmpty()) {
-            return ResponseEntity.ok(Map.of("cours", code, "tauxReussite", 0.0));
+    @GetMapping("/groupes/{id}/distribution")
+    public ResponseEntity<?> groupeDistribution(@PathVariable Long id,
+            @RequestParam(name = "bins", defaultValue = "" + DistributionService.DEFAULT_BINS) int bins) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(Map.of("groupe", id, "distributions", reportCache.get("distribution-groupe", ReportCache.GRADES,
+            () -> distributionService.forGroupe(id, bins), id, bins)));
+    }
+
+    @GetMapping("/sessions/{id}/distribution")
+    public ResponseEntity<?> sessionDistribution(@PathVariable Long id,
+            @RequestParam(name = "bins", defaultValue = "" + DistributionService.DEFAULT_BINS) int bins) {
+        if (!sessionRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(Map.of("session", id, "distributions", reportCache.get("distribution-session", ReportCache.GRADES,
+            () -> distributionService.forSession(id, bins), id, bins)));
+    }
+
+    // ===== Classement (rank, percentile, top-N), ranked by the database =====
+
+    @GetMapping("/cours/{code}/classement")
+    public ResponseEntity<?> topOfCourse(@PathVariable String code, @RequestParam(name = "top", defaultValue = "10") int top) {
+        if (!coursRepository.existsById(code)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        int n = clampTop(top);
+        return ResponseEntity.ok(reportCache.get("top-cours", ReportCache.GRADES,
+            () -> withNames(rankingService.topOfCours(code, n)), code, n));
+    }
+
+    @GetMapping("/groupes/{id}/classement")
+    public ResponseEntity<?> topOfGroupe(@PathVariable Long id, @RequestParam(name = "top", defaultValue = "10") int top) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        int n = clampTop(top);
+        return ResponseEntity.ok(reportCache.get("top-groupe", ReportCache.GRADES,
+            () -> withNames(rankingService.topOfGroupe(id, n)), id, n));
+    }
+
+    @GetMapping("/sessions/{id}/classement")
+    public ResponseEntity<?> topOfSession(@PathVariable Long id, @RequestParam(name = "top", defaultValue = "10") int top) {
+        if (!sessionRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        int n = clampTop(top);
+        return ResponseEntity.ok(reportCache.get("top-session", ReportCache.GRADES,
+            () -> withNames(rankingService.topOfSession(id, n)), id, n));
+    }
+
+    @GetMapping("/cours/{code}/rang/{etudiantId}")
+    public ResponseEntity<?> rankInCourse(@PathVariable String code, @PathVariable Long etudiantId) {
+        if (!coursRepository.existsById(code)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return rankResponse(reportCache.get("rang-cours", ReportCache.GRADES,
+            () -> Optional.ofNullable(rankingService.rankInCours(code, etudiantId)), code, etudiantId));
+    }
+
+    @GetMapping("/groupes/{id}/rang/{etudiantId}")
+    public ResponseEntity<?> rankInGroupe(@PathVariable Long id, @PathVariable Long etudiantId) {
+        if (!groupeRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return rankResponse(reportCache.get("rang-groupe", ReportCache.GRADES,
+            () -> Optional.ofNullable(rankingService.rankInGroupe(id, etudiantId)), id, etudiantId));
+    }
+
+    @GetMapping("/sessions/{id}/rang/{etudiantId}")
+    public ResponseEntity<?> rankInSession(@PathVariable Long id, @PathVariable Long etudiantId) {
+        if (!sessionRepository.existsById(id)) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return rankResponse(reportCache.get("rang-session", ReportCache.GRADES,
+            () -> Optional.ofNullable(rankingService.rankInSession(id, etudiantId)), id, etudiantId));
+    }
+
+    // The logged-in student's standing in one course, groupe or session
+    @GetMapping("/etudiant/me/rang")
+    public ResponseEntity<?> myRank(
+            @RequestParam(name = "cours", required = false) String code,
+            @RequestParam(name = "groupe", required = false) Long groupeId,
+            @RequestParam(name = "session", required = false) Long sessionId,
+            Principal principal) {
+        if (principal == null) return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null || user.getEtudiant() == null) return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        Long etudiantId = user.getEtudiant().getId();
+
+        if (code != null) return rankInCourse(code, etudiantId);
+        if (groupeId != null) return rankInGroupe(groupeId, etudiantId);
+        if (sessionId != null) return rankInSession(sessionId, etudiantId);
+        return new ResponseEntity<>("Parametre cours, groupe ou session requis.", HttpStatus.BAD_REQUEST);
+    }
+
+    // The cached entry is shared: the names go on a copy
+    private ResponseEntity<?> rankResponse(Optional<RankEntry> rank) {
+        if (rank.isEmpty()) {
+            return new ResponseEntity<>("Etudiant non classe dans ce perimetre.", HttpStatus.NOT_FOUND);
         }
-        long ok = notes.stream()
-            .filter(n -> computeNoteAverage(n) >= 10.0)
-            .count();
-        double rate = (ok * 100.0) / notes.size();
-        return ResponseEntity.ok(Map.of("cours", code, "tauxReussite", rate));
+        RankEntry e = rank.get();
+        return ResponseEntity.ok(withNames(List.of(
+            new RankEntry(e.getRang(), e.getEffectif(), e.getPercentile(), e.getEtudiantId(), e.getMoyenne()))).get(0));
+    }
+
+    // Only the returned rows get their names
+    private List<RankEntry> withNames(List<RankEntry> entries) {
+        fillNames(entries);
+        return entries;
+    }
+
+    private int clampTop(int top) {
+        return Math.max(1, Math.min(MAX_TOP, top));
     }
 
     @GetMapping("/cours/top")
-    public List<Map<String, Object>> topCourses(@RequestParam(name = "limit", defaultValue = "5") int limit) {
-        List<Inscription> inscriptions = inscriptionRepository.findAll();
-        Map<String, Long> counts = inscriptions.stream()
-            .filter(i -> i.getCours() != null)
-            .collect(Collectors.groupingBy(i -> i.getCours().getCode(), Collectors.counting()));
-
-        return counts.entrySet().stream()
-            .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-            .limit(Math.max(1, limit))
-            .map(e -> {
-                Cours c = coursRepository.findById(e.getKey()).orElse(null);
-                Map<String, Object> row = new HashMap<>();
-                row.put("code", e.getKey());
-                row.put("titre", c != null ? c.getTitre() : "");
-                row.put("inscriptions", e.getValue());
-                return row;
-            })
-            .collect(Collectors.toList());
+    public List<CoursInscriptionCount> topCourses(@RequestParam(name = "limit", defaultValue = "5") int limit) {
+        int n = Math.max(1, Math.min(100, limit));
+        return reportCache.get("cours-top", ReportCache.ENROLLMENTS,
+            () -> inscriptionRepository.findTopCourses(PageRequest.of(0, n)), n);
     }
 
+    /**
+     * Notes PDF, written to the response as it is produced (see NotesPdfRenderer).
+     */
     @GetMapping("/notes/pdf")
-    public ResponseEntity<byte[]> exportNotesPdf(@RequestParam(name = "cours", required = false) String code) {
-        try {
-            List<Note> notes;
-            String title = "Notes Report";
-            if (code != null && !code.isBlank()) {
-                Cours cours = coursRepository.findById(code).orElse(null);
-                if (cours == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-                notes = noteRepository.findByCours(cours);
-                title = "Notes - " + code + " - " + cours.getTitre();
-            } else {
-                notes = noteRepository.findAll();
-            }
-
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            Document document = new Document();
-            PdfWriter.getInstance(document, out);
-            document.open();
-            document.add(new Paragraph(title));
-
-            if (notes.isEmpty()) {
-                document.add(new Paragraph("Aucune note."));
-            } else if (code != null && !code.isBlank()) {
-                addCourseNotesTable(document, code, notes);
-            } else {
-                Map<String, List<Note>> byCourse = notes.stream()
-                    .filter(n -> n.getCours() != null)
-                    .collect(Collectors.groupingBy(n -> n.getCours().getCode()));
-
-                for (String courseCode : byCourse.keySet().stream().sorted().toList()) {
-                    addCourseNotesTable(document, courseCode, byCourse.get(courseCode));
-                }
+    public void exportNotesPdf(@RequestParam(name = "cours", required = false) String code,
+                               HttpServletResponse response) throws IOException {
+        Cours cours = null;
+        if (code != null && !code.isBlank()) {
+            cours = coursRepository.findById(code).orElse(null);
+            if (cours == null) {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
             }
+        }
 
-            document.close();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "notes-report.pdf");
-            return new ResponseEntity<>(out.toByteArray(), headers, HttpStatus.OK);
-        } catch (Exception e) {
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("notes-report.pdf").build().toString());
+        if (cours != null) {
+            notesPdfRenderer.renderCourse(cours, response.getOutputStream());
+        } else {
+            notesPdfRenderer.renderAllCourses(response.getOutputStream());
         }
     }
 
-    private PdfPCell header(String text) {
-        PdfPCell cell = new PdfPCell(new Paragraph(text));
-        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        return cell;
-    }
-
-    private void addCourseNotesTable(Document document, String courseCode, List<Note> notes) throws Exception {
-        Cours cours = coursRepository.findById(courseCode).orElse(null);
-        String title = cours != null
-            ? courseCode + " - " + cours.getTitre()
-            : courseCode;
-        document.add(new Paragraph(title));
-
-        PdfPTable table = new PdfPTable(4);
-        table.setWidthPercentage(100);
-        table.addCell(header("Etudiant"));
-        table.addCell(header("Examen"));
-        table.addCell(header("DS"));
-        table.addCell(header("Oral"));
-
-        for (Note n : notes) {
-            String etu = n.getEtudiant() != null
-                ? n.getEtudiant().getNom() + " " + n.getEtudiant().getPrenom()
-                : "";
-            table.addCell(etu);
-            table.addCell(String.valueOf(n.getNoteExamen()));
-            table.addCell(String.valueOf(n.getNoteDs()));
-            table.addCell(String.valueOf(n.getNoteOral()));
+    /**
+     * CSV (default) or XLSX export of notes, inscriptions, etudiants or seances,
+     * optionally filtered by cours, groupe and session. Streamed from the database
+     * to the response (see ExportService).
+     */
+    @GetMapping("/export/{dataset}")
+    public void export(@PathVariable String dataset,
+                       @RequestParam(name = "format", required = false) String format,
+                       @RequestParam(name = "cours", required = false) String cours,
+                       @RequestParam(name = "groupe", required = false) Long groupeId,
+                       @RequestParam(name = "session", required = false) Long sessionId,
+                       HttpServletResponse response) throws IOException {
+        ExportService.Format fmt;
+        try {
+            exportService.dataset(dataset);
+            fmt = ExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
         }
+        if (cours != null && cours.isBlank()) cours = null;
+        if ((cours != null && !coursRepository.existsById(cours))
+                || (groupeId != null && !groupeRepository.existsById(groupeId))
+                || (sessionId != null && !sessionRepository.existsById(sessionId))) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        response.setContentType(fmt.mediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(dataset.toLowerCase() + "." + fmt.extension()).build().toString());
+        exportService.export(dataset, new ExportService.Filter(cours, groupeId, sessionId), fmt, response.getOutputStream());
+    }
+
+    // ===== Transcripts: ZIP of one PDF per student (see TranscriptRenderer) =====
 
-        document.add(table);
-        document.add(new Paragraph(" "));
+    @GetMapping("/sessions/{id}/releves")
+    public void sessionTranscripts(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        SessionPedagogique session = sessionRepository.findById(id).orElse(null);
+        if (session == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        zipHeaders(response, "releves-session-" + id + ".zip");
+        transcriptRenderer.renderSession(session, response.getOutputStream());
     }
 
-    private double computeAverage(Etudiant etudiant) {
-        List<Note> notes = noteRepository.findByEtudiant(etudiant);
-        if (notes.isEmpty()) return 0.0;
-        double sum = notes.stream().mapToDouble(this::computeNoteAverage).sum();
-        return sum / notes.size();
+    @GetMapping("/groupes/{id}/releves")
+    public void groupeTranscripts(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        Groupe groupe = groupeRepository.findById(id).orElse(null);
+        if (groupe == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        zipHeaders(response, "releves-groupe-" + id + ".zip");
+        transcriptRenderer.renderGroupe(groupe, response.getOutputStream());
     }
 
-    private double computeNoteAverage(Note n) {
-        return (n.getNoteExamen() + n.getNoteDs() + n.getNoteOral()) / 3.0;
+    private static void zipHeaders(HttpServletResponse response, String filename) {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString());
     }
 }
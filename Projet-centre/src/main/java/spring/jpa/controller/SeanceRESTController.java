@@ -3,10 +3,9 @@ package spring.jpa.controller;
 import java.security.Principal;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,14 +16,13 @@ import spring.jpa.model.Cours;
 import spring.jpa.model.Etudiant;
 import spring.jpa.model.Formateur;
 import spring.jpa.model.Groupe;
-import spring.jpa.model.Inscription;
 import spring.jpa.model.Seance;
 import spring.jpa.model.User;
 import spring.jpa.repository.CoursRepository;
-import spring.jpa.repository.InscriptionRepository;
 import spring.jpa.repository.SeanceRepository;
 import spring.jpa.repository.UserRepository;
 import spring.jpa.repository.GroupeRepository;
+import spring.jpa.service.MembershipIndex;
 
 @RestController
 @RequestMapping("/seances")
@@ -37,7 +35,7 @@ public class SeanceRESTController {
     private CoursRepository coursRepository;
 
     @Autowired
-    private InscriptionRepository inscriptionRepository;
+    private MembershipIndex membershipIndex;
 
     @Autowired
     private UserRepository userRepository;
@@ -141,6 +139,7 @@ public class SeanceRESTController {
         List<Seance> sameDay = seanceRepository.findByDateSeance(date);
 
         Formateur formateur = cours.getFormateur();
+        RoaringBitmap targetStudents = studentsOf(cours, groupe);
         for (Seance s : sameDay) {
             if (currentId != null && s.getId().equals(currentId)) continue;
             if (!overlaps(start, end, s.getHeureDebut(), s.getHeureFin())) continue;
@@ -152,9 +151,7 @@ public class SeanceRESTController {
                 }
             }
 
-            Set<Long> targetStudents = getStudentIdsFor(cours, groupe);
-            Set<Long> otherStudents = getStudentIdsFor(sc, s.getGroupe());
-            if (!targetStudents.isEmpty() && intersects(targetStudents, otherStudents)) {
+            if (MembershipIndex.intersects(targetStudents, studentsOf(sc, s.getGroupe()))) {
                 return true;
             }
         }
@@ -165,38 +162,21 @@ public class SeanceRESTController {
         return aStart.isBefore(bEnd) && aEnd.isAfter(bStart);
     }
 
-    private Set<Long> getStudentIdsFor(Cours cours, Groupe groupe) {
-        Set<Long> ids = new HashSet<>();
-        if (groupe != null && groupe.getEtudiants() != null && !groupe.getEtudiants().isEmpty()) {
-            for (Etudiant e : groupe.getEtudiants()) {
-                ids.add(e.getId());
-            }
-            return ids;
-        }
-        List<Inscription> inscriptions = inscriptionRepository.findByCours(cours);
-        for (Inscription insc : inscriptions) {
-            if (insc.getEtudiant() != null) {
-                ids.add(insc.getEtudiant().getId());
-            }
+    // Groupe members, or the course's enrolled students when the groupe is unset or empty
+    private RoaringBitmap studentsOf(Cours cours, Groupe groupe) {
+        if (groupe != null) {
+            RoaringBitmap members = membershipIndex.etudiantsOfGroupe(groupe.getId());
+            if (!members.isEmpty()) return members;
         }
-        return ids;
+        return cours == null ? new RoaringBitmap() : membershipIndex.etudiantsOfCours(cours.getCode());
     }
 
     private boolean belongsToStudent(Seance s, Etudiant etudiant) {
-        if (s.getGroupe() != null && s.getGroupe().getEtudiants() != null) {
-            return s.getGroupe().getEtudiants().stream()
-                .anyMatch(e -> e.getId().equals(etudiant.getId()));
+        if (s.getGroupe() != null) {
+            return membershipIndex.isMember(s.getGroupe().getId(), etudiant.getId());
         }
         if (s.getCours() == null) return false;
-        return inscriptionRepository.findByCours(s.getCours()).stream()
-            .anyMatch(i -> i.getEtudiant() != null && i.getEtudiant().getId().equals(etudiant.getId()));
-    }
-
-    private boolean intersects(Set<Long> a, Set<Long> b) {
-        for (Long id : a) {
-            if (b.contains(id)) return true;
-        }
-        return false;
+        return membershipIndex.isEnrolled(s.getCours().getCode(), etudiant.getId());
     }
 
     private boolean isAdmin(Principal principal) {
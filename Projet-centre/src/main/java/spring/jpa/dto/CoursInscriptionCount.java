@@ -0,0 +1,11 @@
+package spring.jpa.dto;
+
+// Projection for the most-followed courses report
+public interface CoursInscriptionCount {
+
+    String getCode();
+
+    String getTitre();
+
+    long getInscriptions();
+}
@@ -0,0 +1,42 @@
+package spring.jpa.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One roll-up line of the reporting cube; dimensions that were rolled up are null
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CubeRow {
+
+    private Long sessionId;
+    private Long specialiteId;
+    private Long groupeId;
+    private String cours;
+
+    private long effectif;
+    private double moyenne;
+    private double ecartType;
+    private double tauxReussite;
+
+    public CubeRow(Long sessionId, Long specialiteId, Long groupeId, String cours) {
+        this.sessionId = sessionId;
+        this.specialiteId = specialiteId;
+        this.groupeId = groupeId;
+        this.cours = cours;
+    }
+
+    public Long getSessionId() { return sessionId; }
+    public Long getSpecialiteId() { return specialiteId; }
+    public Long getGroupeId() { return groupeId; }
+    public String getCours() { return cours; }
+
+    public long getEffectif() { return effectif; }
+    public void setEffectif(long effectif) { this.effectif = effectif; }
+
+    public double getMoyenne() { return moyenne; }
+    public void setMoyenne(double moyenne) { this.moyenne = moyenne; }
+
+    public double getEcartType() { return ecartType; }
+    public void setEcartType(double ecartType) { this.ecartType = ecartType; }
+
+    public double getTauxReussite() { return tauxReussite; }
+    public void setTauxReussite(double tauxReussite) { this.tauxReussite = tauxReussite; }
+}
@@ -0,0 +1,50 @@
+package spring.jpa.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Summary statistics and histogram of one grade series (0-20)
+public class Distribution {
+
+    private long effectif;
+    private double moyenne;
+    private double mediane;
+    private double ecartType;
+    private double min;
+    private double max;
+    private List<Bucket> histogramme = new ArrayList<>();
+
+    public Distribution(long effectif, double moyenne, double mediane, double ecartType, double min, double max) {
+        this.effectif = effectif;
+        this.moyenne = moyenne;
+        this.mediane = mediane;
+        this.ecartType = ecartType;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getEffectif() { return effectif; }
+    public double getMoyenne() { return moyenne; }
+    public double getMediane() { return mediane; }
+    public double getEcartType() { return ecartType; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public List<Bucket> getHistogramme() { return histogramme; }
+
+    // [de, a) except the last bucket, which includes 20
+    public static class Bucket {
+        private final double de;
+        private final double a;
+        private final long effectif;
+
+        public Bucket(double de, double a, long effectif) {
+            this.de = de;
+            this.a = a;
+            this.effectif = effectif;
+        }
+
+        public double getDe() { return de; }
+        public double getA() { return a; }
+        public long getEffectif() { return effectif; }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 public class GroupeRequest {
     private String nom;
+    private Integer capacite;
     private Long sessionId;
     private Long specialiteId;
     private List<String> coursCodes;
@@ -12,6 +13,9 @@ public class GroupeRequest {
     public String getNom() { return nom; }
     public void setNom(String nom) { this.nom = nom; }
 
+    public Integer getCapacite() { return capacite; }
+    public void setCapacite(Integer capacite) { this.capacite = capacite; }
+
     public Long getSessionId() { return sessionId; }
     public void setSessionId(Long sessionId) { this.sessionId = sessionId; }
 
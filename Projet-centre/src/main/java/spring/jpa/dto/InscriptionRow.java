@@ -0,0 +1,40 @@
+package spring.jpa.dto;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+
+// One enrollment as the lookups return it; id and date are absent when it is
+// derived from groupe membership, as there is no inscription row to act on
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InscriptionRow {
+
+    private Long id;
+    private Date dateInscription;
+    private Etudiant etudiant;
+    private Cours cours;
+
+    public InscriptionRow(Long id, Date dateInscription, Etudiant etudiant, Cours cours) {
+        this.id = id;
+        this.dateInscription = dateInscription;
+        this.etudiant = etudiant;
+        this.cours = cours;
+    }
+
+    public static InscriptionRow of(Inscription i) {
+        return new InscriptionRow(i.getId(), i.getDateInscription(), i.getEtudiant(), i.getCours());
+    }
+
+    public static InscriptionRow derived(Etudiant etudiant, Cours cours) {
+        return new InscriptionRow(null, null, etudiant, cours);
+    }
+
+    public Long getId() { return id; }
+    public Date getDateInscription() { return dateInscription; }
+    public Etudiant getEtudiant() { return etudiant; }
+    public Cours getCours() { return cours; }
+}
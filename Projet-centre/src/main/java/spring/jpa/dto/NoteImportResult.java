@@ -0,0 +1,46 @@
+package spring.jpa.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a grade import: counters plus the rejected rows (capped)
+public class NoteImportResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int rowsRead;
+    private int created;
+    private int updated;
+    private int rejected;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void addError(int row, String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public void incrementRowsRead() { rowsRead++; }
+    public void incrementCreated() { created++; }
+    public void incrementUpdated() { updated++; }
+
+    public int getRowsRead() { return rowsRead; }
+    public int getCreated() { return created; }
+    public int getUpdated() { return updated; }
+    public int getRejected() { return rejected; }
+    public List<RowError> getErrors() { return errors; }
+
+    public static class RowError {
+        private final int row;
+        private final String message;
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() { return row; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,19 @@
+package spring.jpa.dto;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+// Optional paging of list endpoints: without page/size the whole list is returned
+public final class Paging {
+
+    public static final int DEFAULT_SIZE = 20;
+
+    private Paging() {
+    }
+
+    public static Pageable of(Integer page, Integer size, Sort sort) {
+        if (page == null && size == null) return Pageable.unpaged(sort);
+        return PageRequest.of(page == null ? 0 : Math.max(0, page), size == null ? DEFAULT_SIZE : Math.max(1, size), sort);
+    }
+}
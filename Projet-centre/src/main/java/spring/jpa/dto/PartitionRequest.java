@@ -0,0 +1,47 @@
+package spring.jpa.dto;
+
+import java.util.List;
+
+/**
+ * Automatic split of a specialite's students into new groupes of a session
+ * (POST /groupes/partition). Give nombre (groupes), taille (max students per
+ * groupe, also their capacite) or both.
+ */
+public class PartitionRequest {
+    private Long sessionId;
+    private Long specialiteId;
+    private Integer nombre;
+    private Integer taille;
+    // Spread the students' averages evenly over the groupes
+    private boolean equilibrer;
+    // Courses given to every new groupe
+    private List<String> coursCodes;
+    // Groupe names are "<prefixe> G<n>"; default "<specialite> <annee scolaire>"
+    private String prefixe;
+    // Preview only: nothing is written
+    private boolean dryRun;
+
+    public Long getSessionId() { return sessionId; }
+    public void setSessionId(Long sessionId) { this.sessionId = sessionId; }
+
+    public Long getSpecialiteId() { return specialiteId; }
+    public void setSpecialiteId(Long specialiteId) { this.specialiteId = specialiteId; }
+
+    public Integer getNombre() { return nombre; }
+    public void setNombre(Integer nombre) { this.nombre = nombre; }
+
+    public Integer getTaille() { return taille; }
+    public void setTaille(Integer taille) { this.taille = taille; }
+
+    public boolean isEquilibrer() { return equilibrer; }
+    public void setEquilibrer(boolean equilibrer) { this.equilibrer = equilibrer; }
+
+    public List<String> getCoursCodes() { return coursCodes; }
+    public void setCoursCodes(List<String> coursCodes) { this.coursCodes = coursCodes; }
+
+    public String getPrefixe() { return prefixe; }
+    public void setPrefixe(String prefixe) { this.prefixe = prefixe; }
+
+    public boolean isDryRun() { return dryRun; }
+    public void setDryRun(boolean dryRun) { this.dryRun = dryRun; }
+}
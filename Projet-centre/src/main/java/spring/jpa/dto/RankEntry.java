@@ -0,0 +1,33 @@
+package spring.jpa.dto;
+
+// One student's standing in a course, groupe or session
+public class RankEntry {
+
+    private int rang;
+    private int effectif;
+    private double percentile;
+    private Long etudiantId;
+    private String nom;
+    private String prenom;
+    private double moyenne;
+
+    public RankEntry(int rang, int effectif, double percentile, Long etudiantId, double moyenne) {
+        this.rang = rang;
+        this.effectif = effectif;
+        this.percentile = percentile;
+        this.etudiantId = etudiantId;
+        this.moyenne = moyenne;
+    }
+
+    public int getRang() { return rang; }
+    public int getEffectif() { return effectif; }
+    public double getPercentile() { return percentile; }
+    public Long getEtudiantId() { return etudiantId; }
+    public double getMoyenne() { return moyenne; }
+
+    public String getNom() { return nom; }
+    public void setNom(String nom) { this.nom = nom; }
+
+    public String getPrenom() { return prenom; }
+    public void setPrenom(String prenom) { this.prenom = prenom; }
+}
@@ -0,0 +1,70 @@
+package spring.jpa.dto;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// State of one asynchronous report job (see ReportJobService)
+public class ReportJob {
+
+    public enum Statut { EN_ATTENTE, EN_COURS, TERMINE, ECHEC }
+
+    private final String id;
+    private final String type;
+    private final Map<String, String> params;
+    private final String owner;
+    private final Date creeLe = new Date();
+
+    private volatile Statut statut = Statut.EN_ATTENTE;
+    private volatile Date termineLe;
+    private volatile boolean cache;
+    private volatile long taille;
+    private volatile String erreur;
+    private volatile Path fichier;
+    private volatile String artefact;
+
+    public ReportJob(String id, String type, Map<String, String> params, String owner) {
+        this.id = id;
+        this.type = type;
+        this.params = Map.copyOf(params);
+        this.owner = owner;
+    }
+
+    public String getId() { return id; }
+    public String getType() { return type; }
+    public Map<String, String> getParams() { return params; }
+    public Date getCreeLe() { return creeLe; }
+
+    @JsonIgnore
+    public String getOwner() { return owner; }
+
+    public Statut getStatut() { return statut; }
+    public void setStatut(Statut statut) { this.statut = statut; }
+
+    public Date getTermineLe() { return termineLe; }
+    public void setTermineLe(Date termineLe) { this.termineLe = termineLe; }
+
+    // True when the artifact was already in the store
+    public boolean isCache() { return cache; }
+    public void setCache(boolean cache) { this.cache = cache; }
+
+    public long getTaille() { return taille; }
+    public void setTaille(long taille) { this.taille = taille; }
+
+    public String getErreur() { return erreur; }
+    public void setErreur(String erreur) { this.erreur = erreur; }
+
+    @JsonIgnore
+    public Path getFichier() { return fichier; }
+    public void setFichier(Path fichier) { this.fichier = fichier; }
+
+    // Content hash of the artifact, also used as the download ETag
+    public String getArtefact() { return artefact; }
+    public void setArtefact(String artefact) { this.artefact = artefact; }
+
+    public String getDownloadUrl() {
+        return statut == Statut.TERMINE ? "/reports/jobs/" + id + "/download" : null;
+    }
+}
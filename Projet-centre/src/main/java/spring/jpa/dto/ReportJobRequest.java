@@ -0,0 +1,17 @@
+package spring.jpa.dto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Body of POST /reports/jobs, e.g. {"type": "notes-pdf", "params": {"cours": "INF101"}}
+public class ReportJobRequest {
+
+    private String type;
+    private Map<String, String> params = new HashMap<>();
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public Map<String, String> getParams() { return params; }
+    public void setParams(Map<String, String> params) { this.params = params == null ? new HashMap<>() : params; }
+}
@@ -0,0 +1,35 @@
+package spring.jpa.dto;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One bucket of the enrollment time series; cours / groupeId are null unless split on
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TimeseriesPoint {
+
+    private LocalDate periode;
+    private String cours;
+    private Long groupeId;
+
+    private long inscriptions;
+    private long desinscriptions;
+
+    public TimeseriesPoint(LocalDate periode, String cours, Long groupeId) {
+        this.periode = periode;
+        this.cours = cours;
+        this.groupeId = groupeId;
+    }
+
+    public LocalDate getPeriode() { return periode; }
+    public String getCours() { return cours; }
+    public Long getGroupeId() { return groupeId; }
+
+    public long getInscriptions() { return inscriptions; }
+    public void setInscriptions(long inscriptions) { this.inscriptions = inscriptions; }
+
+    public long getDesinscriptions() { return desinscriptions; }
+    public void setDesinscriptions(long desinscriptions) { this.desinscriptions = desinscriptions; }
+
+    public long getNet() { return inscriptions - desinscriptions; }
+}
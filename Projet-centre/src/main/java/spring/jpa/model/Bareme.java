@@ -0,0 +1,40 @@
+package spring.jpa.model;
+
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.DecimalMin;
+
+/**
+ * Grading scheme of a course: weight of each note component.
+ * Null coefficients fall back to the app.grading.coef.* defaults.
+ */
+@Embeddable
+public class Bareme {
+
+    @DecimalMin("0.0")
+    private Double coefExamen;
+
+    @DecimalMin("0.0")
+    private Double coefDs;
+
+    @DecimalMin("0.0")
+    private Double coefOral;
+
+    public Bareme() {
+        super();
+    }
+
+    public Bareme(Double coefExamen, Double coefDs, Double coefOral) {
+        this.coefExamen = coefExamen;
+        this.coefDs = coefDs;
+        this.coefOral = coefOral;
+    }
+
+    public Double getCoefExamen() { return coefExamen; }
+    public void setCoefExamen(Double coefExamen) { this.coefExamen = coefExamen; }
+
+    public Double getCoefDs() { return coefDs; }
+    public void setCoefDs(Double coefDs) { this.coefDs = coefDs; }
+
+    public Double getCoefOral() { return coefOral; }
+    public void setCoefOral(Double coefOral) { this.coefOral = coefOral; }
+}
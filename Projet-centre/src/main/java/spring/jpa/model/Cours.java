@@ -1,10 +1,13 @@
 package spring.jpa.model;
 
 import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import spring.jpa.service.DataVersionListener;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
 public class Cours {
 
     @Id
@@ -22,6 +25,14 @@ public class Cours {
 
     private boolean actif;
 
+    // Grading scheme and weight of the course in the student's overall average
+    @Embedded
+    private Bareme bareme;
+
+    // Null means 1 credit
+    @Min(0)
+    private Integer credits;
+
     public Cours() {
         super();
     }
@@ -49,4 +60,10 @@ public class Cours {
 
     public boolean isActif() { return actif; }
     public void setActif(boolean actif) { this.actif = actif; }
+
+    public Bareme getBareme() { return bareme; }
+    public void setBareme(Bareme bareme) { this.bareme = bareme; }
+
+    public Integer getCredits() { return credits; }
+    public void setCredits(Integer credits) { this.credits = credits; }
 }
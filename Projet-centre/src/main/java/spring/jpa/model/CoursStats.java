@@ -0,0 +1,32 @@
+package spring.jpa.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Grade summary of one course, maintained with every note/enrollment write
+ * (see GradeStatsService) so course reports are primary-key reads.
+ */
+@Entity
+public class CoursStats {
+
+    @Id
+    @Column(length = 10)
+    private String coursCode;
+
+    @Embedded
+    private NoteTotals totals = new NoteTotals();
+
+    public CoursStats() {
+        super();
+    }
+
+    public CoursStats(String coursCode) {
+        this.coursCode = coursCode;
+    }
+
+    public String getCoursCode() { return coursCode; }
+    public void setCoursCode(String coursCode) { this.coursCode = coursCode; }
+
+    public NoteTotals getTotals() { return totals; }
+    public void setTotals(NoteTotals totals) { this.totals = totals; }
+}
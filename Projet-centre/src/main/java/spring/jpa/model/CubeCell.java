@@ -0,0 +1,46 @@
+package spring.jpa.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Cell of the reporting cube, summarized on the course average. Groupe cells
+ * (session x specialite x groupe x cours) hold the enrollments of the groupe's
+ * students in the groupe's courses; groupe-free cells hold each of those
+ * enrollments once, whatever the number of its groupes. Maintained by
+ * ReportCubeService.
+ */
+@Entity
+@Table(name = "report_cube")
+public class CubeCell {
+
+    @EmbeddedId
+    private CubeCellKey id;
+
+    private long effectif;
+    private double somme;
+    private double sommeCarres;
+    private long reussis;
+
+    public CubeCell() {
+        super();
+    }
+
+    public CubeCell(CubeCellKey id) {
+        this.id = id;
+    }
+
+    public CubeCellKey getId() { return id; }
+    public void setId(CubeCellKey id) { this.id = id; }
+
+    public long getEffectif() { return effectif; }
+    public void setEffectif(long effectif) { this.effectif = effectif; }
+
+    public double getSomme() { return somme; }
+    public void setSomme(double somme) { this.somme = somme; }
+
+    public double getSommeCarres() { return sommeCarres; }
+    public void setSommeCarres(double sommeCarres) { this.sommeCarres = sommeCarres; }
+
+    public long getReussis() { return reussis; }
+    public void setReussis(long reussis) { this.reussis = reussis; }
+}
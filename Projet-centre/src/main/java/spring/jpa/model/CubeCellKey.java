@@ -0,0 +1,55 @@
+package spring.jpa.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Coordinates of a reporting cube cell. A groupe without session or
+ * specialite uses 0 for that dimension (key columns cannot be null).
+ * Groupe-free cells use ALL for the groupe, and for a session or specialite
+ * they span.
+ */
+@Embeddable
+public class CubeCellKey implements Serializable {
+
+    public static final long ALL = -1;
+
+    private long sessionId;
+    private long specialiteId;
+    private long groupeId;
+
+    @Column(length = 10)
+    private String coursCode;
+
+    public CubeCellKey() {
+        super();
+    }
+
+    public CubeCellKey(long sessionId, long specialiteId, long groupeId, String coursCode) {
+        this.sessionId = sessionId;
+        this.specialiteId = specialiteId;
+        this.groupeId = groupeId;
+        this.coursCode = coursCode;
+    }
+
+    public long getSessionId() { return sessionId; }
+    public long getSpecialiteId() { return specialiteId; }
+    public long getGroupeId() { return groupeId; }
+    public String getCoursCode() { return coursCode; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CubeCellKey k)) return false;
+        return sessionId == k.sessionId && specialiteId == k.specialiteId
+            && groupeId == k.groupeId && Objects.equals(coursCode, k.coursCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sessionId, specialiteId, groupeId, coursCode);
+    }
+}
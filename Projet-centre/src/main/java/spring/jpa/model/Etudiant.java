@@ -11,8 +11,10 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import spring.jpa.service.DataVersionListener;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
 public class Etudiant {
 
     @Id
@@ -0,0 +1,45 @@
+package spring.jpa.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Grade summary of one student, maintained with every note/enrollment write
+ * (see GradeStatsService). The overall average is sumMoyennePonderee / credits.
+ */
+@Entity
+public class EtudiantStats {
+
+    @Id
+    private Long etudiantId;
+
+    // Credits of the enrolled courses and sum of credits * course average
+    private double credits;
+    private double sumMoyennePonderee;
+
+    @Embedded
+    private NoteTotals totals = new NoteTotals();
+
+    public EtudiantStats() {
+        super();
+    }
+
+    public EtudiantStats(Long etudiantId) {
+        this.etudiantId = etudiantId;
+    }
+
+    public double getMoyenne() {
+        return credits > 0 ? sumMoyennePonderee / credits : 0.0;
+    }
+
+    public Long getEtudiantId() { return etudiantId; }
+    public void setEtudiantId(Long etudiantId) { this.etudiantId = etudiantId; }
+
+    public double getCredits() { return credits; }
+    public void setCredits(double credits) { this.credits = credits; }
+
+    public double getSumMoyennePonderee() { return sumMoyennePonderee; }
+    public void setSumMoyennePonderee(double sumMoyennePonderee) { this.sumMoyennePonderee = sumMoyennePonderee; }
+
+    public NoteTotals getTotals() { return totals; }
+    public void setTotals(NoteTotals totals) { this.totals = totals; }
+}
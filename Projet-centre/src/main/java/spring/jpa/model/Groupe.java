@@ -9,8 +9,10 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import spring.jpa.service.DataVersionListener;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Groupe {
 
@@ -22,6 +24,14 @@ public class Groupe {
     @Size(min = 2, max = 50)
     private String nom;
 
+    // Seat limit of the self-service selection; null = unlimited
+    private Integer capacite;
+
+    // Number of members, kept by GroupePlacesService's conditional updates;
+    // never written by an entity save, so a stale copy cannot undo a claim
+    @Column(nullable = false, updatable = false)
+    private int effectif;
+
     @ManyToOne
     private SessionPedagogique session;
 
@@ -58,6 +68,11 @@ public class Groupe {
     public String getNom() { return nom; }
     public void setNom(String nom) { this.nom = nom; }
 
+    public Integer getCapacite() { return capacite; }
+    public void setCapacite(Integer capacite) { this.capacite = capacite; }
+
+    public int getEffectif() { return effectif; }
+
     public SessionPedagogique getSession() { return session; }
     public void setSession(SessionPedagogique session) { this.session = session; }
 
@@ -0,0 +1,46 @@
+package spring.jpa.model;
+
+import java.util.Date;
+
+import jakarta.persistence.*;
+
+/**
+ * A student waiting for a seat in a full groupe. The id gives the queue
+ * order: the lowest id of a groupe is promoted first (GroupePlacesService).
+ */
+@Entity
+@Table(name = "groupe_attente",
+    uniqueConstraints = @UniqueConstraint(columnNames = { "groupe_id", "etudiant_id" }),
+    indexes = @Index(columnList = "groupe_id, id"))
+public class GroupeAttente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "groupe_id", nullable = false)
+    private Long groupeId;
+
+    @Column(name = "etudiant_id", nullable = false)
+    private Long etudiantId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date dateDemande = new Date();
+
+    public GroupeAttente() {
+        super();
+    }
+
+    public GroupeAttente(Long groupeId, Long etudiantId) {
+        this.groupeId = groupeId;
+        this.etudiantId = etudiantId;
+    }
+
+    public Long getId() { return id; }
+
+    public Long getGroupeId() { return groupeId; }
+
+    public Long getEtudiantId() { return etudiantId; }
+
+    public Date getDateDemande() { return dateDemande; }
+}
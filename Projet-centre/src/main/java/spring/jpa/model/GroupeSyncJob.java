@@ -0,0 +1,154 @@
+package spring.jpa.model;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
+import jakarta.persistence.*;
+
+/**
+ * Pending or finished reconciliation of a groupe's inscriptions, queued by
+ * the groupe write paths and run by GroupeSyncService. Holds the membership
+ * the groupe had before the change; the new one is read when the job runs.
+ *
+ * A job of scope ETUDIANTS (or COURS) is restricted to its target students
+ * (or courses): the old students (or courses) it holds are the targets that
+ * were members, next to all the groupe's courses (or students) at the time.
+ */
+@Entity
+@Table(name = "groupe_sync_job", indexes = @Index(columnList = "statut, id"))
+public class GroupeSyncJob {
+
+    public enum Statut { EN_ATTENTE, EN_COURS, TERMINE, ECHEC }
+
+    public enum Portee { GROUPE, ETUDIANTS, COURS }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long groupeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 12)
+    private Statut statut = Statut.EN_ATTENTE;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Portee portee = Portee.GROUPE;
+
+    // Collections are loaded by one query each for all the jobs read, not joined
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "groupe_sync_job_etudiant", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "etudiant_id")
+    private Set<Long> anciensEtudiants = new HashSet<>();
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "groupe_sync_job_cours", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "cours_code", length = 10)
+    private Set<String> anciensCours = new HashSet<>();
+
+    // Targets of an ETUDIANTS / COURS job
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "groupe_sync_job_etudiant_cible", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "etudiant_id")
+    private Set<Long> etudiantsCibles = new HashSet<>();
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "groupe_sync_job_cours_cible", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "cours_code", length = 10)
+    private Set<String> coursCibles = new HashSet<>();
+
+    private int tentatives;
+
+    @Column(length = 1000)
+    private String erreur;
+
+    private int inscrites;
+    private int retirees;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creeLe = new Date();
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date prochainEssai;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date termineLe;
+
+    public GroupeSyncJob() {
+        super();
+    }
+
+    public GroupeSyncJob(Long groupeId, Set<Long> anciensEtudiants, Set<String> anciensCours) {
+        this.groupeId = groupeId;
+        this.anciensEtudiants = new HashSet<>(anciensEtudiants);
+        this.anciensCours = new HashSet<>(anciensCours);
+    }
+
+    public static GroupeSyncJob ofEtudiants(Long groupeId, Set<Long> cibles, Set<Long> anciens, Set<String> cours) {
+        GroupeSyncJob job = new GroupeSyncJob(groupeId, anciens, cours);
+        job.portee = Portee.ETUDIANTS;
+        job.etudiantsCibles.addAll(cibles);
+        return job;
+    }
+
+    public static GroupeSyncJob ofCours(Long groupeId, Set<String> cibles, Set<String> anciens, Set<Long> etudiants) {
+        GroupeSyncJob job = new GroupeSyncJob(groupeId, etudiants, anciens);
+        job.portee = Portee.COURS;
+        job.coursCibles.addAll(cibles);
+        return job;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getGroupeId() { return groupeId; }
+    public void setGroupeId(Long groupeId) { this.groupeId = groupeId; }
+
+    public Statut getStatut() { return statut; }
+    public void setStatut(Statut statut) { this.statut = statut; }
+
+    public Portee getPortee() { return portee; }
+    public void setPortee(Portee portee) { this.portee = portee; }
+
+    public Set<Long> getEtudiantsCibles() { return etudiantsCibles; }
+    public void setEtudiantsCibles(Set<Long> etudiantsCibles) { this.etudiantsCibles = etudiantsCibles; }
+
+    public Set<String> getCoursCibles() { return coursCibles; }
+    public void setCoursCibles(Set<String> coursCibles) { this.coursCibles = coursCibles; }
+
+    public Set<Long> getAnciensEtudiants() { return anciensEtudiants; }
+    public void setAnciensEtudiants(Set<Long> anciensEtudiants) { this.anciensEtudiants = anciensEtudiants; }
+
+    public Set<String> getAnciensCours() { return anciensCours; }
+    public void setAnciensCours(Set<String> anciensCours) { this.anciensCours = anciensCours; }
+
+    public int getTentatives() { return tentatives; }
+    public void setTentatives(int tentatives) { this.tentatives = tentatives; }
+
+    public String getErreur() { return erreur; }
+    public void setErreur(String erreur) { this.erreur = erreur; }
+
+    public int getInscrites() { return inscrites; }
+    public void setInscrites(int inscrites) { this.inscrites = inscrites; }
+
+    public int getRetirees() { return retirees; }
+    public void setRetirees(int retirees) { this.retirees = retirees; }
+
+    public Date getCreeLe() { return creeLe; }
+    public void setCreeLe(Date creeLe) { this.creeLe = creeLe; }
+
+    public Date getProchainEssai() { return prochainEssai; }
+    public void setProchainEssai(Date prochainEssai) { this.prochainEssai = prochainEssai; }
+
+    public Date getTermineLe() { return termineLe; }
+    public void setTermineLe(Date termineLe) { this.termineLe = termineLe; }
+}
@@ -4,8 +4,10 @@ import java.util.Date;
 
 import jakarta.persistence.*;
 import org.springframework.format.annotation.DateTimeFormat;
+import spring.jpa.service.DataVersionListener;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
 public class Inscription {
 
     @Id
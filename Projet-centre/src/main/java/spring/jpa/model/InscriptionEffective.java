@@ -0,0 +1,54 @@
+package spring.jpa.model;
+
+import java.util.Date;
+
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+
+import jakarta.persistence.*;
+
+/**
+ * Read-only enrollment, as the reports see it: one row per (etudiant, cours).
+ *
+ * Backed by the inscription_effective view (see EnrollmentMode), which is the
+ * inscription table itself in the default mode and the groupe membership
+ * (groupe_etudiant x groupe_cours) in derived mode. Writes go to
+ * {@link Inscription}.
+ */
+@Entity
+@Immutable
+@Subselect("select * from inscription_effective")
+@Synchronize({ "inscription", "groupe_etudiant", "groupe_cours" })
+public class InscriptionEffective {
+
+    // Inscription id, or "etudiant-cours" in derived mode
+    @Id
+    private String cle;
+
+    // Null in derived mode
+    private Long inscriptionId;
+
+    @Temporal(TemporalType.DATE)
+    private Date dateInscription;
+
+    @ManyToOne
+    private Etudiant etudiant;
+
+    @ManyToOne
+    private Cours cours;
+
+    public InscriptionEffective() {
+        super();
+    }
+
+    public String getCle() { return cle; }
+
+    public Long getInscriptionId() { return inscriptionId; }
+
+    public Date getDateInscription() { return dateInscription; }
+
+    public Etudiant getEtudiant() { return etudiant; }
+
+    public Cours getCours() { return cours; }
+}
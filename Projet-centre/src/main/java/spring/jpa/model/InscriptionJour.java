@@ -0,0 +1,35 @@
+package spring.jpa.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Enrollments made and withdrawn on one day, per course and per groupe.
+ * Maintained by EnrollmentTimeseriesService.
+ */
+@Entity
+@Table(name = "inscription_daily")
+public class InscriptionJour {
+
+    @EmbeddedId
+    private InscriptionJourKey id;
+
+    private long inscriptions;
+    private long desinscriptions;
+
+    public InscriptionJour() {
+        super();
+    }
+
+    public InscriptionJour(InscriptionJourKey id) {
+        this.id = id;
+    }
+
+    public InscriptionJourKey getId() { return id; }
+    public void setId(InscriptionJourKey id) { this.id = id; }
+
+    public long getInscriptions() { return inscriptions; }
+    public void setInscriptions(long inscriptions) { this.inscriptions = inscriptions; }
+
+    public long getDesinscriptions() { return desinscriptions; }
+    public void setDesinscriptions(long desinscriptions) { this.desinscriptions = desinscriptions; }
+}
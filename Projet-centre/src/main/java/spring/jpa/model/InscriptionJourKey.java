@@ -0,0 +1,49 @@
+package spring.jpa.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Day, course and groupe of an enrollment rollup row. groupeId 0 is the
+ * course total (every enrollment once, with or without a groupe).
+ */
+@Embeddable
+public class InscriptionJourKey implements Serializable {
+
+    private LocalDate jour;
+
+    @Column(length = 10)
+    private String coursCode;
+
+    private long groupeId;
+
+    public InscriptionJourKey() {
+        super();
+    }
+
+    public InscriptionJourKey(LocalDate jour, String coursCode, long groupeId) {
+        this.jour = jour;
+        this.coursCode = coursCode;
+        this.groupeId = groupeId;
+    }
+
+    public LocalDate getJour() { return jour; }
+    public String getCoursCode() { return coursCode; }
+    public long getGroupeId() { return groupeId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InscriptionJourKey k)) return false;
+        return groupeId == k.groupeId && Objects.equals(jour, k.jour) && Objects.equals(coursCode, k.coursCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(jour, coursCode, groupeId);
+    }
+}
@@ -2,8 +2,13 @@ package spring.jpa.model;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
+import spring.jpa.service.DataVersionListener;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
+// One note per etudiant and cours: the grade writes upsert on the pair
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_note_etudiant_cours",
+    columnNames = { "etudiant_id", "cours_code" }))
 public class Note {
 
     @Id
@@ -23,6 +28,11 @@ public class Note {
     @DecimalMin("0.0")
     private double noteOral;
 
+    // Notes are sparse: a row only exists once a grade has been entered.
+    // Enrolled students without a row read as an ungraded 0/0/0 note.
+    // Rows older than the column are fixed at startup (LegacyNotesMigration).
+    private boolean graded;
+
     @ManyToOne
     private Etudiant etudiant;
 
@@ -59,6 +69,9 @@ public class Note {
     public double getNoteOral() { return noteOral; }
     public void setNoteOral(double noteOral) { this.noteOral = noteOral; }
 
+    public boolean isGraded() { return graded; }
+    public void setGraded(boolean graded) { this.graded = graded; }
+
     public Etudiant getEtudiant() { return etudiant; }
     public void setEtudiant(Etudiant etudiant) { this.etudiant = etudiant; }
 
@@ -0,0 +1,93 @@
+package spring.jpa.model;
+
+import jakarta.persistence.Embeddable;
+
+/**
+ * Running totals of grades over a set of enrollments (a course or a student).
+ * Enrollments without a note count in inscrits only (their grades read as 0).
+ * Pass counters use the 10/20 pass mark, per component and for the weighted average.
+ */
+@Embeddable
+public class NoteTotals {
+
+    private long inscrits;
+    private long notes;
+
+    private double sumExamen;
+    private double sumDs;
+    private double sumOral;
+    private double sumMoyenne;
+
+    private long passExamen;
+    private long passDs;
+    private long passOral;
+    private long passMoyenne;
+
+    public NoteTotals() {
+        super();
+    }
+
+    public void add(NoteTotals o) {
+        inscrits += o.inscrits;
+        notes += o.notes;
+        sumExamen += o.sumExamen;
+        sumDs += o.sumDs;
+        sumOral += o.sumOral;
+        sumMoyenne += o.sumMoyenne;
+        passExamen += o.passExamen;
+        passDs += o.passDs;
+        passOral += o.passOral;
+        passMoyenne += o.passMoyenne;
+    }
+
+    public NoteTotals negate() {
+        NoteTotals n = new NoteTotals();
+        n.inscrits = -inscrits;
+        n.notes = -notes;
+        n.sumExamen = -sumExamen;
+        n.sumDs = -sumDs;
+        n.sumOral = -sumOral;
+        n.sumMoyenne = -sumMoyenne;
+        n.passExamen = -passExamen;
+        n.passDs = -passDs;
+        n.passOral = -passOral;
+        n.passMoyenne = -passMoyenne;
+        return n;
+    }
+
+    public boolean isZero() {
+        return inscrits == 0 && notes == 0
+            && sumExamen == 0 && sumDs == 0 && sumOral == 0 && sumMoyenne == 0
+            && passExamen == 0 && passDs == 0 && passOral == 0 && passMoyenne == 0;
+    }
+
+    public long getInscrits() { return inscrits; }
+    public void setInscrits(long inscrits) { this.inscrits = inscrits; }
+
+    public long getNotes() { return notes; }
+    public void setNotes(long notes) { this.notes = notes; }
+
+    public double getSumExamen() { return sumExamen; }
+    public void setSumExamen(double sumExamen) { this.sumExamen = sumExamen; }
+
+    public double getSumDs() { return sumDs; }
+    public void setSumDs(double sumDs) { this.sumDs = sumDs; }
+
+    public double getSumOral() { return sumOral; }
+    public void setSumOral(double sumOral) { this.sumOral = sumOral; }
+
+    public double getSumMoyenne() { return sumMoyenne; }
+    public void setSumMoyenne(double sumMoyenne) { this.sumMoyenne = sumMoyenne; }
+
+    public long getPassExamen() { return passExamen; }
+    public void setPassExamen(long passExamen) { this.passExamen = passExamen; }
+
+    public long getPassDs() { return passDs; }
+    public void setPassDs(long passDs) { this.passDs = passDs; }
+
+    public long getPassOral() { return passOral; }
+    public void setPassOral(long passOral) { this.passOral = passOral; }
+
+    public long getPassMoyenne() { return passMoyenne; }
+    public void setPassMoyenne(long passMoyenne) { this.passMoyenne = passMoyenne; }
+}
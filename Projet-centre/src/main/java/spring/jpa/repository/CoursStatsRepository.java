@@ -0,0 +1,35 @@
+package spring.jpa.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.CoursStats;
+import spring.jpa.model.NoteTotals;
+
+public interface CoursStatsRepository extends JpaRepository<CoursStats, String> {
+
+    // Atomic in-place increment, safe under concurrent writers
+    @Modifying
+    @Query("update CoursStats s set "
+        + "s.totals.inscrits = s.totals.inscrits + :#{#d.inscrits}, "
+        + "s.totals.notes = s.totals.notes + :#{#d.notes}, "
+        + "s.totals.sumExamen = s.totals.sumExamen + :#{#d.sumExamen}, "
+        + "s.totals.sumDs = s.totals.sumDs + :#{#d.sumDs}, "
+        + "s.totals.sumOral = s.totals.sumOral + :#{#d.sumOral}, "
+        + "s.totals.sumMoyenne = s.totals.sumMoyenne + :#{#d.sumMoyenne}, "
+        + "s.totals.passExamen = s.totals.passExamen + :#{#d.passExamen}, "
+        + "s.totals.passDs = s.totals.passDs + :#{#d.passDs}, "
+        + "s.totals.passOral = s.totals.passOral + :#{#d.passOral}, "
+        + "s.totals.passMoyenne = s.totals.passMoyenne + :#{#d.passMoyenne} "
+        + "where s.coursCode = :code")
+    int applyDelta(@Param("code") String code, @Param("d") NoteTotals d);
+
+    // Empty row for a first delta; a no-op when a concurrent writer created it first
+    @Modifying
+    @Query(value = "insert into cours_stats (cours_code, inscrits, notes, sum_examen, sum_ds, sum_oral, sum_moyenne, "
+        + "pass_examen, pass_ds, pass_oral, pass_moyenne) values (:code, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0) "
+        + "on duplicate key update inscrits = inscrits", nativeQuery = true)
+    int insertIfAbsent(@Param("code") String code);
+}
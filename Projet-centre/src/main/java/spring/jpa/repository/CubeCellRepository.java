@@ -0,0 +1,117 @@
+package spring.jpa.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.CubeCell;
+import spring.jpa.model.CubeCellKey;
+
+public interface CubeCellRepository extends JpaRepository<CubeCell, CubeCellKey> {
+
+    // Atomic in-place increment, safe under concurrent writers
+    @Modifying
+    @Query("update CubeCell c set c.effectif = c.effectif + :effectif, c.somme = c.somme + :somme, "
+        + "c.sommeCarres = c.sommeCarres + :sommeCarres, c.reussis = c.reussis + :reussis "
+        + "where c.id = :id")
+    int applyDelta(@Param("id") CubeCellKey id,
+                   @Param("effectif") long effectif,
+                   @Param("somme") double somme,
+                   @Param("sommeCarres") double sommeCarres,
+                   @Param("reussis") long reussis);
+
+    // Empty cell for a first delta; a no-op when a concurrent writer created it first
+    @Modifying
+    @Query(value = "insert into report_cube (session_id, specialite_id, groupe_id, cours_code, "
+        + "effectif, somme, somme_carres, reussis) values (:sessionId, :specialiteId, :groupeId, :cours, 0, 0, 0, 0) "
+        + "on duplicate key update effectif = effectif", nativeQuery = true)
+    int insertIfAbsent(@Param("sessionId") long sessionId,
+                       @Param("specialiteId") long specialiteId,
+                       @Param("groupeId") long groupeId,
+                       @Param("cours") String cours);
+
+    // Filtered groupe cells for a roll-up (null = no filter)
+    @Query("select c from CubeCell c where c.id.groupeId <> " + CubeCellKey.ALL + " "
+        + "and (:sessionId is null or c.id.sessionId = :sessionId) "
+        + "and (:specialiteId is null or c.id.specialiteId = :specialiteId) "
+        + "and (:groupeId is null or c.id.groupeId = :groupeId) "
+        + "and (:cours is null or c.id.coursCode = :cours)")
+    List<CubeCell> findCells(@Param("sessionId") Long sessionId,
+                             @Param("specialiteId") Long specialiteId,
+                             @Param("groupeId") Long groupeId,
+                             @Param("cours") String cours);
+
+    // Filtered groupe-free cells: a null session or specialite selects every
+    // value of that dimension, CubeCellKey.ALL the cells that span them all
+    @Query("select c from CubeCell c where c.id.groupeId = " + CubeCellKey.ALL + " "
+        + "and (:sessionId is null and c.id.sessionId <> " + CubeCellKey.ALL + " or c.id.sessionId = :sessionId) "
+        + "and (:specialiteId is null and c.id.specialiteId <> " + CubeCellKey.ALL + " or c.id.specialiteId = :specialiteId) "
+        + "and (:cours is null or c.id.coursCode = :cours)")
+    List<CubeCell> findTotals(@Param("sessionId") Long sessionId,
+                              @Param("specialiteId") Long specialiteId,
+                              @Param("cours") String cours);
+
+    // Groupe-free cells of these courses
+    @Query("select c from CubeCell c where c.id.groupeId = " + CubeCellKey.ALL + " and c.id.coursCode in :codes")
+    List<CubeCell> findTotalsByCours(@Param("codes") Collection<String> codes);
+
+    // Every cell of a course, both grains
+    List<CubeCell> findByIdCoursCode(String coursCode);
+
+    // Cells of the groupes containing these (etudiant, cours) pairs:
+    // {session id, specialite id, groupe id, etudiant id, cours code}
+    @Query("select g.session.id, g.specialite.id, g.id, e.id, c.code "
+        + "from Groupe g join g.etudiants e join g.cours c "
+        + "where e.id in :etudiantIds and c.code in :codes")
+    List<Object[]> findMemberships(@Param("etudiantIds") Collection<Long> etudiantIds,
+                                   @Param("codes") Collection<String> codes);
+
+    // Cell values recomputed from the enrollments, see NoteRepository.ROW_AVERAGE:
+    // {session id, specialite id, groupe id, cours code, effectif, somme, somme carres, reussis}
+    String CELLS = "select g.session.id, g.specialite.id, g.id, c.code, count(i), "
+        + "sum(" + NoteRepository.ROW_AVERAGE + "), "
+        + "sum(" + NoteRepository.ROW_AVERAGE + " * " + NoteRepository.ROW_AVERAGE + "), "
+        + "sum(case when " + NoteRepository.ROW_AVERAGE + " >= 10 then 1 else 0 end) "
+        + "from Groupe g join g.etudiants e join g.cours c "
+        + "join InscriptionEffective i on i.etudiant = e and i.cours = c "
+        + "left join Note n on n.etudiant = e and n.cours = c ";
+
+    @Query(CELLS + "group by g.session.id, g.specialite.id, g.id, c.code")
+    List<Object[]> aggregateCells(@Param("coefExamen") double coefExamen,
+                                  @Param("coefDs") double coefDs,
+                                  @Param("coefOral") double coefOral);
+
+    @Query(CELLS + "where c.code = :code group by g.session.id, g.specialite.id, g.id, c.code")
+    List<Object[]> aggregateCellsByCours(@Param("code") String code,
+                                         @Param("coefExamen") double coefExamen,
+                                         @Param("coefDs") double coefDs,
+                                         @Param("coefOral") double coefOral);
+
+    @Query(CELLS + "where g.id = :groupeId group by g.session.id, g.specialite.id, g.id, c.code")
+    List<Object[]> aggregateCellsByGroupe(@Param("groupeId") Long groupeId,
+                                          @Param("coefExamen") double coefExamen,
+                                          @Param("coefDs") double coefDs,
+                                          @Param("coefOral") double coefOral);
+
+    // One row per groupe membership of an enrollment, grouped by enrollment:
+    // {session id, specialite id, etudiant id, cours code, average}
+    String PAIRS = "select g.session.id, g.specialite.id, e.id, c.code, " + NoteRepository.ROW_AVERAGE + " "
+        + "from Groupe g join g.etudiants e join g.cours c "
+        + "join InscriptionEffective i on i.etudiant = e and i.cours = c "
+        + "left join Note n on n.etudiant = e and n.cours = c ";
+
+    @Query(PAIRS + "order by e.id, c.code")
+    List<Object[]> findPairs(@Param("coefExamen") double coefExamen,
+                             @Param("coefDs") double coefDs,
+                             @Param("coefOral") double coefOral);
+
+    @Query(PAIRS + "where c.code in :codes order by e.id, c.code")
+    List<Object[]> findPairsByCours(@Param("codes") Collection<String> codes,
+                                    @Param("coefExamen") double coefExamen,
+                                    @Param("coefDs") double coefDs,
+                                    @Param("coefOral") double coefOral);
+}
@@ -0,0 +1,33 @@
+package spring.jpa.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import spring.jpa.dto.InscriptionRow;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+
+/**
+ * Enrollment lookups of {@link InscriptionRepository} that follow the
+ * enrollment mode (see spring.jpa.service.EnrollmentMode): the inscription
+ * table when enrollments are materialized, groupe membership when they are
+ * derived. In derived mode the returned rows have no id and no date, as
+ * there is no inscription to cancel or edit.
+ */
+public interface EnrollmentLookup {
+
+    // Vérifier si un étudiant est déjà inscrit à un cours
+    boolean existsByEtudiantAndCours(Etudiant etudiant, Cours cours);
+
+    // Retrieve all inscriptions for a specific Etudiant (used by ETUDIANT role)
+    List<InscriptionRow> findByEtudiant(Etudiant etudiant);
+
+    // Retrieve all inscriptions for a specific Cours (used by FORMATEUR role)
+    List<InscriptionRow> findByCours(Cours cours);
+
+    // Which of the given students are enrolled in the course
+    List<Long> findEnrolledEtudiantIds(Cours cours, Collection<Long> etudiantIds);
+
+    // Whether there is any enrollment at all
+    boolean hasEnrollments();
+}
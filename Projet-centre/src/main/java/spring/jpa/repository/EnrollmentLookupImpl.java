@@ -0,0 +1,94 @@
+package spring.jpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import spring.jpa.dto.InscriptionRow;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+import spring.jpa.service.EnrollmentMode;
+
+@Transactional(readOnly = true)
+class EnrollmentLookupImpl implements EnrollmentLookup {
+
+    // Pairs covered by a groupe: indexed joins over groupe_etudiant and groupe_cours.
+    // DISTINCT because a pair may be covered by several groupes.
+    private static final String MEMBERSHIP = "from Groupe g join g.etudiants e join g.cours c ";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final EnrollmentMode mode;
+
+    EnrollmentLookupImpl(EnrollmentMode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public boolean existsByEtudiantAndCours(Etudiant etudiant, Cours cours) {
+        String jpql = mode.isDerived()
+            ? "select 1 " + MEMBERSHIP + "where e = :etudiant and c = :cours"
+            : "select 1 from Inscription i where i.etudiant = :etudiant and i.cours = :cours";
+        return !em.createQuery(jpql, Integer.class)
+            .setParameter("etudiant", etudiant)
+            .setParameter("cours", cours)
+            .setMaxResults(1)
+            .getResultList().isEmpty();
+    }
+
+    @Override
+    public List<InscriptionRow> findByEtudiant(Etudiant etudiant) {
+        if (!mode.isDerived()) {
+            return em.createQuery("select i from Inscription i where i.etudiant = :etudiant", Inscription.class)
+                .setParameter("etudiant", etudiant)
+                .getResultList().stream().map(InscriptionRow::of).toList();
+        }
+        List<InscriptionRow> result = new ArrayList<>();
+        for (Cours c : em.createQuery("select distinct c " + MEMBERSHIP + "where e = :etudiant", Cours.class)
+                .setParameter("etudiant", etudiant)
+                .getResultList()) {
+            result.add(InscriptionRow.derived(etudiant, c));
+        }
+        return result;
+    }
+
+    @Override
+    public List<InscriptionRow> findByCours(Cours cours) {
+        if (!mode.isDerived()) {
+            return em.createQuery("select i from Inscription i where i.cours = :cours", Inscription.class)
+                .setParameter("cours", cours)
+                .getResultList().stream().map(InscriptionRow::of).toList();
+        }
+        List<InscriptionRow> result = new ArrayList<>();
+        for (Etudiant e : em.createQuery("select distinct e " + MEMBERSHIP + "where c = :cours", Etudiant.class)
+                .setParameter("cours", cours)
+                .getResultList()) {
+            result.add(InscriptionRow.derived(e, cours));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Long> findEnrolledEtudiantIds(Cours cours, Collection<Long> etudiantIds) {
+        if (etudiantIds.isEmpty()) return List.of();
+        String jpql = mode.isDerived()
+            ? "select distinct e.id " + MEMBERSHIP + "where c = :cours and e.id in :etudiantIds"
+            : "select i.etudiant.id from Inscription i where i.cours = :cours and i.etudiant.id in :etudiantIds";
+        return em.createQuery(jpql, Long.class)
+            .setParameter("cours", cours)
+            .setParameter("etudiantIds", etudiantIds)
+            .getResultList();
+    }
+
+    @Override
+    public boolean hasEnrollments() {
+        String jpql = mode.isDerived() ? "select 1 " + MEMBERSHIP : "select 1 from Inscription i";
+        return !em.createQuery(jpql, Integer.class).setMaxResults(1).getResultList().isEmpty();
+    }
+}
@@ -1,9 +1,19 @@
 package spring.jpa.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
 import spring.jpa.model.Etudiant;
 
 public interface EtudiantRepository extends JpaRepository<Etudiant, Long> {
@@ -13,4 +23,36 @@ public interface EtudiantRepository extends JpaRepository<Etudiant, Long> {
 
     // Recherche par nom seulement
     Page<Etudiant> findByNomLike(String mc, Pageable pageable);
+
+    // Batch lookups used by the grade import
+    List<Etudiant> findByMatriculeIn(Collection<String> matricules);
+
+    List<Etudiant> findByEmailIn(Collection<String> emails);
+
+    // {id, nom, prenom} without loading the entities (bulk reports)
+    @Query("select e.id, e.nom, e.prenom from Etudiant e where e.id in :ids")
+    List<Object[]> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Partition candidates: students of the specialite in no groupe of the session yet,
+    // with their grade summary (null when they have none): id, nom, prenom, sum, credits
+    @Query("select e.id, e.nom, e.prenom, s.sumMoyennePonderee, s.credits "
+        + "from Etudiant e left join EtudiantStats s on s.etudiantId = e.id "
+        + "where e.specialite.id = :specialiteId "
+        + "and e not in (select ge from Groupe g join g.etudiants ge where g.session.id = :sessionId) "
+        + "order by e.nom, e.prenom, e.id")
+    List<Object[]> findPartitionCandidates(@Param("specialiteId") Long specialiteId,
+                                           @Param("sessionId") Long sessionId);
+
+    // Export rows: id, matricule, nom, prenom, email, date inscription, actif, specialite.
+    // Filters (null = off): enrolled in the course, member of the groupe / of a groupe of the session.
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select e.id, e.matricule, e.nom, e.prenom, e.email, e.dateInscription, e.actif, sp.nom "
+        + "from Etudiant e left join e.specialite sp "
+        + "where (:cours is null or e in (select i.etudiant from InscriptionEffective i where i.cours.code = :cours)) "
+        + "and (:groupeId is null or e in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId)) "
+        + "and (:sessionId is null or e in (select se from Groupe s join s.etudiants se where s.session.id = :sessionId)) "
+        + "order by e.nom, e.prenom, e.id")
+    Stream<Object[]> streamExportRows(@Param("cours") String cours,
+                                      @Param("groupeId") Long groupeId,
+                                      @Param("sessionId") Long sessionId);
 }
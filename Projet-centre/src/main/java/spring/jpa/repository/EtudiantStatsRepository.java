@@ -0,0 +1,39 @@
+package spring.jpa.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.EtudiantStats;
+import spring.jpa.model.NoteTotals;
+
+public interface EtudiantStatsRepository extends JpaRepository<EtudiantStats, Long> {
+
+    // Atomic in-place increment, safe under concurrent writers
+    @Modifying
+    @Query("update EtudiantStats s set "
+        + "s.credits = s.credits + :credits, "
+        + "s.sumMoyennePonderee = s.sumMoyennePonderee + :ponderee, "
+        + "s.totals.inscrits = s.totals.inscrits + :#{#d.inscrits}, "
+        + "s.totals.notes = s.totals.notes + :#{#d.notes}, "
+        + "s.totals.sumExamen = s.totals.sumExamen + :#{#d.sumExamen}, "
+        + "s.totals.sumDs = s.totals.sumDs + :#{#d.sumDs}, "
+        + "s.totals.sumOral = s.totals.sumOral + :#{#d.sumOral}, "
+        + "s.totals.sumMoyenne = s.totals.sumMoyenne + :#{#d.sumMoyenne}, "
+        + "s.totals.passExamen = s.totals.passExamen + :#{#d.passExamen}, "
+        + "s.totals.passDs = s.totals.passDs + :#{#d.passDs}, "
+        + "s.totals.passOral = s.totals.passOral + :#{#d.passOral}, "
+        + "s.totals.passMoyenne = s.totals.passMoyenne + :#{#d.passMoyenne} "
+        + "where s.etudiantId = :id")
+    int applyDelta(@Param("id") Long id, @Param("credits") double credits,
+                   @Param("ponderee") double ponderee, @Param("d") NoteTotals d);
+
+    // Empty row for a first delta; a no-op when a concurrent writer created it first
+    @Modifying
+    @Query(value = "insert into etudiant_stats (etudiant_id, credits, sum_moyenne_ponderee, inscrits, notes, "
+        + "sum_examen, sum_ds, sum_oral, sum_moyenne, pass_examen, pass_ds, pass_oral, pass_moyenne) "
+        + "values (:id, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0) "
+        + "on duplicate key update inscrits = inscrits", nativeQuery = true)
+    int insertIfAbsent(@Param("id") Long id);
+}
@@ -0,0 +1,51 @@
+package spring.jpa.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.GroupeAttente;
+
+public interface GroupeAttenteRepository extends JpaRepository<GroupeAttente, Long> {
+
+    // Head of the queue
+    Optional<GroupeAttente> findFirstByGroupeIdOrderByIdAsc(Long groupeId);
+
+    Optional<GroupeAttente> findByGroupeIdAndEtudiantId(Long groupeId, Long etudiantId);
+
+    boolean existsByGroupeId(Long groupeId);
+
+    long countByGroupeId(Long groupeId);
+
+    // Groupes with a seat free in front of their queue
+    @Query("select distinct a.groupeId from GroupeAttente a, Groupe g where g.id = a.groupeId "
+        + "and (g.capacite is null or g.effectif < g.capacite)")
+    List<Long> findGroupeIdsWithFreeSeats();
+
+    // Entries ahead of the given one
+    long countByGroupeIdAndIdLessThan(Long groupeId, Long id);
+
+    // Takes an entry off the queue; 0 when another transaction already did
+    @Modifying
+    @Query("delete from GroupeAttente a where a.id = :id")
+    int remove(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from GroupeAttente a where a.groupeId = :groupeId and a.etudiantId = :etudiantId")
+    int removeEtudiant(@Param("groupeId") Long groupeId, @Param("etudiantId") Long etudiantId);
+
+    @Modifying
+    @Query("delete from GroupeAttente a where a.groupeId = :groupeId")
+    int deleteAllOfGroupe(@Param("groupeId") Long groupeId);
+
+    @Modifying
+    @Query("delete from GroupeAttente a where a.etudiantId = :etudiantId")
+    int deleteAllOfEtudiant(@Param("etudiantId") Long etudiantId);
+
+    @Query("select a.groupeId from GroupeAttente a where a.etudiantId = :etudiantId")
+    List<Long> findGroupeIdsOfEtudiant(@Param("etudiantId") Long etudiantId);
+}
@@ -1,8 +1,113 @@
 package spring.jpa.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Formateur;
 import spring.jpa.model.Groupe;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 public interface GroupeRepository extends JpaRepository<Groupe, Long> {
+
+    // Groupes following at least one course taught by the formateur
+    @Query(
+        value = "select distinct g from Groupe g join g.cours c where c.formateur = :formateur",
+        countQuery = "select count(distinct g) from Groupe g join g.cours c where c.formateur = :formateur"
+    )
+    Page<Groupe> findByCoursFormateur(@Param("formateur") Formateur formateur, Pageable pageable);
+
+    @Query("select e.id from Groupe g join g.etudiants e where g.id = :groupeId")
+    List<Long> findEtudiantIds(@Param("groupeId") Long groupeId);
+
+    // Every (groupe, etudiant) pair, for MembershipIndex
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select g.id, e.id from Groupe g join g.etudiants e")
+    Stream<Object[]> streamMemberships();
+
+    // Which of the given students follow the course through another groupe
+    @Query("select distinct e.id from Groupe g join g.etudiants e join g.cours c "
+        + "where c = :cours and e.id in :etudiantIds and g.id <> :groupeId")
+    List<Long> findMembersFollowingElsewhere(@Param("cours") Cours cours,
+                                            @Param("etudiantIds") Collection<Long> etudiantIds,
+                                            @Param("groupeId") Long groupeId);
+
+    // Which of the given students / courses belong to the groupe
+    @Query("select e.id from Groupe g join g.etudiants e where g.id = :groupeId and e.id in :etudiantIds")
+    List<Long> findEtudiantIdsIn(@Param("groupeId") Long groupeId, @Param("etudiantIds") Collection<Long> etudiantIds);
+
+    @Query("select c.code from Groupe g join g.cours c where g.id = :groupeId")
+    List<String> findCoursCodes(@Param("groupeId") Long groupeId);
+
+    @Query("select c.code from Groupe g join g.cours c where g.id = :groupeId and c.code in :codes")
+    List<String> findCoursCodesIn(@Param("groupeId") Long groupeId, @Param("codes") Collection<String> codes);
+
+    // Seat counter (see GroupePlacesService). A claim succeeds, and returns 1,
+    // only while a seat is free; the check and the increment are one statement,
+    // so concurrent claims can never go past the capacity.
+    @Modifying
+    @Query("update Groupe g set g.effectif = g.effectif + 1 "
+        + "where g.id = :id and (g.capacite is null or g.effectif < g.capacite)")
+    int claimSeat(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Groupe g set g.effectif = g.effectif - 1 where g.id = :id and g.effectif > 0")
+    int releaseSeat(@Param("id") Long id);
+
+    // Realigns the counter after a membership write that bypassed it
+    @Modifying
+    @Query(value = "update groupe set effectif = "
+        + "(select count(*) from groupe_etudiant ge where ge.groupe_id = groupe.id) where id = :id",
+        nativeQuery = true)
+    int recountEffectif(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update groupe set effectif = "
+        + "(select count(*) from groupe_etudiant ge where ge.groupe_id = groupe.id)",
+        nativeQuery = true)
+    int recountEffectifs();
+
+    // capacite, effectif
+    @Query("select g.capacite, g.effectif from Groupe g where g.id = :id")
+    List<Object[]> findPlaces(@Param("id") Long id);
+
+    // Targeted join-table writes: only the rows that change, without loading the
+    // groupe's collections (which Hibernate would rewrite in full). Unknown ids
+    // and rows already present are skipped. They bypass the entity callbacks.
+    @Modifying
+    @Query(value = "insert into groupe_etudiant (groupe_id, etudiant_id) "
+        + "select :groupeId, e.id from etudiant e where e.id in (:etudiantIds) "
+        + "and not exists (select 1 from groupe_etudiant ge where ge.groupe_id = :groupeId and ge.etudiant_id = e.id)",
+        nativeQuery = true)
+    int addEtudiants(@Param("groupeId") Long groupeId, @Param("etudiantIds") Collection<Long> etudiantIds);
+
+    @Modifying
+    @Query(value = "delete from groupe_etudiant where groupe_id = :groupeId and etudiant_id in (:etudiantIds)",
+        nativeQuery = true)
+    int removeEtudiants(@Param("groupeId") Long groupeId, @Param("etudiantIds") Collection<Long> etudiantIds);
+
+    @Modifying
+    @Query(value = "insert into groupe_cours (groupe_id, cours_code) "
+        + "select :groupeId, c.code from cours c where c.code in (:codes) "
+        + "and not exists (select 1 from groupe_cours gc where gc.groupe_id = :groupeId and gc.cours_code = c.code)",
+        nativeQuery = true)
+    int addCours(@Param("groupeId") Long groupeId, @Param("codes") Collection<String> codes);
+
+    @Modifying
+    @Query(value = "delete from groupe_cours where groupe_id = :groupeId and cours_code in (:codes)",
+        nativeQuery = true)
+    int removeCours(@Param("groupeId") Long groupeId, @Param("codes") Collection<String> codes);
 }
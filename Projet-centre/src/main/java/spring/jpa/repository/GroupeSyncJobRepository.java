@@ -0,0 +1,34 @@
+package spring.jpa.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.GroupeSyncJob;
+
+public interface GroupeSyncJobRepository extends JpaRepository<GroupeSyncJob, Long> {
+
+    // Queue order
+    List<GroupeSyncJob> findByStatutOrderByIdAsc(GroupeSyncJob.Statut statut, Pageable pageable);
+
+    List<GroupeSyncJob> findByGroupeIdOrderByIdDesc(Long groupeId, Pageable pageable);
+
+    // Takes a waiting job; 0 when another worker already did
+    @Modifying
+    @Query("update GroupeSyncJob j set j.statut = spring.jpa.model.GroupeSyncJob.Statut.EN_COURS "
+        + "where j.id = :id and j.statut = spring.jpa.model.GroupeSyncJob.Statut.EN_ATTENTE")
+    int claim(@Param("id") Long id);
+
+    // Jobs interrupted by a shutdown go back to the queue
+    @Modifying
+    @Query("update GroupeSyncJob j set j.statut = spring.jpa.model.GroupeSyncJob.Statut.EN_ATTENTE "
+        + "where j.statut = spring.jpa.model.GroupeSyncJob.Statut.EN_COURS")
+    int requeueRunning();
+
+    List<GroupeSyncJob> findByStatutInAndTermineLeBefore(List<GroupeSyncJob.Statut> statuts, Date before);
+}
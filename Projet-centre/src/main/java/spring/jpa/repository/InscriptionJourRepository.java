@@ -0,0 +1,69 @@
+package spring.jpa.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import spring.jpa.model.InscriptionJour;
+import spring.jpa.model.InscriptionJourKey;
+
+public interface InscriptionJourRepository extends JpaRepository<InscriptionJour, InscriptionJourKey> {
+
+    // Atomic in-place increment, safe under concurrent writers
+    @Modifying
+    @Query("update InscriptionJour j set j.inscriptions = j.inscriptions + :inscriptions, "
+        + "j.desinscriptions = j.desinscriptions + :desinscriptions where j.id = :id")
+    int applyDelta(@Param("id") InscriptionJourKey id,
+                   @Param("inscriptions") long inscriptions,
+                   @Param("desinscriptions") long desinscriptions);
+
+    // Empty row for a first delta; a no-op when a concurrent writer created it first
+    @Modifying
+    @Query(value = "insert into inscription_daily (jour, cours_code, groupe_id, inscriptions, desinscriptions) "
+        + "values (:jour, :cours, :groupeId, 0, 0) on duplicate key update inscriptions = inscriptions",
+        nativeQuery = true)
+    int insertIfAbsent(@Param("jour") LocalDate jour,
+                       @Param("cours") String cours,
+                       @Param("groupeId") long groupeId);
+
+    // Course totals over a date range (null cours = every course)
+    @Query("select j from InscriptionJour j where j.id.groupeId = 0 "
+        + "and j.id.jour between :from and :to "
+        + "and (:cours is null or j.id.coursCode = :cours)")
+    List<InscriptionJour> findTotals(@Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("cours") String cours);
+
+    // Groupe rows over a date range (null = no filter)
+    @Query("select j from InscriptionJour j where j.id.groupeId > 0 "
+        + "and j.id.jour between :from and :to "
+        + "and (:cours is null or j.id.coursCode = :cours) "
+        + "and (:groupeId is null or j.id.groupeId = :groupeId)")
+    List<InscriptionJour> findGroupeRows(@Param("from") LocalDate from,
+                                         @Param("to") LocalDate to,
+                                         @Param("cours") String cours,
+                                         @Param("groupeId") Long groupeId);
+
+    // Groupes containing these (etudiant, cours) pairs: {groupe id, etudiant id, cours code}
+    @Query("select g.id, e.id, c.code from Groupe g join g.etudiants e join g.cours c "
+        + "where e.id in :etudiantIds and c.code in :codes")
+    List<Object[]> findGroupes(@Param("etudiantIds") Collection<Long> etudiantIds,
+                               @Param("codes") Collection<String> codes);
+
+    // Current enrollments by day and course: {date, cours code, count}
+    @Query("select i.dateInscription, c.code, count(i) from InscriptionEffective i join i.cours c "
+        + "where i.dateInscription is not null group by i.dateInscription, c.code")
+    List<Object[]> countByDayAndCours();
+
+    // Same, per groupe (its students in its courses): {date, cours code, groupe id, count}
+    @Query("select i.dateInscription, c.code, g.id, count(i) "
+        + "from Groupe g join g.etudiants e join g.cours c "
+        + "join InscriptionEffective i on i.etudiant = e and i.cours = c "
+        + "where i.dateInscription is not null group by i.dateInscription, c.code, g.id")
+    List<Object[]> countByDayCoursAndGroupe();
+}
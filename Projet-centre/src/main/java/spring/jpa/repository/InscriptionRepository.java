@@ -1,25 +1,64 @@
 package spring.jpa.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import spring.jpa.dto.CoursInscriptionCount;
 import spring.jpa.model.Cours;
-import spring.jpa.model.Etudiant;
 import spring.jpa.model.Inscription;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+// Enrollment lookups (exists, findByEtudiant, findByCours, ...) are in EnrollmentLookup;
+// reads below go through the InscriptionEffective view, writes to the table.
+public interface InscriptionRepository extends JpaRepository<Inscription, Long>, EnrollmentLookup {
+
+    // Courses by number of inscriptions, limited by the pageable
+    @Query("select c.code as code, c.titre as titre, count(i) as inscriptions "
+        + "from InscriptionEffective i join i.cours c group by c.code, c.titre "
+        + "order by count(i) desc, c.code")
+    List<CoursInscriptionCount> findTopCourses(Pageable pageable);
+
+    // Optional export filters on an enrollment (e = etudiant, c = cours); a null
+    // parameter disables its filter. Groupe/session: their students in their courses.
+    String ENROLLMENT_FILTER = "where (:cours is null or c.code = :cours) "
+        + "and (:groupeId is null or (e in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.id = :groupeId))) "
+        + "and (:sessionId is null or (e in (select se from Groupe s join s.etudiants se where s.session.id = :sessionId) "
+        + "and c in (select sc from Groupe s2 join s2.cours sc where s2.session.id = :sessionId))) ";
+
+    // Export rows: id, date, matricule, nom, prenom, email, cours code, cours titre
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select i.inscriptionId, i.dateInscription, e.matricule, e.nom, e.prenom, e.email, c.code, c.titre "
+        + "from InscriptionEffective i join i.etudiant e join i.cours c "
+        + ENROLLMENT_FILTER + "order by c.code, e.nom, e.prenom, i.cle")
+    Stream<Object[]> streamExportRows(@Param("cours") String cours,
+                                      @Param("groupeId") Long groupeId,
+                                      @Param("sessionId") Long sessionId);
+
+    // Enrolled students of a course, and every (cours, etudiant) pair (MembershipIndex)
+    @Query("select i.etudiant.id from InscriptionEffective i where i.cours.code = :code")
+    List<Long> findEtudiantIdsByCours(@Param("code") String code);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select i.cours.code, i.etudiant.id from InscriptionEffective i")
+    Stream<Object[]> streamEnrolledPairs();
 
-public interface InscriptionRepository extends JpaRepository<Inscription, Long> {
-
-    // Vérifier si un étudiant est déjà inscrit à un cours
-    boolean existsByEtudiantAndCours(Etudiant etudiant, Cours cours);
-    
-    // Retrieve all inscriptions for a specific Etudiant (used by ETUDIANT role)
-    List<Inscription> findByEtudiant(Etudiant etudiant);
-    
-    // NEW: Retrieve all inscriptions for a specific Cours (used by FORMATEUR role)
-    List<Inscription> findByCours(Cours cours);
-    
     @Transactional
     void deleteAllByEtudiantId(Long etudiantId);
+
+    // Set-based withdrawal of several students from one course
+    @Modifying
+    @Query("delete from Inscription i where i.cours = :cours and i.etudiant.id in :etudiantIds")
+    int deleteByCoursAndEtudiantIds(@Param("cours") Cours cours, @Param("etudiantIds") Collection<Long> etudiantIds);
 }
\ No newline at end of file
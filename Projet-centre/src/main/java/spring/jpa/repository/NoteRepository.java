@@ -1,12 +1,28 @@
 package spring.jpa.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
 import spring.jpa.model.Cours;
 import spring.jpa.model.Etudiant;
+import spring.jpa.model.Formateur;
 import spring.jpa.model.Note;
 
 public interface NoteRepository extends JpaRepository<Note, Long> {
@@ -15,10 +31,276 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
 
     List<Note> findByCours(Cours cours);
 
+    Optional<Note> findFirstByEtudiantAndCours(Etudiant etudiant, Cours cours);
+
+    List<Note> findByCoursAndEtudiant_IdIn(Cours cours, Collection<Long> etudiantIds);
+
+    // Locked reads of the grade writers: their summary deltas withdraw the
+    // current values, which a concurrent edit can no longer change underneath
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Note n where n.id = :id")
+    Optional<Note> lockById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Note n where n.id in :ids")
+    List<Note> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Note n where n.etudiant = :etudiant and n.cours = :cours")
+    Optional<Note> lockByEtudiantAndCours(@Param("etudiant") Etudiant etudiant, @Param("cours") Cours cours);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Note n where n.cours = :cours and n.etudiant.id in :etudiantIds")
+    List<Note> lockByCoursAndEtudiantIds(@Param("cours") Cours cours, @Param("etudiantIds") Collection<Long> etudiantIds);
+
+    // Enrollments of a course outer-joined to their note (null when not graded yet)
+    @Query("select i.etudiant, n from InscriptionEffective i "
+        + "left join Note n on n.etudiant = i.etudiant and n.cours = i.cours "
+        + "where i.cours = :cours order by i.etudiant.nom, i.etudiant.prenom")
+    List<Object[]> findEnrollmentNotesByCours(@Param("cours") Cours cours);
+
+    // Enrollments of a student outer-joined to their note (null when not graded yet)
+    @Query("select i.cours, n from InscriptionEffective i "
+        + "left join Note n on n.etudiant = i.etudiant and n.cours = i.cours "
+        + "where i.etudiant = :etudiant order by i.cours.code")
+    List<Object[]> findEnrollmentNotesByEtudiant(@Param("etudiant") Etudiant etudiant);
+
+    // Primitive grade rows (enrollment x note) for the grading engine, see GradeMatrix.
+    // Columns: etudiant id, cours code, examen, ds, oral (null when not graded),
+    // coefExamen, coefDs, coefOral, credits (null = defaults), graded flag
+    String GRADE_ROWS = "select i.etudiant.id, c.code, n.noteExamen, n.noteDs, n.noteOral, "
+        + "c.bareme.coefExamen, c.bareme.coefDs, c.bareme.coefOral, c.credits, n.graded "
+        + "from InscriptionEffective i join i.cours c "
+        + "left join Note n on n.etudiant = i.etudiant and n.cours = c ";
+
+    @Query(GRADE_ROWS + "where c = :cours order by i.etudiant.id")
+    List<Object[]> findGradeRowsByCours(@Param("cours") Cours cours);
+
+    @Query(GRADE_ROWS + "where i.etudiant = :etudiant order by c.code")
+    List<Object[]> findGradeRowsByEtudiant(@Param("etudiant") Etudiant etudiant);
+
+    // Students of the session's groupes, restricted to the courses of those groupes
+    @Query(GRADE_ROWS
+        + "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.session.id = :sessionId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.session.id = :sessionId) "
+        + "order by i.etudiant.id, c.code")
+    List<Object[]> findGradeRowsBySession(@Param("sessionId") Long sessionId);
+
+    // Students of the groupe, restricted to the groupe's courses
+    @Query(GRADE_ROWS
+        + "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.id = :groupeId) "
+        + "order by i.etudiant.id, c.code")
+    List<Object[]> findGradeRowsByGroupe(@Param("groupeId") Long groupeId);
+
+    // All enrollments of the specialite's students
+    @Query(GRADE_ROWS + "where i.etudiant.specialite.id = :specialiteId order by i.etudiant.id, c.code")
+    List<Object[]> findGradeRowsBySpecialite(@Param("specialiteId") Long specialiteId);
+
+    // SQL mirror of GradingEngine: normalized weighted average and credits of an
+    // enrollment row (i, c, n). Default coefficients are bound as parameters.
+    String COEF_SUM = "(coalesce(c.bareme.coefExamen, :coefExamen) + coalesce(c.bareme.coefDs, :coefDs) "
+        + "+ coalesce(c.bareme.coefOral, :coefOral))";
+    String ROW_AVERAGE = "(case when " + COEF_SUM + " > 0 then "
+        + "(coalesce(n.noteExamen, 0) * coalesce(c.bareme.coefExamen, :coefExamen) "
+        + "+ coalesce(n.noteDs, 0) * coalesce(c.bareme.coefDs, :coefDs) "
+        + "+ coalesce(n.noteOral, 0) * coalesce(c.bareme.coefOral, :coefOral)) / " + COEF_SUM + " "
+        + "else (coalesce(n.noteExamen, 0) + coalesce(n.noteDs, 0) + coalesce(n.noteOral, 0)) / 3.0 end)";
+    String ROW_CREDITS = "(case when c.credits is null then 1 when c.credits < 0 then 0 else c.credits end)";
+
+    // Columns: inscrits, notes, sum examen/ds/oral/average, pass examen/ds/oral/average (see NoteTotals)
+    String TOTALS = "count(i), sum(case when n.graded = true then 1 else 0 end), "
+        + "sum(coalesce(n.noteExamen, 0)), sum(coalesce(n.noteDs, 0)), sum(coalesce(n.noteOral, 0)), "
+        + "sum(" + ROW_AVERAGE + "), "
+        + "sum(case when coalesce(n.noteExamen, 0) >= 10 then 1 else 0 end), "
+        + "sum(case when coalesce(n.noteDs, 0) >= 10 then 1 else 0 end), "
+        + "sum(case when coalesce(n.noteOral, 0) >= 10 then 1 else 0 end), "
+        + "sum(case when " + ROW_AVERAGE + " >= 10 then 1 else 0 end) ";
+    String ENROLLMENT_NOTES = "from InscriptionEffective i join i.cours c "
+        + "left join Note n on n.etudiant = i.etudiant and n.cours = c ";
+
+    // {code, TOTALS...} per course
+    @Query("select c.code, " + TOTALS + ENROLLMENT_NOTES + "group by c.code")
+    List<Object[]> aggregateTotalsByCours(@Param("coefExamen") double coefExamen,
+                                          @Param("coefDs") double coefDs,
+                                          @Param("coefOral") double coefOral);
+
+    // {etudiant id, TOTALS..., credits, sum credits * average} per student
+    @Query("select i.etudiant.id, " + TOTALS + ", sum(" + ROW_CREDITS + "), sum(" + ROW_CREDITS + " * " + ROW_AVERAGE + ") "
+        + ENROLLMENT_NOTES + "group by i.etudiant.id")
+    List<Object[]> aggregateTotalsByEtudiant(@Param("coefExamen") double coefExamen,
+                                             @Param("coefDs") double coefDs,
+                                             @Param("coefOral") double coefOral);
+
+    // Same two aggregates restricted to some courses / students
+    @Query("select c.code, " + TOTALS + ENROLLMENT_NOTES + "where c.code in :codes group by c.code")
+    List<Object[]> aggregateTotalsByCoursIn(@Param("codes") Collection<String> codes,
+                                            @Param("coefExamen") double coefExamen,
+                                            @Param("coefDs") double coefDs,
+                                            @Param("coefOral") double coefOral);
+
+    @Query("select i.etudiant.id, " + TOTALS + ", sum(" + ROW_CREDITS + "), sum(" + ROW_CREDITS + " * " + ROW_AVERAGE + ") "
+        + ENROLLMENT_NOTES + "where i.etudiant.id in :etudiantIds group by i.etudiant.id")
+    List<Object[]> aggregateTotalsByEtudiantIn(@Param("etudiantIds") Collection<Long> etudiantIds,
+                                               @Param("coefExamen") double coefExamen,
+                                               @Param("coefDs") double coefDs,
+                                               @Param("coefOral") double coefOral);
+
+    // Students of a scope ranked in the database on their credit-weighted average
+    // (GradingEngine.studentAverages): etudiant id, moyenne, RANK() best first,
+    // PERCENT_RANK() on ascending averages, effectif. Wrapped by scope below.
+    String STUDENT_AVERAGE = "case when sum(" + ROW_CREDITS + ") > 0 then sum(" + ROW_CREDITS + " * " + ROW_AVERAGE
+        + ") / sum(" + ROW_CREDITS + ") else 0 end";
+    String RANKED_START = "select s.etudiantId etudiantId, s.moyenne moyenne, "
+        + "rank() over (order by s.moyenne desc) rang, percent_rank() over (order by s.moyenne) percentile, "
+        + "count(*) over () effectif from (select i.etudiant.id etudiantId, " + STUDENT_AVERAGE + " moyenne "
+        + ENROLLMENT_NOTES;
+    String RANKED_END = " group by i.etudiant.id) s";
+    String BY_COURS = "where c.code = :code";
+    String BY_GROUPE = "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.id = :groupeId)";
+    String BY_SESSION = "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.session.id = :sessionId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.session.id = :sessionId)";
+    String TOP = " order by moyenne desc, etudiantId";
+    String RANK_OF_START = "select r.etudiantId, r.moyenne, r.rang, r.percentile, r.effectif from (";
+    String RANK_OF_END = ") r where r.etudiantId = :etudiantId";
+
+    // Best students first (ties: lower id first); the page bounds the rows returned
+    @Query(RANKED_START + BY_COURS + RANKED_END + TOP)
+    List<Object[]> findTopByCours(@Param("code") String code,
+                                  @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                  @Param("coefOral") double coefOral, Pageable page);
+
+    @Query(RANKED_START + BY_GROUPE + RANKED_END + TOP)
+    List<Object[]> findTopByGroupe(@Param("groupeId") Long groupeId,
+                                   @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                   @Param("coefOral") double coefOral, Pageable page);
+
+    @Query(RANKED_START + BY_SESSION + RANKED_END + TOP)
+    List<Object[]> findTopBySession(@Param("sessionId") Long sessionId,
+                                    @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                    @Param("coefOral") double coefOral, Pageable page);
+
+    // One student's row; empty when they are not part of the scope
+    @Query(RANK_OF_START + RANKED_START + BY_COURS + RANKED_END + RANK_OF_END)
+    List<Object[]> findRankInCours(@Param("code") String code, @Param("etudiantId") Long etudiantId,
+                                   @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                   @Param("coefOral") double coefOral);
+
+    @Query(RANK_OF_START + RANKED_START + BY_GROUPE + RANKED_END + RANK_OF_END)
+    List<Object[]> findRankInGroupe(@Param("groupeId") Long groupeId, @Param("etudiantId") Long etudiantId,
+                                    @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                    @Param("coefOral") double coefOral);
+
+    @Query(RANK_OF_START + RANKED_START + BY_SESSION + RANKED_END + RANK_OF_END)
+    List<Object[]> findRankInSession(@Param("sessionId") Long sessionId, @Param("etudiantId") Long etudiantId,
+                                     @Param("coefExamen") double coefExamen, @Param("coefDs") double coefDs,
+                                     @Param("coefOral") double coefOral);
+
+    // Streamed variants for single-pass reports (caller must hold a read-only transaction)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(GRADE_ROWS + "where c = :cours order by i.etudiant.id")
+    Stream<Object[]> streamGradeRowsByCours(@Param("cours") Cours cours);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(GRADE_ROWS
+        + "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.session.id = :sessionId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.session.id = :sessionId) "
+        + "order by i.etudiant.id, c.code")
+    Stream<Object[]> streamGradeRowsBySession(@Param("sessionId") Long sessionId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(GRADE_ROWS
+        + "where i.etudiant in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.id = :groupeId) "
+        + "order by i.etudiant.id, c.code")
+    Stream<Object[]> streamGradeRowsByGroupe(@Param("groupeId") Long groupeId);
+
+    // Notes PDF rows: cours code, cours titre, nom, prenom, examen, ds, oral;
+    // every enrolled student, with null grades when ungraded
+    String NOTE_REPORT_ROWS = "select c.code, c.titre, e.nom, e.prenom, n.noteExamen, n.noteDs, n.noteOral "
+        + "from InscriptionEffective i join i.cours c join i.etudiant e "
+        + "left join Note n on n.etudiant = e and n.cours = c ";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(NOTE_REPORT_ROWS + "order by c.code, e.nom, e.prenom, e.id")
+    Stream<Object[]> streamNoteReportRows();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(NOTE_REPORT_ROWS + "where c = :cours order by e.nom, e.prenom, e.id")
+    Stream<Object[]> streamNoteReportRowsByCours(@Param("cours") Cours cours);
+
+    // Transcript rows: GRADE_ROWS columns, then matricule, nom, prenom, cours titre;
+    // same scopes as the grade rows, ordered by student then course
+    String TRANSCRIPT_ROWS = "select i.etudiant.id, c.code, n.noteExamen, n.noteDs, n.noteOral, "
+        + "c.bareme.coefExamen, c.bareme.coefDs, c.bareme.coefOral, c.credits, n.graded, "
+        + "e.matricule, e.nom, e.prenom, c.titre "
+        + "from InscriptionEffective i join i.cours c join i.etudiant e "
+        + "left join Note n on n.etudiant = e and n.cours = c ";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(TRANSCRIPT_ROWS
+        + "where e in (select ge from Groupe g join g.etudiants ge where g.session.id = :sessionId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.session.id = :sessionId) "
+        + "order by e.id, c.code")
+    Stream<Object[]> streamTranscriptRowsBySession(@Param("sessionId") Long sessionId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(TRANSCRIPT_ROWS
+        + "where e in (select ge from Groupe g join g.etudiants ge where g.id = :groupeId) "
+        + "and c in (select gc from Groupe g2 join g2.cours gc where g2.id = :groupeId) "
+        + "order by e.id, c.code")
+    Stream<Object[]> streamTranscriptRowsByGroupe(@Param("groupeId") Long groupeId);
+
+    // Export rows, one per enrollment: matricule, nom, prenom, email, cours code,
+    // cours titre, examen, ds, oral (null when ungraded). Same headers as the grade import.
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select e.matricule, e.nom, e.prenom, e.email, c.code, c.titre, n.noteExamen, n.noteDs, n.noteOral "
+        + "from InscriptionEffective i join i.etudiant e join i.cours c "
+        + "left join Note n on n.etudiant = e and n.cours = c "
+        + InscriptionRepository.ENROLLMENT_FILTER + "order by c.code, e.nom, e.prenom, e.id")
+    Stream<Object[]> streamExportRows(@Param("cours") String cours,
+                                      @Param("groupeId") Long groupeId,
+                                      @Param("sessionId") Long sessionId);
+
+    /**
+     * One note per enrolled student of the course; missing rows are synthesized
+     * as ungraded 0/0/0 notes (not persisted).
+     */
+    default List<Note> findByCoursWithDefaults(Cours cours) {
+        List<Note> notes = new ArrayList<>();
+        for (Object[] row : findEnrollmentNotesByCours(cours)) {
+            Note n = (Note) row[1];
+            notes.add(n != null ? n : new Note(0, 0, 0, (Etudiant) row[0], cours));
+        }
+        return notes;
+    }
+
+    /**
+     * One note per course the student is enrolled in; missing rows are synthesized
+     * as ungraded 0/0/0 notes (not persisted).
+     */
+    default List<Note> findByEtudiantWithDefaults(Etudiant etudiant) {
+        List<Note> notes = new ArrayList<>();
+        for (Object[] row : findEnrollmentNotesByEtudiant(etudiant)) {
+            Note n = (Note) row[1];
+            notes.add(n != null ? n : new Note(0, 0, 0, etudiant, (Cours) row[0]));
+        }
+        return notes;
+    }
+
+    // Notes of the courses taught by a formateur (joins through cours.formateur)
+    Page<Note> findByCours_Formateur(Formateur formateur, Pageable pageable);
+
     boolean existsByEtudiantAndCours(Etudiant etudiant, Cours cours);
 
     @Transactional
     void deleteByEtudiantAndCours(Etudiant etudiant, Cours cours);
     @Transactional
     void deleteAllByEtudiantId(Long etudiantId);
+
+    // Set-based removal of several students' notes in one course
+    @Modifying
+    @Query("delete from Note n where n.cours = :cours and n.etudiant.id in :etudiantIds")
+    int deleteByCoursAndEtudiantIds(@Param("cours") Cours cours, @Param("etudiantIds") Collection<Long> etudiantIds);
 }
@@ -2,11 +2,36 @@ package spring.jpa.repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
+import spring.jpa.model.Formateur;
 import spring.jpa.model.Seance;
 
 public interface SeanceRepository extends JpaRepository<Seance, Long> {
     List<Seance> findByDateSeance(LocalDate dateSeance);
+
+    // Seances of the courses taught by a formateur (joins through cours.formateur)
+    Page<Seance> findByCours_Formateur(Formateur formateur, Pageable pageable);
+
+    // Export rows: id, date, debut, fin, salle, cours code, cours titre, groupe (filters: null = off)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select s.id, s.dateSeance, s.heureDebut, s.heureFin, s.salle, c.code, c.titre, g.nom "
+        + "from Seance s left join s.cours c left join s.groupe g "
+        + "where (:cours is null or c.code = :cours) "
+        + "and (:groupeId is null or g.id = :groupeId) "
+        + "and (:sessionId is null or g.session.id = :sessionId) "
+        + "order by s.dateSeance, s.heureDebut, s.id")
+    Stream<Object[]> streamExportRows(@Param("cours") String cours,
+                                      @Param("groupeId") Long groupeId,
+                                      @Param("sessionId") Long sessionId);
 }
@@ -1,8 +1,17 @@
 package spring.jpa.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import spring.jpa.model.Specialite;
 
 public interface SpecialiteRepository extends JpaRepository<Specialite, Long> {
+
+    // Specialite row lock taken first by a partition (GroupePartitionService),
+    // so two partitions of its students run one at a time
+    @Query(value = "select id from specialite where id = :id for update", nativeQuery = true)
+    List<Long> lockById(@Param("id") Long id);
 }
@@ -57,6 +57,7 @@ public class SecurityConfig {
                 .requestMatchers("/formateurs/me/**").hasAnyRole("ADMIN", "FORMATEUR")
                 .requestMatchers("/cours/me").hasAnyRole("ADMIN", "FORMATEUR")
                 .requestMatchers("/seances/etudiant/me").hasAnyRole("ADMIN", "ETUDIANT")
+                .requestMatchers("/groupes/*/places").hasAnyRole("ADMIN", "ETUDIANT")
                 
                 // ========== ADMIN REST ENDPOINTS (PLURAL) ==========
                 .requestMatchers("/etudiants/**").hasRole("ADMIN")
@@ -67,6 +68,14 @@ public class SecurityConfig {
                 .requestMatchers("/specialites/**").hasRole("ADMIN")
                 .requestMatchers("/groupes/**").hasRole("ADMIN")
                 .requestMatchers("/seances/**").hasRole("ADMIN")
+                .requestMatchers("/reports/admin/**").hasRole("ADMIN")
+                .requestMatchers("/reports/export/**").hasRole("ADMIN")
+                .requestMatchers("/reports/sessions/*/releves", "/reports/groupes/*/releves").hasRole("ADMIN")
+                // Other students' averages and ranks; a student reads their own via /reports/etudiant/me/rang
+                .requestMatchers("/reports/*/*/moyennes", "/reports/*/*/classement", "/reports/*/*/rang/*")
+                    .hasAnyRole("ADMIN", "FORMATEUR")
+                // Aggregates over whole courses, groupes and sessions are staff views too
+                .requestMatchers("/reports/cube", "/reports/*/*/distribution").hasAnyRole("ADMIN", "FORMATEUR")
                 .requestMatchers("/reports/**").authenticated()
                 .requestMatchers("/inscriptions/by-course/**").hasAnyRole("ADMIN", "FORMATEUR")
                 .requestMatchers("/inscriptions/**").hasAnyRole("ADMIN", "ETUDIANT")
@@ -106,7 +115,7 @@ public class SecurityConfig {
             "Origin",
             "Cookie"
         ));
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Sync-Job"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L); // 1 hour
         
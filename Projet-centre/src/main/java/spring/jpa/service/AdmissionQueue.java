@@ -0,0 +1,340 @@
+package spring.jpa.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Admission control for enrollment writes (app.admission.*), for the
+ * registration-day rush: the seat requests of /groupes/{id}/places and the
+ * manual /inscriptions/ go through a bounded in-memory queue instead of
+ * straight to the database.
+ *
+ * A request gets a ticket right away, with its position, and is polled on
+ * /admissions/{ticket}; a full queue is refused (429, Retry-After). A fixed
+ * pool of workers drains the queue in batches. Ordering is fair per student:
+ * each student's requests run one at a time in the order they came, and
+ * students are served round-robin, so a student who submits many requests
+ * cannot push the others back.
+ *
+ * Each ticket names the row its operation contends on (a groupe, a course).
+ * A batch runs one transaction per such key, in key order, so a worker never
+ * holds the locks of one groupe while waiting for another's.
+ *
+ * An operation reports refusals (not found, conflict, ...) in its result;
+ * an exception rolls its key's transaction back and those tickets are then
+ * run again one transaction each, so operations must defer their side
+ * effects (mails) to after commit. The queue is per instance and is lost on restart: tickets
+ * still waiting then are gone, their clients see 404 and retry.
+ */
+@Service
+public class AdmissionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionQueue.class);
+
+    public enum Statut { EN_FILE, EN_COURS, TERMINE, ECHEC }
+
+    // HTTP status and body the request would have answered directly
+    public record Resultat(int code, Object corps) {
+    }
+
+    public static final class Ticket {
+        private final String id = UUID.randomUUID().toString();
+        private final Long etudiantId;
+        private final String proprietaire;
+        private final String type;
+        private final String cle;
+        private final Supplier<Resultat> operation;
+        private final Date creeLe = new Date();
+        private volatile Statut statut = Statut.EN_FILE;
+        private volatile Resultat resultat;
+        private volatile Date termineLe;
+
+        private Ticket(Long etudiantId, String proprietaire, String type, String cle, Supplier<Resultat> operation) {
+            this.etudiantId = etudiantId;
+            this.proprietaire = proprietaire;
+            this.type = type;
+            this.cle = cle;
+            this.operation = operation;
+        }
+
+        public String getId() { return id; }
+        public Long getEtudiantId() { return etudiantId; }
+        public String getProprietaire() { return proprietaire; }
+        public String getType() { return type; }
+        public Date getCreeLe() { return creeLe; }
+        public Statut getStatut() { return statut; }
+        public Resultat getResultat() { return resultat; }
+        public Date getTermineLe() { return termineLe; }
+    }
+
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int capacity;
+    private final int threads;
+    private final int batchSize;
+    private final long retryAfterSeconds;
+    private final long retentionMs;
+    private final ExecutorService workers;
+
+    // Waiting tickets per student; the map order is the round-robin order
+    private final LinkedHashMap<Long, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+    // Students with a ticket in a running batch
+    private final Set<Long> busy = new HashSet<>();
+    private int size;
+    private volatile boolean running = true;
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public AdmissionQueue(PlatformTransactionManager transactionManager,
+                          @Value("${app.admission.enabled:false}") boolean enabled,
+                          @Value("${app.admission.capacity:10000}") int capacity,
+                          @Value("${app.admission.threads:4}") int threads,
+                          @Value("${app.admission.batch-size:50}") int batchSize,
+                          @Value("${app.admission.retry-after-seconds:5}") long retryAfterSeconds,
+                          @Value("${app.admission.retention-minutes:30}") long retentionMinutes) {
+        this.tx = new TransactionTemplate(transactionManager);
+        // Seat operations read the rows committed so far (see GroupePlacesService)
+        this.tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.retentionMs = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "admission-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        for (int i = 0; i < threads; i++) {
+            workers.submit(this::work);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        synchronized (waiting) {
+            waiting.notifyAll();
+        }
+        workers.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Queues an operation of the student's; it runs inside a worker's
+     * transaction, shared with the batch's other tickets of the same key
+     * (e.g. "groupe:12"), without the caller's security context. Null when
+     * the queue is full.
+     */
+    public Ticket submit(Long etudiantId, String proprietaire, String type, String cle, Supplier<Resultat> operation) {
+        Ticket ticket = new Ticket(etudiantId, proprietaire, type, cle, operation);
+        synchronized (waiting) {
+            if (size >= capacity) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            waiting.computeIfAbsent(etudiantId, k -> new ArrayDeque<>()).addLast(ticket);
+            size++;
+            tickets.put(ticket.id, ticket);
+            waiting.notify();
+        }
+        admitted.incrementAndGet();
+        return ticket;
+    }
+
+    public Ticket get(String id) {
+        return tickets.get(id);
+    }
+
+    /**
+     * Number of tickets that run before this one, plus one; null once it
+     * left the queue. Round-robin: every student ahead in the rotation runs
+     * one ticket per round.
+     */
+    public Long position(Ticket ticket) {
+        synchronized (waiting) {
+            ArrayDeque<Ticket> own = waiting.get(ticket.etudiantId);
+            if (own == null || ticket.statut != Statut.EN_FILE) return null;
+            int rounds = 0;
+            for (Ticket t : own) {
+                if (t == ticket) break;
+                rounds++;
+            }
+            long before = 0;
+            boolean ahead = true;
+            for (Map.Entry<Long, ArrayDeque<Ticket>> entry : waiting.entrySet()) {
+                if (entry.getKey().equals(ticket.etudiantId)) {
+                    ahead = false;
+                    before += rounds;
+                    continue;
+                }
+                int n = entry.getValue().size();
+                before += Math.min(n, rounds) + (ahead && n > rounds ? 1 : 0);
+            }
+            return before + 1;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (waiting) {
+            stats.put("actif", enabled);
+            stats.put("enFile", size);
+            stats.put("capacite", capacity);
+            stats.put("etudiants", waiting.size());
+        }
+        stats.put("admis", admitted.get());
+        stats.put("refuses", rejected.get());
+        stats.put("lots", batches.get());
+        return stats;
+    }
+
+    // Finished tickets are kept for polling, then dropped
+    @Scheduled(fixedDelayString = "${app.admission.purge-ms:60000}")
+    void purge() {
+        long limit = System.currentTimeMillis() - retentionMs;
+        tickets.values().removeIf(t -> t.termineLe != null && t.termineLe.getTime() < limit);
+    }
+
+    private void work() {
+        while (running) {
+            List<Ticket> batch;
+            try {
+                batch = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                run(batch);
+            } finally {
+                done(batch);
+            }
+        }
+    }
+
+    // Their students can be served again
+    void done(List<Ticket> batch) {
+        synchronized (waiting) {
+            for (Ticket t : batch) busy.remove(t.etudiantId);
+            waiting.notifyAll();
+        }
+    }
+
+    // Up to batchSize tickets, the next one of each idle student in rotation order
+    List<Ticket> take() throws InterruptedException {
+        synchronized (waiting) {
+            while (true) {
+                List<Ticket> batch = new ArrayList<>();
+                Map<Long, ArrayDeque<Ticket>> served = new LinkedHashMap<>();
+                Iterator<Map.Entry<Long, ArrayDeque<Ticket>>> it = waiting.entrySet().iterator();
+                while (it.hasNext() && batch.size() < batchSize) {
+                    Map.Entry<Long, ArrayDeque<Ticket>> entry = it.next();
+                    Long etudiantId = entry.getKey();
+                    ArrayDeque<Ticket> queue = entry.getValue();
+                    if (busy.contains(etudiantId)) continue;
+                    Ticket t = queue.pollFirst();
+                    t.statut = Statut.EN_COURS;
+                    batch.add(t);
+                    busy.add(etudiantId);
+                    size--;
+                    it.remove();
+                    if (!queue.isEmpty()) served.put(etudiantId, queue);
+                }
+                // Served students go to the back of the rotation
+                waiting.putAll(served);
+                if (!batch.isEmpty()) return batch;
+                if (!running) throw new InterruptedException();
+                waiting.wait();
+            }
+        }
+    }
+
+    private void run(List<Ticket> batch) {
+        batches.incrementAndGet();
+        for (List<Ticket> tickets : byKey(batch).values()) {
+            run(tickets.get(0).cle, tickets);
+        }
+    }
+
+    // The batch's tickets per key, keys in order; each key keeps the rotation order
+    static TreeMap<String, List<Ticket>> byKey(List<Ticket> batch) {
+        TreeMap<String, List<Ticket>> byKey = new TreeMap<>();
+        for (Ticket t : batch) byKey.computeIfAbsent(t.cle, k -> new ArrayList<>()).add(t);
+        return byKey;
+    }
+
+    private void run(String cle, List<Ticket> tickets) {
+        Map<Ticket, Resultat> results = new HashMap<>();
+        try {
+            tx.executeWithoutResult(status -> {
+                for (Ticket t : tickets) results.put(t, t.operation.get());
+            });
+            tickets.forEach(t -> finish(t, results.get(t), Statut.TERMINE));
+            return;
+        } catch (RuntimeException ex) {
+            logger.warn("Admission tickets of {} ({}) rolled back, running them one by one: {}",
+                cle, tickets.size(), ex.getMessage());
+        }
+        for (Ticket t : tickets) {
+            try {
+                finish(t, tx.execute(status -> t.operation.get()), Statut.TERMINE);
+            } catch (RuntimeException ex) {
+                logger.warn("Admission ticket {} ({}) failed: {}", t.id, t.type, ex.getMessage());
+                finish(t, new Resultat(500, Map.of("message", "La demande a echoue, veuillez reessayer.")), Statut.ECHEC);
+            }
+        }
+    }
+
+    private static void finish(Ticket t, Resultat resultat, Statut statut) {
+        t.resultat = resultat;
+        t.termineLe = new Date();
+        t.statut = statut;
+    }
+}
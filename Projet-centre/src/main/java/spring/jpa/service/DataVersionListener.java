@@ -0,0 +1,61 @@
+package spring.jpa.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA listener on the reported entities: bumps the entity's data version when
+ * a row changes. Bumped at flush and again once the transaction ends, so a
+ * report that read the old rows in between cannot be stored under the new version.
+ */
+@Component
+public class DataVersionListener {
+
+    private final DataVersions dataVersions;
+
+    public DataVersionListener(DataVersions dataVersions) {
+        this.dataVersions = dataVersions;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(Object entity) {
+        touched(Hibernate.getClass(entity));
+    }
+
+    /**
+     * Same as a row change of the given type; for bulk JPQL writes, which
+     * bypass the entity callbacks.
+     */
+    public void touched(Class<?> type) {
+        dataVersions.bump(type);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+
+        // One synchronization per transaction, whatever the number of rows written
+        @SuppressWarnings("unchecked")
+        Set<Class<?>> touched = (Set<Class<?>>) TransactionSynchronizationManager.getResource(this);
+        if (touched == null) {
+            Set<Class<?>> types = new HashSet<>();
+            touched = types;
+            TransactionSynchronizationManager.bindResource(this, types);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DataVersionListener.this);
+                    types.forEach(dataVersions::bump);
+                }
+            });
+        }
+        touched.add(type);
+    }
+}
@@ -0,0 +1,45 @@
+package spring.jpa.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Change counters per entity type, bumped by {@link DataVersionListener} on
+ * every insert/update/delete. Cached reports put a snapshot of the counters
+ * they depend on in their key, so any write to that data invalidates them.
+ *
+ * Counters live in memory; the process start time is part of every snapshot
+ * so versions taken before a restart never match again.
+ */
+@Service
+public class DataVersions {
+
+    private final long epoch = System.currentTimeMillis();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public void bump(Class<?> type) {
+        counters.computeIfAbsent(type.getSimpleName(), k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public long version(Class<?> type) {
+        AtomicLong counter = counters.get(type.getSimpleName());
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Stable text form of the given counters, e.g. "1718000000000:Cours=2,Note=17".
+     */
+    public String snapshot(Class<?>... types) {
+        Map<String, Long> sorted = new TreeMap<>();
+        for (Class<?> type : types) {
+            sorted.put(type.getSimpleName(), version(type));
+        }
+        StringBuilder sb = new StringBuilder().append(epoch).append(':');
+        sorted.forEach((name, v) -> sb.append(name).append('=').append(v).append(','));
+        return sb.toString();
+    }
+}
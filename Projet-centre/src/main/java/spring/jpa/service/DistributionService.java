@@ -0,0 +1,111 @@
+package spring.jpa.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.dto.Distribution;
+import spring.jpa.model.Cours;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Grade distributions (histogram, mean, median, standard deviation, min/max)
+ * of a course, groupe or session, computed in one pass over the streamed
+ * grade rows: memory does not depend on the number of rows.
+ *
+ * Series: examen, ds, oral and moyenne (course average) per enrollment; for a
+ * groupe or session also moyenneEtudiant (credit-weighted, one per student).
+ * Enrolled students without a note count as 0, as in the other reports.
+ */
+@Service
+public class DistributionService {
+
+    public static final int DEFAULT_BINS = 20;
+    public static final int MAX_BINS = 200;
+
+    private final NoteRepository noteRepository;
+    private final GradingEngine gradingEngine;
+
+    public DistributionService(NoteRepository noteRepository, GradingEngine gradingEngine) {
+        this.noteRepository = noteRepository;
+        this.gradingEngine = gradingEngine;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Distribution> forCours(Cours cours, int bins) {
+        try (Stream<Object[]> rows = noteRepository.streamGradeRowsByCours(cours)) {
+            return accumulate(rows, false, bins);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Distribution> forSession(Long sessionId, int bins) {
+        try (Stream<Object[]> rows = noteRepository.streamGradeRowsBySession(sessionId)) {
+            return accumulate(rows, true, bins);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Distribution> forGroupe(Long groupeId, int bins) {
+        try (Stream<Object[]> rows = noteRepository.streamGradeRowsByGroupe(groupeId)) {
+            return accumulate(rows, true, bins);
+        }
+    }
+
+    // Rows arrive ordered by student id, so per-student averages close as the id changes
+    private Map<String, Distribution> accumulate(Stream<Object[]> rows, boolean perStudent, int bins) {
+        GradeHistogram examen = new GradeHistogram();
+        GradeHistogram ds = new GradeHistogram();
+        GradeHistogram oral = new GradeHistogram();
+        GradeHistogram moyenne = new GradeHistogram();
+        GradeHistogram moyenneEtudiant = new GradeHistogram();
+        Map<String, double[]> schemeByCourse = new HashMap<>();
+
+        long currentId = Long.MIN_VALUE;
+        double weighted = 0;
+        double credits = 0;
+        boolean open = false;
+
+        for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+            double[] scheme = schemeByCourse.computeIfAbsent((String) row[1], k -> gradingEngine.scheme(row));
+            double e = row[2] == null ? 0 : ((Number) row[2]).doubleValue();
+            double d = row[3] == null ? 0 : ((Number) row[3]).doubleValue();
+            double o = row[4] == null ? 0 : ((Number) row[4]).doubleValue();
+            double avg = e * scheme[0] + d * scheme[1] + o * scheme[2];
+            examen.add(e);
+            ds.add(d);
+            oral.add(o);
+            moyenne.add(avg);
+
+            if (!perStudent) continue;
+            long id = ((Number) row[0]).longValue();
+            if (open && id != currentId) {
+                moyenneEtudiant.add(credits > 0 ? weighted / credits : 0.0);
+                weighted = 0;
+                credits = 0;
+            }
+            currentId = id;
+            open = true;
+            weighted += avg * scheme[3];
+            credits += scheme[3];
+        }
+        if (open) {
+            moyenneEtudiant.add(credits > 0 ? weighted / credits : 0.0);
+        }
+
+        int b = Math.max(1, Math.min(MAX_BINS, bins));
+        Map<String, Distribution> result = new LinkedHashMap<>();
+        result.put("examen", examen.toDistribution(b));
+        result.put("ds", ds.toDistribution(b));
+        result.put("oral", oral.toDistribution(b));
+        result.put("moyenne", moyenne.toDistribution(b));
+        if (perStudent) {
+            result.put("moyenneEtudiant", moyenneEtudiant.toDistribution(b));
+        }
+        return result;
+    }
+}
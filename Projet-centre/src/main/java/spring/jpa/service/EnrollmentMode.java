@@ -0,0 +1,74 @@
+package spring.jpa.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Where enrollments come from (app.inscriptions.derived.enabled).
+ *
+ * Materialized (default): the inscription table, kept in step with groupe
+ * membership by EnrollmentService. Derived: a student is enrolled in a course
+ * while one of their groupes has it; nothing is written on a groupe change
+ * and the lookups query groupe_etudiant x groupe_cours directly. Derived mode
+ * leaves no room for manual inscriptions, so it requires them to be off.
+ *
+ * At startup the inscription_effective view read by the reports
+ * ({@link spring.jpa.model.InscriptionEffective}) is (re)created for the mode.
+ * The derived one reads the two join tables only and keeps one row for the
+ * pairs that several groupes cover.
+ */
+@Service
+public class EnrollmentMode {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnrollmentMode.class);
+
+    static final String MATERIALIZED_VIEW = "create or replace view inscription_effective as "
+        + "select concat(i.id, '') as cle, i.id as inscription_id, i.date_inscription, i.etudiant_id, i.cours_code "
+        + "from inscription i";
+
+    // One row per pair however many groupes cover it: the row of the lowest groupe id.
+    // NOT EXISTS rather than DISTINCT/GROUP BY keeps the view mergeable in MySQL, so
+    // filters on etudiant_id / cours_code reach the join tables' indexes.
+    // Derived enrollments have no inscription row: typed nulls keep the column types.
+    static final String DERIVED_VIEW = "create or replace view inscription_effective as "
+        + "select concat(ge.etudiant_id, '-', gc.cours_code) as cle, "
+        + "cast(null as signed) as inscription_id, cast(null as date) as date_inscription, "
+        + "ge.etudiant_id, gc.cours_code "
+        + "from groupe_etudiant ge join groupe_cours gc on gc.groupe_id = ge.groupe_id "
+        + "where not exists (select 1 from groupe_etudiant ge2 "
+        + "join groupe_cours gc2 on gc2.groupe_id = ge2.groupe_id "
+        + "where ge2.etudiant_id = ge.etudiant_id and gc2.cours_code = gc.cours_code "
+        + "and ge2.groupe_id < ge.groupe_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean derived;
+
+    // The EntityManagerFactory is only there so that the schema exists before the view
+    public EnrollmentMode(JdbcTemplate jdbcTemplate,
+                          EntityManagerFactory entityManagerFactory,
+                          @Value("${app.inscriptions.derived.enabled:false}") boolean derived,
+                          @Value("${app.inscriptions.manual.enabled:false}") boolean manualEnabled) {
+        if (derived && manualEnabled) {
+            throw new IllegalStateException(
+                "app.inscriptions.derived.enabled requires app.inscriptions.manual.enabled=false");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.derived = derived;
+    }
+
+    @PostConstruct
+    void createView() {
+        jdbcTemplate.execute(derived ? DERIVED_VIEW : MATERIALIZED_VIEW);
+        logger.info("Enrollments are {}", derived ? "derived from groupe membership" : "materialized");
+    }
+
+    public boolean isDerived() {
+        return derived;
+    }
+}
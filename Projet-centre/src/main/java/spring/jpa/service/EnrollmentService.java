@@ -0,0 +1,313 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Keeps inscriptions in step with groupe membership: a student is enrolled
+ * in every course of every groupe they belong to.
+ *
+ * A groupe change is reconciled from its diff only. Pairs gained are
+ * (new students x new courses) minus (old students x old courses); pairs
+ * lost are the reverse, minus those still covered by another groupe. Each
+ * side is then written per course with a few set-based statements (one
+ * existence check, one batch insert or one bulk delete), so the cost follows
+ * the size of the change, not the size of the school.
+ *
+ * Reconciliation is idempotent: pairs already enrolled are not inserted
+ * again, pairs already gone are not counted again, and the mails are sent
+ * only once the transaction has committed. A failed run can simply be
+ * repeated (see GroupeSyncService).
+ *
+ * When enrollments are derived from membership (see EnrollmentMode) nothing
+ * is written: the pairs lost for good drop their notes, and the statistics
+ * of the courses and students involved are recomputed.
+ */
+@Service
+public class EnrollmentService {
+
+    // IN lists are split to stay under driver limits
+    private static final int CHUNK = 1000;
+
+    private final InscriptionRepository inscriptionRepository;
+    private final NoteRepository noteRepository;
+    private final GroupeRepository groupeRepository;
+    private final GradeStatsService gradeStatsService;
+    private final DataVersionListener dataVersionListener;
+    private final MailService mailService;
+    private final EnrollmentMode enrollmentMode;
+
+    public EnrollmentService(InscriptionRepository inscriptionRepository,
+                             NoteRepository noteRepository,
+                             GroupeRepository groupeRepository,
+                             GradeStatsService gradeStatsService,
+                             DataVersionListener dataVersionListener,
+                             MailService mailService,
+                             EnrollmentMode enrollmentMode) {
+        this.inscriptionRepository = inscriptionRepository;
+        this.noteRepository = noteRepository;
+        this.groupeRepository = groupeRepository;
+        this.gradeStatsService = gradeStatsService;
+        this.dataVersionListener = dataVersionListener;
+        this.mailService = mailService;
+        this.enrollmentMode = enrollmentMode;
+    }
+
+    public record Reconciliation(int inscrites, int retirees) {
+    }
+
+    /**
+     * Applies a groupe change to the inscriptions. The groupe must already
+     * hold its new membership (empty sets for a deleted groupe, old ones
+     * empty for a new groupe); call inside the writer's transaction.
+     */
+    @Transactional
+    public Reconciliation reconcileGroupe(Long groupeId,
+                                          Collection<Etudiant> oldEtudiants, Collection<Cours> oldCours,
+                                          Collection<Etudiant> newEtudiants, Collection<Cours> newCours) {
+        return reconcileGroupe(groupeId, oldEtudiants, oldCours, newEtudiants, newCours, (done, total) -> { });
+    }
+
+    /**
+     * Same, reporting progress as (courses done, courses to process).
+     */
+    @Transactional
+    public Reconciliation reconcileGroupe(Long groupeId,
+                                          Collection<Etudiant> oldEtudiants, Collection<Cours> oldCours,
+                                          Collection<Etudiant> newEtudiants, Collection<Cours> newCours,
+                                          BiConsumer<Integer, Integer> progress) {
+        Map<Long, Etudiant> oldById = byId(oldEtudiants);
+        Map<Long, Etudiant> newById = byId(newEtudiants);
+        Set<String> oldCodes = codes(oldCours);
+        Set<String> newCodes = codes(newCours);
+
+        // Pairs gained, per course
+        Map<Cours, List<Etudiant>> gained = new LinkedHashMap<>();
+        for (Cours c : newCours) {
+            if (c == null || c.getCode() == null) continue;
+            boolean kept = oldCodes.contains(c.getCode());
+            List<Etudiant> students = new ArrayList<>();
+            for (Map.Entry<Long, Etudiant> e : newById.entrySet()) {
+                if (!kept || !oldById.containsKey(e.getKey())) students.add(e.getValue());
+            }
+            if (!students.isEmpty()) gained.put(c, students);
+        }
+        // Pairs lost, per course
+        Map<Cours, List<Etudiant>> lost = new LinkedHashMap<>();
+        for (Cours c : oldCours) {
+            if (c == null || c.getCode() == null) continue;
+            boolean kept = newCodes.contains(c.getCode());
+            List<Etudiant> students = new ArrayList<>();
+            for (Map.Entry<Long, Etudiant> e : oldById.entrySet()) {
+                if (!kept || !newById.containsKey(e.getKey())) students.add(e.getValue());
+            }
+            if (!students.isEmpty()) lost.put(c, students);
+        }
+
+        if (enrollmentMode.isDerived()) {
+            return refreshDerived(groupeId, gained, lost, progress);
+        }
+
+        GradeStatsService.Changes stats = gradeStatsService.changes();
+        List<Runnable> mails = new ArrayList<>();
+        int steps = gained.size() + lost.size();
+        int done = 0;
+        progress.accept(done, steps);
+        int added = 0;
+        for (Map.Entry<Cours, List<Etudiant>> entry : gained.entrySet()) {
+            added += enroll(entry.getKey(), entry.getValue(), stats, mails);
+            progress.accept(++done, steps);
+        }
+        int removed = 0;
+        for (Map.Entry<Cours, List<Etudiant>> entry : lost.entrySet()) {
+            removed += withdraw(groupeId, entry.getKey(), entry.getValue(), stats, mails);
+            progress.accept(++done, steps);
+        }
+        stats.apply();
+        afterCommit(mails);
+        return new Reconciliation(added, removed);
+    }
+
+    // Inserts the missing inscriptions of the students in the course
+    private int enroll(Cours cours, List<Etudiant> students, GradeStatsService.Changes stats, List<Runnable> mails) {
+        int count = 0;
+        for (List<Etudiant> chunk : chunks(students)) {
+            Set<Long> enrolled = new HashSet<>(inscriptionRepository.findEnrolledEtudiantIds(cours, ids(chunk)));
+            List<Etudiant> missing = new ArrayList<>();
+            for (Etudiant e : chunk) {
+                if (!enrolled.contains(e.getId())) missing.add(e);
+            }
+            if (missing.isEmpty()) continue;
+
+            Date now = new Date();
+            List<Inscription> rows = new ArrayList<>(missing.size());
+            for (Etudiant e : missing) {
+                rows.add(new Inscription(now, e, cours));
+            }
+            inscriptionRepository.saveAll(rows);
+            stats.enrolled(cours, missing, now);
+            for (Etudiant e : missing) {
+                mails.add(() -> {
+                    mailService.sendEnrollmentStudent(e, cours);
+                    mailService.sendEnrollmentFormateur(cours.getFormateur(), e, cours);
+                });
+            }
+            count += missing.size();
+        }
+        return count;
+    }
+
+    // Deletes the inscriptions (and notes) of the students in the course,
+    // except for those who still follow it through another groupe
+    private int withdraw(Long groupeId, Cours cours, List<Etudiant> students, GradeStatsService.Changes stats,
+                         List<Runnable> mails) {
+        int count = 0;
+        for (List<Etudiant> chunk : chunks(students)) {
+            List<Long> ids = ids(chunk);
+            Set<Long> covered = new HashSet<>(groupeRepository.findMembersFollowingElsewhere(cours, ids, groupeId));
+            ids.removeIf(covered::contains);
+            if (ids.isEmpty()) continue;
+            Set<Long> enrolled = new HashSet<>(inscriptionRepository.findEnrolledEtudiantIds(cours, ids));
+            List<Etudiant> leaving = new ArrayList<>();
+            for (Etudiant e : chunk) {
+                if (enrolled.contains(e.getId())) leaving.add(e);
+            }
+            if (leaving.isEmpty()) continue;
+
+            List<Long> leavingIds = ids(leaving);
+            // Stats first: they read the notes about to be deleted
+            stats.unenrolled(cours, leaving);
+            if (noteRepository.deleteByCoursAndEtudiantIds(cours, leavingIds) > 0) {
+                dataVersionListener.touched(Note.class);
+            }
+            inscriptionRepository.deleteByCoursAndEtudiantIds(cours, leavingIds);
+            dataVersionListener.touched(Inscription.class);
+            for (Etudiant e : leaving) {
+                mails.add(() -> mailService.sendUnenrollFormateur(cours.getFormateur(), e, cours));
+            }
+            count += leaving.size();
+        }
+        return count;
+    }
+
+    // Derived mode: the membership already is the enrollment; only its side effects remain
+    private Reconciliation refreshDerived(Long groupeId, Map<Cours, List<Etudiant>> gained,
+                                          Map<Cours, List<Etudiant>> lost, BiConsumer<Integer, Integer> progress) {
+        List<Runnable> mails = new ArrayList<>();
+        Set<String> codes = new HashSet<>();
+        Set<Long> etudiantIds = new HashSet<>();
+        int steps = gained.size() + lost.size();
+        int done = 0;
+        progress.accept(done, steps);
+        int added = 0;
+        for (Map.Entry<Cours, List<Etudiant>> entry : gained.entrySet()) {
+            Cours cours = entry.getKey();
+            for (List<Etudiant> chunk : chunks(entry.getValue())) {
+                // Already following the course through another groupe: not a new enrollment
+                Set<Long> covered = new HashSet<>(groupeRepository.findMembersFollowingElsewhere(cours, ids(chunk), groupeId));
+                for (Etudiant e : chunk) {
+                    if (covered.contains(e.getId())) continue;
+                    mails.add(() -> {
+                        mailService.sendEnrollmentStudent(e, cours);
+                        mailService.sendEnrollmentFormateur(cours.getFormateur(), e, cours);
+                    });
+                    added++;
+                }
+                codes.add(cours.getCode());
+                etudiantIds.addAll(ids(chunk));
+            }
+            progress.accept(++done, steps);
+        }
+        int removed = 0;
+        for (Map.Entry<Cours, List<Etudiant>> entry : lost.entrySet()) {
+            Cours cours = entry.getKey();
+            for (List<Etudiant> chunk : chunks(entry.getValue())) {
+                Set<Long> enrolled = new HashSet<>(inscriptionRepository.findEnrolledEtudiantIds(cours, ids(chunk)));
+                List<Long> leavingIds = new ArrayList<>();
+                for (Etudiant e : chunk) {
+                    if (enrolled.contains(e.getId())) continue;
+                    leavingIds.add(e.getId());
+                    mails.add(() -> mailService.sendUnenrollFormateur(cours.getFormateur(), e, cours));
+                }
+                if (!leavingIds.isEmpty() && noteRepository.deleteByCoursAndEtudiantIds(cours, leavingIds) > 0) {
+                    dataVersionListener.touched(Note.class);
+                }
+                removed += leavingIds.size();
+                codes.add(cours.getCode());
+                etudiantIds.addAll(ids(chunk));
+            }
+            progress.accept(++done, steps);
+        }
+        if (!codes.isEmpty()) {
+            gradeStatsService.refresh(codes, etudiantIds);
+            dataVersionListener.touched(Inscription.class);
+        }
+        afterCommit(mails);
+        return new Reconciliation(added, removed);
+    }
+
+    // Mails must not go out for a run that is rolled back and retried
+    private static void afterCommit(List<Runnable> actions) {
+        if (actions.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            actions.forEach(Runnable::run);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                actions.forEach(Runnable::run);
+            }
+        });
+    }
+
+    private static Map<Long, Etudiant> byId(Collection<Etudiant> students) {
+        Map<Long, Etudiant> map = new LinkedHashMap<>();
+        for (Etudiant e : students) {
+            if (e != null && e.getId() != null) map.put(e.getId(), e);
+        }
+        return map;
+    }
+
+    private static Set<String> codes(Collection<Cours> cours) {
+        Set<String> codes = new HashSet<>();
+        for (Cours c : cours) {
+            if (c != null && c.getCode() != null) codes.add(c.getCode());
+        }
+        return codes;
+    }
+
+    private static List<Long> ids(List<Etudiant> students) {
+        List<Long> ids = new ArrayList<>(students.size());
+        for (Etudiant e : students) ids.add(e.getId());
+        return ids;
+    }
+
+    private static List<List<Etudiant>> chunks(List<Etudiant> students) {
+        List<List<Etudiant>> chunks = new ArrayList<>();
+        for (int from = 0; from < students.size(); from += CHUNK) {
+            chunks.add(students.subList(from, Math.min(students.size(), from + CHUNK)));
+        }
+        return chunks;
+    }
+}
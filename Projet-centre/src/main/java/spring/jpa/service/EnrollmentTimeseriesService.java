@@ -0,0 +1,300 @@
+package spring.jpa.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.dto.TimeseriesPoint;
+import spring.jpa.model.InscriptionJour;
+import spring.jpa.model.InscriptionJourKey;
+import spring.jpa.repository.InscriptionJourRepository;
+import spring.jpa.repository.InscriptionRepository;
+
+/**
+ * Daily enrollment rollups (inscription_daily) and the time series built on them.
+ *
+ * Enrollment writes reach this service as deltas through GradeStatsService,
+ * so each row counts the enrollments made and withdrawn on its day, per
+ * course (groupeId 0) and per groupe holding the student and the course.
+ * Time series sum those rows into day / week / month buckets and never read
+ * the inscriptions.
+ *
+ * rebuildAll() can only recount enrollments that still exist, by their
+ * dateInscription, so it clears the recorded withdrawals with them: the
+ * withdrawn enrollments are gone from both columns, and the net still sums
+ * to the current enrollments.
+ */
+@Service
+public class EnrollmentTimeseriesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnrollmentTimeseriesService.class);
+
+    // IN lists of the groupe lookup are split to stay under driver limits
+    private static final int LOOKUP_CHUNK = 1000;
+
+    // Upper bound on the buckets of one series
+    private static final int MAX_BUCKETS = 1000;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        // Start of the bucket holding the date (weeks start on Monday)
+        LocalDate bucket(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate next(LocalDate bucket) {
+            return switch (this) {
+                case DAY -> bucket.plusDays(1);
+                case WEEK -> bucket.plusWeeks(1);
+                case MONTH -> bucket.plusMonths(1);
+            };
+        }
+
+        long count(LocalDate from, LocalDate to) {
+            return switch (this) {
+                case DAY -> ChronoUnit.DAYS.between(from, to) + 1;
+                case WEEK -> ChronoUnit.WEEKS.between(bucket(from), bucket(to)) + 1;
+                case MONTH -> ChronoUnit.MONTHS.between(bucket(from), bucket(to)) + 1;
+            };
+        }
+
+        public static Granularity of(String value) {
+            if (value == null || value.isBlank()) return DAY;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Granularite inconnue: " + value + " (day, week, month)");
+            }
+        }
+    }
+
+    // Series split: one total line, one per course or one per groupe
+    public enum Split {
+        TOTAL, COURS, GROUPE;
+
+        public static Split of(String value) {
+            if (value == null || value.isBlank()) return TOTAL;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Decoupage inconnu: " + value + " (total, cours, groupe)");
+            }
+        }
+    }
+
+    /**
+     * Enrollment (+1) or withdrawal (-1) of a student in a course on a day.
+     */
+    public record Delta(LocalDate jour, long etudiantId, String coursCode, int sign) {
+    }
+
+    private final InscriptionJourRepository inscriptionJourRepository;
+    private final InscriptionRepository inscriptionRepository;
+
+    public EnrollmentTimeseriesService(InscriptionJourRepository inscriptionJourRepository,
+                                       InscriptionRepository inscriptionRepository) {
+        this.inscriptionJourRepository = inscriptionJourRepository;
+        this.inscriptionRepository = inscriptionRepository;
+    }
+
+    /**
+     * Adds the deltas to their day rows; must run inside the caller's transaction.
+     */
+    public void applyDeltas(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) return;
+        Map<InscriptionJourKey, long[]> byRow = new HashMap<>();
+        List<Delta> list = new ArrayList<>(deltas);
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK) {
+            List<Delta> chunk = list.subList(from, Math.min(list.size(), from + LOOKUP_CHUNK));
+            Set<Long> ids = new HashSet<>();
+            Set<String> codes = new HashSet<>();
+            for (Delta d : chunk) {
+                add(byRow, new InscriptionJourKey(d.jour(), d.coursCode(), 0), d.sign());
+                ids.add(d.etudiantId());
+                codes.add(d.coursCode());
+            }
+            Map<String, List<Long>> groupes = new HashMap<>();
+            for (Object[] m : inscriptionJourRepository.findGroupes(ids, codes)) {
+                groupes.computeIfAbsent(((Number) m[1]).longValue() + "|" + m[2], k -> new ArrayList<>())
+                    .add(((Number) m[0]).longValue());
+            }
+            for (Delta d : chunk) {
+                for (Long groupeId : groupes.getOrDefault(d.etudiantId() + "|" + d.coursCode(), List.of())) {
+                    add(byRow, new InscriptionJourKey(d.jour(), d.coursCode(), groupeId), d.sign());
+                }
+            }
+        }
+        // A missing row is created empty (racing writers both succeed), then incremented
+        for (Map.Entry<InscriptionJourKey, long[]> entry : byRow.entrySet()) {
+            InscriptionJourKey k = entry.getKey();
+            long[] v = entry.getValue();
+            if (inscriptionJourRepository.applyDelta(k, v[0], v[1]) == 0) {
+                inscriptionJourRepository.insertIfAbsent(k.getJour(), k.getCoursCode(), k.getGroupeId());
+                inscriptionJourRepository.applyDelta(k, v[0], v[1]);
+            }
+        }
+    }
+
+    private static void add(Map<InscriptionJourKey, long[]> byRow, InscriptionJourKey key, int sign) {
+        long[] v = byRow.computeIfAbsent(key, k -> new long[2]);
+        if (sign > 0) v[0]++;
+        else v[1]++;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIfEmpty() {
+        try {
+            if (inscriptionJourRepository.count() == 0 && inscriptionRepository.count() > 0) {
+                rebuildAll();
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Initial enrollment rollup build failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Recounts the enrollments of every day from the inscriptions; recorded
+     * withdrawals are cleared (see the class comment). Returns the number of rows.
+     */
+    @Transactional
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        Map<InscriptionJourKey, Long> counts = new HashMap<>();
+        for (Object[] row : inscriptionJourRepository.countByDayAndCours()) {
+            counts.merge(new InscriptionJourKey(jour((Date) row[0]), (String) row[1], 0),
+                ((Number) row[2]).longValue(), Long::sum);
+        }
+        for (Object[] row : inscriptionJourRepository.countByDayCoursAndGroupe()) {
+            counts.merge(new InscriptionJourKey(jour((Date) row[0]), (String) row[1], ((Number) row[2]).longValue()),
+                ((Number) row[3]).longValue(), Long::sum);
+        }
+
+        // Updates the loaded rows rather than a bulk delete + insert, so rows
+        // already in the persistence context are never left stale
+        List<InscriptionJour> removed = new ArrayList<>();
+        for (InscriptionJour row : inscriptionJourRepository.findAll()) {
+            Long n = counts.remove(row.getId());
+            if (n == null) {
+                removed.add(row);
+            } else {
+                row.setInscriptions(n);
+                row.setDesinscriptions(0);
+            }
+        }
+        inscriptionJourRepository.deleteAll(removed);
+        List<InscriptionJour> created = new ArrayList<>();
+        counts.forEach((key, n) -> {
+            InscriptionJour row = new InscriptionJour(key);
+            row.setInscriptions(n);
+            created.add(row);
+        });
+        inscriptionJourRepository.saveAll(created);
+        long total = inscriptionJourRepository.count();
+        logger.info("Enrollment rollups rebuilt: {} rows in {} ms", total, System.currentTimeMillis() - start);
+        return (int) total;
+    }
+
+    /**
+     * Enrollments per bucket between from and to (inclusive), optionally split
+     * by course or groupe and filtered on one course / groupe. Every series has
+     * a point for every bucket of the range, empty buckets included.
+     */
+    @Transactional(readOnly = true)
+    public List<TimeseriesPoint> timeseries(LocalDate from, LocalDate to, Granularity granularity, Split split,
+                                            String cours, Long groupeId) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Periode invalide: " + from + " > " + to);
+        }
+        if (granularity.count(from, to) > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Periode trop longue pour cette granularite (max "
+                + MAX_BUCKETS + " points)");
+        }
+        // A groupe filter or split reads the groupe rows, otherwise the course totals
+        boolean groupeRows = split == Split.GROUPE || groupeId != null;
+        List<InscriptionJour> rows = groupeRows
+            ? inscriptionJourRepository.findGroupeRows(from, to, cours, groupeId)
+            : inscriptionJourRepository.findTotals(from, to, cours);
+
+        // series key -> bucket -> {inscriptions, desinscriptions}
+        Map<List<Object>, Map<LocalDate, long[]>> series = new TreeMap<>(EnrollmentTimeseriesService::compareKeys);
+        for (InscriptionJour row : rows) {
+            InscriptionJourKey k = row.getId();
+            List<Object> key = Arrays.asList(
+                split == Split.COURS ? k.getCoursCode() : null,
+                split == Split.GROUPE ? k.getGroupeId() : null);
+            long[] acc = series.computeIfAbsent(key, x -> new HashMap<>())
+                .computeIfAbsent(granularity.bucket(k.getJour()), x -> new long[2]);
+            acc[0] += row.getInscriptions();
+            acc[1] += row.getDesinscriptions();
+        }
+        if (series.isEmpty() && split == Split.TOTAL) {
+            series.put(Arrays.asList(null, null), new HashMap<>());
+        }
+
+        Set<LocalDate> buckets = new LinkedHashSet<>();
+        for (LocalDate b = granularity.bucket(from); !b.isAfter(to); b = granularity.next(b)) {
+            buckets.add(b);
+        }
+        List<TimeseriesPoint> result = new ArrayList<>();
+        for (Map.Entry<List<Object>, Map<LocalDate, long[]>> entry : series.entrySet()) {
+            List<Object> key = entry.getKey();
+            for (LocalDate b : buckets) {
+                TimeseriesPoint point = new TimeseriesPoint(b, (String) key.get(0), (Long) key.get(1));
+                long[] acc = entry.getValue().get(b);
+                if (acc != null) {
+                    point.setInscriptions(acc[0]);
+                    point.setDesinscriptions(acc[1]);
+                }
+                result.add(point);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(List<Object> a, List<Object> b) {
+        for (int i = 0; i < a.size(); i++) {
+            Comparable x = (Comparable) a.get(i);
+            Comparable y = (Comparable) b.get(i);
+            if (x == y) continue;
+            if (x == null) return -1;
+            if (y == null) return 1;
+            int c = x.compareTo(y);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    // DATE columns come back as java.sql.Date, whose toInstant() is unsupported
+    public static LocalDate jour(Date date) {
+        if (date == null) return LocalDate.now();
+        if (date instanceof java.sql.Date sql) return sql.toLocalDate();
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
@@ -0,0 +1,224 @@
+package spring.jpa.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.model.Seance;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+import spring.jpa.repository.SeanceRepository;
+
+/**
+ * Tabular exports (CSV or XLSX) of notes, inscriptions, etudiants and seances.
+ *
+ * Rows come from a streamed scalar query (fetch size 1000, no entity loaded)
+ * and are written as they arrive: CSV through a buffered writer, XLSX through
+ * POI's streaming workbook, which keeps a window of rows in memory and spills
+ * the rest to a temporary file. Memory does not grow with the row count.
+ *
+ * CSV uses ';' and a UTF-8 BOM so that Excel opens it directly; the notes
+ * export has the headers the grade import expects.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        CSV("csv", "text/csv;charset=UTF-8"),
+        XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+        private final String extension;
+        private final String mediaType;
+
+        Format(String extension, String mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String extension() { return extension; }
+        public String mediaType() { return mediaType; }
+
+        public static Format of(String value) {
+            if (value == null || value.isBlank()) return CSV;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Format inconnu: " + value + " (csv ou xlsx)");
+            }
+        }
+    }
+
+    // Optional filters, null = off
+    public record Filter(String cours, Long groupeId, Long sessionId) {
+    }
+
+    private static final int XLSX_WINDOW = 100;
+    private static final int MAX_XLSX_ROW = 1_048_575; // last 0-based row index of a sheet
+    private static final char CSV_SEPARATOR = ';';
+
+    private final Map<String, Dataset> datasets = new LinkedHashMap<>();
+
+    public ExportService(NoteRepository noteRepository,
+                         InscriptionRepository inscriptionRepository,
+                         EtudiantRepository etudiantRepository,
+                         SeanceRepository seanceRepository) {
+        datasets.put("notes", new Dataset(
+            List.of("matricule", "nom", "prenom", "email", "cours", "titre", "examen", "ds", "oral"),
+            new Class<?>[] { Note.class, Inscription.class, Etudiant.class, Cours.class, Groupe.class },
+            f -> noteRepository.streamExportRows(f.cours(), f.groupeId(), f.sessionId())));
+        datasets.put("inscriptions", new Dataset(
+            List.of("id", "date", "matricule", "nom", "prenom", "email", "cours", "titre"),
+            new Class<?>[] { Inscription.class, Etudiant.class, Cours.class, Groupe.class },
+            f -> inscriptionRepository.streamExportRows(f.cours(), f.groupeId(), f.sessionId())));
+        datasets.put("etudiants", new Dataset(
+            List.of("id", "matricule", "nom", "prenom", "email", "dateInscription", "actif", "specialite"),
+            new Class<?>[] { Etudiant.class, Inscription.class, Groupe.class },
+            f -> etudiantRepository.streamExportRows(f.cours(), f.groupeId(), f.sessionId())));
+        datasets.put("seances", new Dataset(
+            List.of("id", "date", "debut", "fin", "salle", "cours", "titre", "groupe"),
+            new Class<?>[] { Seance.class, Cours.class, Groupe.class },
+            f -> seanceRepository.streamExportRows(f.cours(), f.groupeId(), f.sessionId())));
+    }
+
+    public record Dataset(List<String> headers, Class<?>[] dependsOn, Function<Filter, Stream<Object[]>> query) {
+    }
+
+    public Map<String, Dataset> datasets() {
+        return datasets;
+    }
+
+    public Dataset dataset(String name) {
+        Dataset dataset = name == null ? null : datasets.get(name.toLowerCase(Locale.ROOT));
+        if (dataset == null) {
+            throw new IllegalArgumentException("Jeu de donnees inconnu: " + name + " " + datasets.keySet());
+        }
+        return dataset;
+    }
+
+    /**
+     * Writes the dataset to out; the stream is not closed. Returns the row count.
+     */
+    @Transactional(readOnly = true)
+    public long export(String name, Filter filter, Format format, OutputStream out) throws IOException {
+        Dataset dataset = dataset(name);
+        try (Stream<Object[]> rows = dataset.query().apply(filter)) {
+            return format == Format.XLSX
+                ? writeXlsx(name, dataset.headers(), rows, out)
+                : writeCsv(dataset.headers(), rows, out);
+        }
+    }
+
+    private long writeCsv(List<String> headers, Stream<Object[]> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write('\uFEFF');
+        writeCsvLine(writer, headers.toArray());
+        long count = 0;
+        for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+            writeCsvLine(writer, row);
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) writer.write(CSV_SEPARATOR);
+            String text = text(values[i]);
+            if (text.indexOf(CSV_SEPARATOR) >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private long writeXlsx(String sheetName, List<String> headers, Stream<Object[]> rows, OutputStream out)
+            throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle bold = workbook.createCellStyle();
+            Font font = workbook.createFont();
+            font.setBold(true);
+            bold.setFont(font);
+
+            int sheets = 1;
+            SXSSFSheet sheet = newSheet(workbook, sheetName, headers, bold);
+            int r = 1;
+            long count = 0;
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                // Past the XLSX row limit the export continues on a new sheet
+                if (r > MAX_XLSX_ROW) {
+                    sheet = newSheet(workbook, sheetName + "-" + (++sheets), headers, bold);
+                    r = 1;
+                }
+                Row line = sheet.createRow(r++);
+                for (int i = 0; i < row.length; i++) {
+                    Object value = row[i];
+                    if (value == null) continue;
+                    Cell cell = line.createCell(i);
+                    if (value instanceof Number number) cell.setCellValue(number.doubleValue());
+                    else if (value instanceof Boolean b) cell.setCellValue(b);
+                    else cell.setCellValue(text(value));
+                }
+                count++;
+            }
+            workbook.write(out);
+            out.flush();
+            return count;
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+
+    private static SXSSFSheet newSheet(SXSSFWorkbook workbook, String name, List<String> headers, CellStyle bold) {
+        SXSSFSheet sheet = workbook.createSheet(name);
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < headers.size(); i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(headers.get(i));
+            cell.setCellStyle(bold);
+        }
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    // Dates print as ISO (java.sql.Date, LocalDate and LocalTime toString() already do)
+    private static String text(Object value) {
+        if (value == null) return "";
+        if (value instanceof java.util.Date date && !(value instanceof java.sql.Date)) {
+            return new java.sql.Date(date.getTime()).toString();
+        }
+        return value.toString();
+    }
+}
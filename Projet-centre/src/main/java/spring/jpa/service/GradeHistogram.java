@@ -0,0 +1,76 @@
+package spring.jpa.service;
+
+import spring.jpa.dto.Distribution;
+
+/**
+ * Constant-memory accumulator for one grade series on the 0-20 scale.
+ * Values are counted in 0.01 slots (exact for grades entered with two
+ * decimals), which gives the median and any bucketing after the fact;
+ * mean and variance use Welford's update.
+ */
+final class GradeHistogram {
+
+    private static final int SCALE = 100;
+    private static final int SLOTS = 20 * SCALE + 1;
+
+    private final long[] counts = new long[SLOTS];
+    private long n;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+        n++;
+        double delta = value - mean;
+        mean += delta / n;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        counts[slot(value)]++;
+    }
+
+    Distribution toDistribution(int bins) {
+        if (n == 0) {
+            Distribution empty = new Distribution(0, 0, 0, 0, 0, 0);
+            addBuckets(empty, bins);
+            return empty;
+        }
+        double stdDev = Math.sqrt(m2 / n);
+        Distribution d = new Distribution(n, mean, median(), stdDev, min, max);
+        addBuckets(d, bins);
+        return d;
+    }
+
+    private void addBuckets(Distribution d, int bins) {
+        double width = 20.0 / bins;
+        long[] perBucket = new long[bins];
+        for (int s = 0; s < SLOTS; s++) {
+            if (counts[s] == 0) continue;
+            int b = Math.min(bins - 1, (int) ((s / (double) SCALE) / width));
+            perBucket[b] += counts[s];
+        }
+        for (int b = 0; b < bins; b++) {
+            d.getHistogramme().add(new Distribution.Bucket(b * width, (b + 1) * width, perBucket[b]));
+        }
+    }
+
+    // Mean of the two middle values when n is even
+    private double median() {
+        long lower = (n - 1) / 2;
+        long upper = n / 2;
+        double lowValue = -1;
+        long seen = 0;
+        for (int s = 0; s < SLOTS; s++) {
+            seen += counts[s];
+            if (lowValue < 0 && seen > lower) lowValue = s / (double) SCALE;
+            if (seen > upper) return (lowValue + s / (double) SCALE) / 2;
+        }
+        return lowValue;
+    }
+
+    private static int slot(double value) {
+        int s = (int) Math.round(value * SCALE);
+        return Math.max(0, Math.min(SLOTS - 1, s));
+    }
+}
@@ -0,0 +1,39 @@
+package spring.jpa.service;
+
+/**
+ * Column-oriented grade rows (one per enrollment) with the per-course weights
+ * already broadcast to each row, so averages are plain loops over primitives.
+ * Built by {@link GradingEngine#load}.
+ */
+public final class GradeMatrix {
+
+    final int size;
+    final long[] etudiantIds;
+    final String[] coursCodes;
+    final double[] examen;
+    final double[] ds;
+    final double[] oral;
+    final double[] weightExamen;
+    final double[] weightDs;
+    final double[] weightOral;
+    final double[] credits;
+
+    GradeMatrix(int size) {
+        this.size = size;
+        this.etudiantIds = new long[size];
+        this.coursCodes = new String[size];
+        this.examen = new double[size];
+        this.ds = new double[size];
+        this.oral = new double[size];
+        this.weightExamen = new double[size];
+        this.weightDs = new double[size];
+        this.weightOral = new double[size];
+        this.credits = new double[size];
+    }
+
+    public int size() { return size; }
+
+    public long etudiantId(int row) { return etudiantIds[row]; }
+
+    public String coursCode(int row) { return coursCodes[row]; }
+}
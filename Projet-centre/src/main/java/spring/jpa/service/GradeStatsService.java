@@ -0,0 +1,443 @@
+package spring.jpa.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import spring.jpa.dto.InscriptionRow;
+import spring.jpa.model.Cours;
+import spring.jpa.model.CoursStats;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.EtudiantStats;
+import spring.jpa.model.Note;
+import spring.jpa.model.NoteTotals;
+import spring.jpa.repository.CoursStatsRepository;
+import spring.jpa.repository.EtudiantStatsRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Keeps CoursStats / EtudiantStats in step with note and enrollment writes.
+ *
+ * Writers collect what they change in a {@link Changes} and call apply() inside
+ * their own transaction: deltas are summed per course and per student and
+ * written as one atomic increment per row. Only enrolled (etudiant, cours)
+ * pairs are counted, like the reports did before. rebuildAll() recomputes
+ * everything from the notes and inscriptions. The same deltas feed the
+ * reporting cube (ReportCubeService) and the daily enrollment rollups
+ * (EnrollmentTimeseriesService), and the enrollment changes the
+ * MembershipIndex.
+ */
+@Service
+public class GradeStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GradeStatsService.class);
+
+    private final CoursStatsRepository coursStatsRepository;
+    private final EtudiantStatsRepository etudiantStatsRepository;
+    private final InscriptionRepository inscriptionRepository;
+    private final NoteRepository noteRepository;
+    private final GradingEngine gradingEngine;
+    private final ReportCubeService reportCubeService;
+    private final EnrollmentTimeseriesService enrollmentTimeseriesService;
+    private final MembershipIndex membershipIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    public GradeStatsService(
+            CoursStatsRepository coursStatsRepository,
+            EtudiantStatsRepository etudiantStatsRepository,
+            InscriptionRepository inscriptionRepository,
+            NoteRepository noteRepository,
+            GradingEngine gradingEngine,
+            ReportCubeService reportCubeService,
+            EnrollmentTimeseriesService enrollmentTimeseriesService,
+            MembershipIndex membershipIndex,
+            PlatformTransactionManager transactionManager) {
+        this.coursStatsRepository = coursStatsRepository;
+        this.etudiantStatsRepository = etudiantStatsRepository;
+        this.inscriptionRepository = inscriptionRepository;
+        this.noteRepository = noteRepository;
+        this.gradingEngine = gradingEngine;
+        this.reportCubeService = reportCubeService;
+        this.enrollmentTimeseriesService = enrollmentTimeseriesService;
+        this.membershipIndex = membershipIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Changes changes() {
+        return new Changes();
+    }
+
+    public CoursStats coursStats(String code) {
+        return coursStatsRepository.findById(code).orElseGet(() -> new CoursStats(code));
+    }
+
+    public EtudiantStats etudiantStats(Long etudiantId) {
+        return etudiantStatsRepository.findById(etudiantId).orElseGet(() -> new EtudiantStats(etudiantId));
+    }
+
+    /**
+     * Withdraws all of a student's enrollments; call before their notes and
+     * inscriptions are deleted.
+     */
+    @Transactional
+    public void etudiantDeleted(Etudiant etudiant) {
+        Changes changes = changes();
+        for (InscriptionRow i : inscriptionRepository.findByEtudiant(etudiant)) {
+            if (i.getCours() != null) changes.unenrolled(etudiant, i.getCours());
+        }
+        changes.apply();
+        etudiantStatsRepository.deleteById(etudiant.getId());
+    }
+
+    /**
+     * Drops the course's row and recomputes its former students' rows
+     * without it; call after the course is deleted.
+     */
+    @Transactional
+    public void coursDeleted(String code, Collection<Long> etudiantIds) {
+        coursStatsRepository.deleteById(code);
+        coursStatsRepository.flush();
+        refresh(List.of(), etudiantIds);
+    }
+
+    // First start on an existing database: the tables are empty but inscriptions are not
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIfEmpty() {
+        try {
+            if (coursStatsRepository.count() == 0 && inscriptionRepository.hasEnrollments()) {
+                // Self-invocation skips the @Transactional proxy: open the transaction here
+                transactionTemplate.execute(status -> rebuildAll());
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Initial grade statistics build failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes every summary row from the notes and inscriptions with two
+     * GROUP BY queries. Returns the number of course rows written.
+     */
+    @Transactional
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        double de = gradingEngine.getDefaultCoefExamen();
+        double dd = gradingEngine.getDefaultCoefDs();
+        double dO = gradingEngine.getDefaultCoefOral();
+
+        List<CoursStats> courses = new ArrayList<>();
+        for (Object[] row : noteRepository.aggregateTotalsByCours(de, dd, dO)) {
+            CoursStats cs = new CoursStats((String) row[0]);
+            cs.setTotals(totals(row));
+            courses.add(cs);
+        }
+        List<EtudiantStats> students = new ArrayList<>();
+        for (Object[] row : noteRepository.aggregateTotalsByEtudiant(de, dd, dO)) {
+            EtudiantStats es = new EtudiantStats(((Number) row[0]).longValue());
+            es.setTotals(totals(row));
+            es.setCredits(number(row[11]));
+            es.setSumMoyennePonderee(number(row[12]));
+            students.add(es);
+        }
+
+        coursStatsRepository.deleteAllInBatch();
+        etudiantStatsRepository.deleteAllInBatch();
+        coursStatsRepository.saveAll(courses);
+        etudiantStatsRepository.saveAll(students);
+        logger.info("Grade statistics rebuilt: {} courses, {} students in {} ms",
+            courses.size(), students.size(), System.currentTimeMillis() - start);
+        return courses.size();
+    }
+
+    /**
+     * Recomputes the rows of some courses and students from the current
+     * enrollments, like rebuildAll() does for all of them. Used when the
+     * enrollments changed without deltas (derived mode, see EnrollmentMode).
+     */
+    @Transactional
+    public void refresh(Collection<String> codes, Collection<Long> etudiantIds) {
+        double de = gradingEngine.getDefaultCoefExamen();
+        double dd = gradingEngine.getDefaultCoefDs();
+        double dO = gradingEngine.getDefaultCoefOral();
+        if (!codes.isEmpty()) {
+            Map<String, CoursStats> rows = new HashMap<>();
+            for (String code : codes) rows.put(code, coursStats(code));
+            for (CoursStats cs : rows.values()) cs.setTotals(new NoteTotals());
+            for (Object[] row : noteRepository.aggregateTotalsByCoursIn(codes, de, dd, dO)) {
+                rows.get((String) row[0]).setTotals(totals(row));
+            }
+            coursStatsRepository.saveAll(rows.values());
+        }
+        List<Long> ids = new ArrayList<>(etudiantIds);
+        // IN lists are split to stay under driver limits
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            Map<Long, EtudiantStats> rows = new HashMap<>();
+            for (Long id : chunk) {
+                EtudiantStats es = etudiantStats(id);
+                es.setTotals(new NoteTotals());
+                es.setCredits(0);
+                es.setSumMoyennePonderee(0);
+                rows.put(id, es);
+            }
+            for (Object[] row : noteRepository.aggregateTotalsByEtudiantIn(chunk, de, dd, dO)) {
+                EtudiantStats es = rows.get(((Number) row[0]).longValue());
+                es.setTotals(totals(row));
+                es.setCredits(number(row[11]));
+                es.setSumMoyennePonderee(number(row[12]));
+            }
+            etudiantStatsRepository.saveAll(rows.values());
+        }
+    }
+
+    // Columns 1..10 of an aggregate row, see NoteRepository.TOTALS
+    private static NoteTotals totals(Object[] row) {
+        NoteTotals t = new NoteTotals();
+        t.setInscrits((long) number(row[1]));
+        t.setNotes((long) number(row[2]));
+        t.setSumExamen(number(row[3]));
+        t.setSumDs(number(row[4]));
+        t.setSumOral(number(row[5]));
+        t.setSumMoyenne(number(row[6]));
+        t.setPassExamen((long) number(row[7]));
+        t.setPassDs((long) number(row[8]));
+        t.setPassOral((long) number(row[9]));
+        t.setPassMoyenne((long) number(row[10]));
+        return t;
+    }
+
+    private static double number(Object value) {
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    private static NoteTotals totals(long inscrits, boolean graded, double examen, double ds, double oral, double moyenne) {
+        NoteTotals t = new NoteTotals();
+        t.setInscrits(inscrits);
+        t.setNotes(graded ? 1 : 0);
+        t.setSumExamen(examen);
+        t.setSumDs(ds);
+        t.setSumOral(oral);
+        t.setSumMoyenne(moyenne);
+        t.setPassExamen(examen >= GradingEngine.PASS_MARK ? 1 : 0);
+        t.setPassDs(ds >= GradingEngine.PASS_MARK ? 1 : 0);
+        t.setPassOral(oral >= GradingEngine.PASS_MARK ? 1 : 0);
+        t.setPassMoyenne(moyenne >= GradingEngine.PASS_MARK ? 1 : 0);
+        return t;
+    }
+
+    /**
+     * Pending deltas of one unit of work. Record a note with noteRemoved()
+     * BEFORE modifying it and noteAdded() after; record enrollments with
+     * enrolled()/unenrolled(), which also count/withdraw the pair's note.
+     */
+    public final class Changes {
+
+        private final Map<PairKey, PairDelta> pairs = new LinkedHashMap<>();
+        private final List<EnrollmentTimeseriesService.Delta> days = new ArrayList<>();
+
+        public Changes noteAdded(Note n) {
+            return note(n, 1);
+        }
+
+        public Changes noteRemoved(Note n) {
+            return note(n, -1);
+        }
+
+        public Changes enrolled(Etudiant e, Cours c) {
+            return enrolled(e, c, null);
+        }
+
+        // dateInscription of the new inscription; null = today
+        public Changes enrolled(Etudiant e, Cours c, Date dateInscription) {
+            days.add(new EnrollmentTimeseriesService.Delta(
+                EnrollmentTimeseriesService.jour(dateInscription), e.getId(), c.getCode(), 1));
+            // A note left from an earlier enrollment counts again
+            noteRepository.findFirstByEtudiantAndCours(e, c).ifPresent(this::noteAdded);
+            PairDelta d = pair(e, c);
+            d.inscrits++;
+            d.enrolled = true;
+            return this;
+        }
+
+        /**
+         * Enrollment of several students in one course; their leftover notes
+         * are read with one query.
+         */
+        public Changes enrolled(Cours c, Collection<Etudiant> students, Date dateInscription) {
+            Map<Long, Note> notes = notesOf(c, students);
+            for (Etudiant e : students) {
+                days.add(new EnrollmentTimeseriesService.Delta(
+                    EnrollmentTimeseriesService.jour(dateInscription), e.getId(), c.getCode(), 1));
+                noteAdded(notes.get(e.getId()));
+                PairDelta d = pair(e, c);
+                d.inscrits++;
+                d.enrolled = true;
+            }
+            return this;
+        }
+
+        public Changes unenrolled(Cours c, Collection<Etudiant> students) {
+            Map<Long, Note> notes = notesOf(c, students);
+            for (Etudiant e : students) {
+                days.add(new EnrollmentTimeseriesService.Delta(LocalDate.now(), e.getId(), c.getCode(), -1));
+                noteRemoved(notes.get(e.getId()));
+                PairDelta d = pair(e, c);
+                d.inscrits--;
+                d.enrolled = true;
+            }
+            return this;
+        }
+
+        private Map<Long, Note> notesOf(Cours c, Collection<Etudiant> students) {
+            Map<Long, Note> notes = new HashMap<>();
+            if (students.isEmpty()) return notes;
+            List<Long> ids = students.stream().map(Etudiant::getId).toList();
+            for (Note n : noteRepository.findByCoursAndEtudiant_IdIn(c, ids)) {
+                notes.putIfAbsent(n.getEtudiant().getId(), n);
+            }
+            return notes;
+        }
+
+        public Changes unenrolled(Etudiant e, Cours c) {
+            days.add(new EnrollmentTimeseriesService.Delta(LocalDate.now(), e.getId(), c.getCode(), -1));
+            noteRepository.findFirstByEtudiantAndCours(e, c).ifPresent(this::noteRemoved);
+            PairDelta d = pair(e, c);
+            d.inscrits--;
+            d.enrolled = true;
+            return this;
+        }
+
+        private Changes note(Note n, int sign) {
+            if (n == null || n.getEtudiant() == null || n.getCours() == null) return this;
+            PairDelta d = pair(n.getEtudiant(), n.getCours());
+            double moyenne = gradingEngine.noteAverage(n);
+            NoteTotals t = totals(0, n.isGraded(), n.getNoteExamen(), n.getNoteDs(), n.getNoteOral(), moyenne);
+            d.grades.add(sign > 0 ? t : t.negate());
+            d.ponderee += sign * moyenne * gradingEngine.credits(n.getCours());
+            d.sumSquares += sign * moyenne * moyenne;
+            return this;
+        }
+
+        private PairDelta pair(Etudiant e, Cours c) {
+            return pairs.computeIfAbsent(new PairKey(e.getId(), c.getCode()), k -> new PairDelta(c));
+        }
+
+        /**
+         * Writes the summed deltas; must run inside the caller's transaction.
+         */
+        public void apply() {
+            if (pairs.isEmpty()) return;
+            Set<PairKey> counted = enrolledPairs();
+
+            Map<String, NoteTotals> byCours = new HashMap<>();
+            Map<Long, NoteTotals> byEtudiant = new HashMap<>();
+            Map<Long, double[]> weightedByEtudiant = new HashMap<>();
+            List<ReportCubeService.Delta> cube = new ArrayList<>();
+            Map<String, List<Long>> added = new HashMap<>();
+            Map<String, List<Long>> removed = new HashMap<>();
+            for (Map.Entry<PairKey, PairDelta> entry : pairs.entrySet()) {
+                PairKey key = entry.getKey();
+                PairDelta d = entry.getValue();
+                if (d.inscrits != 0) {
+                    (d.inscrits > 0 ? added : removed)
+                        .computeIfAbsent(key.coursCode, k -> new ArrayList<>()).add(key.etudiantId);
+                }
+                NoteTotals t = new NoteTotals();
+                t.setInscrits(d.inscrits);
+                double credits = d.inscrits * gradingEngine.credits(d.cours);
+                double ponderee = 0;
+                double squares = 0;
+                // An enrollment removed in this unit still had its note counted
+                if (counted.contains(key) || d.inscrits < 0) {
+                    t.add(d.grades);
+                    ponderee = d.ponderee;
+                    squares = d.sumSquares;
+                }
+                if (t.isZero() && credits == 0 && ponderee == 0) continue;
+                cube.add(new ReportCubeService.Delta(key.etudiantId, key.coursCode,
+                    t.getInscrits(), t.getSumMoyenne(), squares, t.getPassMoyenne()));
+                byCours.computeIfAbsent(key.coursCode, k -> new NoteTotals()).add(t);
+                byEtudiant.computeIfAbsent(key.etudiantId, k -> new NoteTotals()).add(t);
+                double[] w = weightedByEtudiant.computeIfAbsent(key.etudiantId, k -> new double[2]);
+                w[0] += credits;
+                w[1] += ponderee;
+            }
+
+            // A missing row is created empty (racing writers both succeed), then incremented
+            for (Map.Entry<String, NoteTotals> entry : byCours.entrySet()) {
+                if (coursStatsRepository.applyDelta(entry.getKey(), entry.getValue()) == 0) {
+                    coursStatsRepository.insertIfAbsent(entry.getKey());
+                    coursStatsRepository.applyDelta(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<Long, NoteTotals> entry : byEtudiant.entrySet()) {
+                double[] w = weightedByEtudiant.get(entry.getKey());
+                if (etudiantStatsRepository.applyDelta(entry.getKey(), w[0], w[1], entry.getValue()) == 0) {
+                    etudiantStatsRepository.insertIfAbsent(entry.getKey());
+                    etudiantStatsRepository.applyDelta(entry.getKey(), w[0], w[1], entry.getValue());
+                }
+            }
+            reportCubeService.applyDeltas(cube);
+            enrollmentTimeseriesService.applyDeltas(days);
+            added.forEach(membershipIndex::enrolled);
+            removed.forEach(membershipIndex::unenrolled);
+            pairs.clear();
+            days.clear();
+        }
+
+        // Pairs whose note deltas count: enrolled now, or touched by an enrollment change here
+        private Set<PairKey> enrolledPairs() {
+            Set<PairKey> counted = new HashSet<>();
+            Map<String, PairDelta> toCheckCours = new HashMap<>();
+            Map<String, Set<Long>> toCheck = new HashMap<>();
+            for (Map.Entry<PairKey, PairDelta> entry : pairs.entrySet()) {
+                PairKey key = entry.getKey();
+                if (entry.getValue().enrolled) {
+                    if (entry.getValue().inscrits >= 0) counted.add(key);
+                } else {
+                    toCheckCours.putIfAbsent(key.coursCode, entry.getValue());
+                    toCheck.computeIfAbsent(key.coursCode, k -> new HashSet<>()).add(key.etudiantId);
+                }
+            }
+            for (Map.Entry<String, Set<Long>> entry : toCheck.entrySet()) {
+                Cours cours = toCheckCours.get(entry.getKey()).cours;
+                for (Long id : inscriptionRepository.findEnrolledEtudiantIds(cours, entry.getValue())) {
+                    counted.add(new PairKey(id, entry.getKey()));
+                }
+            }
+            return counted;
+        }
+    }
+
+    private static final class PairDelta {
+        private final Cours cours;
+        private final NoteTotals grades = new NoteTotals();
+        private double ponderee;
+        private double sumSquares;
+        private long inscrits;
+        private boolean enrolled;
+
+        private PairDelta(Cours cours) {
+            this.cours = cours;
+        }
+    }
+
+    private record PairKey(Long etudiantId, String coursCode) {
+    }
+}
@@ -0,0 +1,243 @@
+package spring.jpa.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import spring.jpa.model.Bareme;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Note;
+
+/**
+ * Weighted averages from each course's grading scheme (Bareme) and credits.
+ * A note average is examen*wE + ds*wD + oral*wO with the weights normalized
+ * to 1; a student average weights each course average by its credits.
+ */
+@Service
+public class GradingEngine {
+
+    public static final double PASS_MARK = 10.0;
+
+    // Below this many rows the per-student pass stays on the calling thread
+    private static final int PARALLEL_THRESHOLD_ROWS = 20_000;
+    private static final int STUDENTS_PER_TASK = 512;
+
+    private final double defaultCoefExamen;
+    private final double defaultCoefDs;
+    private final double defaultCoefOral;
+
+    public GradingEngine(
+            @Value("${app.grading.coef.examen:0.6}") double defaultCoefExamen,
+            @Value("${app.grading.coef.ds:0.2}") double defaultCoefDs,
+            @Value("${app.grading.coef.oral:0.2}") double defaultCoefOral) {
+        this.defaultCoefExamen = defaultCoefExamen;
+        this.defaultCoefDs = defaultCoefDs;
+        this.defaultCoefOral = defaultCoefOral;
+    }
+
+    // Defaults for courses without a Bareme (also bound into the SQL aggregates)
+    public double getDefaultCoefExamen() { return defaultCoefExamen; }
+    public double getDefaultCoefDs() { return defaultCoefDs; }
+    public double getDefaultCoefOral() { return defaultCoefOral; }
+
+    // ===== per-course scheme =====
+
+    /**
+     * Normalized {examen, ds, oral} weights of a course.
+     */
+    public double[] weights(Cours cours) {
+        Bareme b = cours == null ? null : cours.getBareme();
+        return b == null
+            ? weights(null, null, null)
+            : weights(b.getCoefExamen(), b.getCoefDs(), b.getCoefOral());
+    }
+
+    public double credits(Cours cours) {
+        return credits(cours == null ? null : cours.getCredits());
+    }
+
+    public double noteAverage(Note n) {
+        double[] w = weights(n.getCours());
+        return n.getNoteExamen() * w[0] + n.getNoteDs() * w[1] + n.getNoteOral() * w[2];
+    }
+
+    private double[] weights(Double coefExamen, Double coefDs, Double coefOral) {
+        double e = coefExamen != null ? coefExamen : defaultCoefExamen;
+        double d = coefDs != null ? coefDs : defaultCoefDs;
+        double o = coefOral != null ? coefOral : defaultCoefOral;
+        double sum = e + d + o;
+        if (sum <= 0) return new double[] { 1.0 / 3, 1.0 / 3, 1.0 / 3 };
+        return new double[] { e / sum, d / sum, o / sum };
+    }
+
+    private double credits(Integer credits) {
+        return credits == null ? 1.0 : Math.max(0, credits);
+    }
+
+    // ===== bulk computation =====
+
+    /**
+     * Builds a matrix from NoteRepository grade rows (see NoteRepository.GRADE_ROWS).
+     * Course weights are computed once per course and broadcast to its rows.
+     */
+    public GradeMatrix load(List<Object[]> rows) {
+        GradeMatrix m = new GradeMatrix(rows.size());
+        Map<String, double[]> schemeByCourse = new HashMap<>();
+        for (int i = 0; i < m.size; i++) {
+            Object[] row = rows.get(i);
+            String code = (String) row[1];
+            double[] scheme = schemeByCourse.computeIfAbsent(code, k -> scheme(row));
+            m.etudiantIds[i] = ((Number) row[0]).longValue();
+            m.coursCodes[i] = code;
+            m.examen[i] = row[2] == null ? 0 : ((Number) row[2]).doubleValue();
+            m.ds[i] = row[3] == null ? 0 : ((Number) row[3]).doubleValue();
+            m.oral[i] = row[4] == null ? 0 : ((Number) row[4]).doubleValue();
+            m.weightExamen[i] = scheme[0];
+            m.weightDs[i] = scheme[1];
+            m.weightOral[i] = scheme[2];
+            m.credits[i] = scheme[3];
+        }
+        return m;
+    }
+
+    /**
+     * {weightExamen, weightDs, weightOral, credits} of a grade row's course.
+     */
+    public double[] scheme(Object[] row) {
+        double[] w = weights((Double) row[5], (Double) row[6], (Double) row[7]);
+        return new double[] { w[0], w[1], w[2], credits((Integer) row[8]) };
+    }
+
+    /**
+     * Weighted average of every row, in one pass over the primitive columns.
+     */
+    public double[] rowAverages(GradeMatrix m) {
+        double[] out = new double[m.size];
+        double[] e = m.examen, d = m.ds, o = m.oral;
+        double[] we = m.weightExamen, wd = m.weightDs, wo = m.weightOral;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = e[i] * we[i] + d[i] * wd[i] + o[i] * wo[i];
+        }
+        return out;
+    }
+
+    /**
+     * Plain mean of the row averages (e.g. all enrollments of one course).
+     */
+    public double meanAverage(GradeMatrix m) {
+        if (m.size == 0) return 0.0;
+        double[] avg = rowAverages(m);
+        double sum = 0;
+        for (double a : avg) sum += a;
+        return sum / m.size;
+    }
+
+    public int countPassing(GradeMatrix m) {
+        double[] avg = rowAverages(m);
+        int ok = 0;
+        for (double a : avg) {
+            if (a >= PASS_MARK) ok++;
+        }
+        return ok;
+    }
+
+    /**
+     * Credit-weighted average over all rows (e.g. all courses of one student).
+     */
+    public double creditAverage(GradeMatrix m) {
+        return creditAverage(m, rowAverages(m), 0, m.size);
+    }
+
+    /**
+     * Credit-weighted average per student; rows must be ordered by student id.
+     * Students are independent, so large matrices are split by student across
+     * the fork-join pool.
+     */
+    public StudentAverages studentAverages(GradeMatrix m) {
+        // Row index where each student's block starts, plus a final sentinel
+        int[] starts = new int[m.size + 1];
+        int count = 0;
+        for (int i = 0; i < m.size; i++) {
+            if (i == 0 || m.etudiantIds[i] != m.etudiantIds[i - 1]) starts[count++] = i;
+        }
+        starts[count] = m.size;
+
+        long[] ids = new long[count];
+        double[] averages = new double[count];
+        AverageTask task = new AverageTask(m, starts, ids, averages, 0, count);
+        if (m.size < PARALLEL_THRESHOLD_ROWS) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return new StudentAverages(ids, averages);
+    }
+
+    private final class AverageTask extends RecursiveAction {
+        private final GradeMatrix m;
+        private final int[] starts;
+        private final long[] ids;
+        private final double[] averages;
+        private final int from;
+        private final int to;
+
+        private AverageTask(GradeMatrix m, int[] starts, long[] ids, double[] averages, int from, int to) {
+            this.m = m;
+            this.starts = starts;
+            this.ids = ids;
+            this.averages = averages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > STUDENTS_PER_TASK && inForkJoinPool()) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new AverageTask(m, starts, ids, averages, from, mid),
+                          new AverageTask(m, starts, ids, averages, mid, to));
+                return;
+            }
+            for (int s = from; s < to; s++) {
+                double weighted = 0;
+                double credits = 0;
+                for (int i = starts[s]; i < starts[s + 1]; i++) {
+                    double avg = m.examen[i] * m.weightExamen[i] + m.ds[i] * m.weightDs[i] + m.oral[i] * m.weightOral[i];
+                    weighted += avg * m.credits[i];
+                    credits += m.credits[i];
+                }
+                ids[s] = m.etudiantIds[starts[s]];
+                averages[s] = credits > 0 ? weighted / credits : 0.0;
+            }
+        }
+    }
+
+    double creditAverage(GradeMatrix m, double[] rowAverages, int from, int to) {
+        double weighted = 0;
+        double credits = 0;
+        for (int i = from; i < to; i++) {
+            weighted += rowAverages[i] * m.credits[i];
+            credits += m.credits[i];
+        }
+        return credits > 0 ? weighted / credits : 0.0;
+    }
+
+    public static final class StudentAverages {
+        private final long[] etudiantIds;
+        private final double[] averages;
+
+        StudentAverages(long[] etudiantIds, double[] averages) {
+            this.etudiantIds = etudiantIds;
+            this.averages = averages;
+        }
+
+        public int size() { return etudiantIds.length; }
+        public long etudiantId(int i) { return etudiantIds[i]; }
+        public double average(int i) { return averages[i]; }
+    }
+}
@@ -0,0 +1,237 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.dto.PartitionRequest;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.GroupeSyncJob;
+import spring.jpa.model.SessionPedagogique;
+import spring.jpa.model.Specialite;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.SpecialiteRepository;
+
+/**
+ * Splits the students of a specialite into new groupes of a session.
+ *
+ * Candidates are the students of the specialite who are in no groupe of the
+ * session yet, read with their grade summary in one query. Groupe sizes
+ * differ by one at most. Without balancing, students are dealt round-robin
+ * in name order; with it, by descending average, each round of one student
+ * per groupe giving the strongest to the groupe with the lowest total so
+ * far, and students without grades fill the smallest groupes last.
+ *
+ * Creation is one transaction: the groupes, their members (join-table
+ * batches), then one inscription sync job per groupe. It locks the
+ * specialite row before reading the candidates, so two partitions of the
+ * same students cannot both place them; dry runs do not lock.
+ */
+@Service
+public class GroupePartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupePartitionService.class);
+
+    // Ids per join-table statement
+    private static final int MEMBERSHIP_CHUNK = 1000;
+    private static final int NOM_MAX = 50;
+
+    public record Candidat(Long id, String nom, String prenom, Double moyenne) {
+    }
+
+    /** One planned groupe; id and job are set once created. */
+    public static final class Lot {
+        private final String nom;
+        private final List<Candidat> membres = new ArrayList<>();
+        private double somme;
+        private int notes;
+        private Long id;
+        private GroupeSyncJob job;
+
+        Lot(String nom) {
+            this.nom = nom;
+        }
+
+        void add(Candidat c) {
+            membres.add(c);
+            if (c.moyenne() != null) {
+                somme += c.moyenne();
+                notes++;
+            }
+        }
+
+        public String getNom() { return nom; }
+        public List<Candidat> getMembres() { return membres; }
+        public Long getId() { return id; }
+        public GroupeSyncJob getJob() { return job; }
+
+        // Average of the members who have one, null when none has
+        public Double getMoyenne() {
+            return notes == 0 ? null : somme / notes;
+        }
+    }
+
+    private final EtudiantRepository etudiantRepository;
+    private final GroupeRepository groupeRepository;
+    private final CoursRepository coursRepository;
+    private final SpecialiteRepository specialiteRepository;
+    private final GroupeSyncService groupeSyncService;
+    private final GroupePlacesService groupePlacesService;
+    private final MembershipIndex membershipIndex;
+    private final DataVersionListener dataVersionListener;
+
+    public GroupePartitionService(EtudiantRepository etudiantRepository,
+                                  GroupeRepository groupeRepository,
+                                  CoursRepository coursRepository,
+                                  SpecialiteRepository specialiteRepository,
+                                  GroupeSyncService groupeSyncService,
+                                  GroupePlacesService groupePlacesService,
+                                  MembershipIndex membershipIndex,
+                                  DataVersionListener dataVersionListener) {
+        this.etudiantRepository = etudiantRepository;
+        this.groupeRepository = groupeRepository;
+        this.coursRepository = coursRepository;
+        this.specialiteRepository = specialiteRepository;
+        this.groupeSyncService = groupeSyncService;
+        this.groupePlacesService = groupePlacesService;
+        this.membershipIndex = membershipIndex;
+        this.dataVersionListener = dataVersionListener;
+    }
+
+    /**
+     * Plans the groupes and, unless the request is a dry run, creates them.
+     * IllegalArgumentException when the request cannot be satisfied.
+     */
+    @Transactional
+    public List<Lot> partitionner(SessionPedagogique session, Specialite specialite, PartitionRequest request) {
+        // Taken before the first read, which then sees the groupes of a partition that held it
+        if (!request.isDryRun()) {
+            specialiteRepository.lockById(specialite.getId());
+        }
+        List<Candidat> candidats = new ArrayList<>();
+        for (Object[] r : etudiantRepository.findPartitionCandidates(specialite.getId(), session.getId())) {
+            Double moyenne = null;
+            if (r[3] != null && r[4] != null && ((Number) r[4]).doubleValue() > 0) {
+                moyenne = ((Number) r[3]).doubleValue() / ((Number) r[4]).doubleValue();
+            }
+            candidats.add(new Candidat((Long) r[0], (String) r[1], (String) r[2], moyenne));
+        }
+        int nombre = nombreDeGroupes(candidats.size(), request.getNombre(), request.getTaille());
+        List<Lot> lots = new ArrayList<>();
+        String prefixe = prefixe(session, specialite, request.getPrefixe(), nombre);
+        for (int i = 1; i <= nombre; i++) {
+            lots.add(new Lot(prefixe + " G" + i));
+        }
+        if (request.isEquilibrer()) {
+            equilibrer(candidats, lots);
+        } else {
+            for (int i = 0; i < candidats.size(); i++) {
+                lots.get(i % nombre).add(candidats.get(i));
+            }
+        }
+        if (!request.isDryRun()) {
+            creer(session, specialite, request, lots);
+        }
+        return lots;
+    }
+
+    static int nombreDeGroupes(int candidats, Integer nombre, Integer taille) {
+        if (nombre == null && taille == null) {
+            throw new IllegalArgumentException("Indiquez le nombre de groupes ou leur taille.");
+        }
+        if ((nombre != null && nombre < 1) || (taille != null && taille < 1)) {
+            throw new IllegalArgumentException("Le nombre et la taille des groupes doivent etre positifs.");
+        }
+        if (candidats == 0) {
+            throw new IllegalArgumentException("Aucun etudiant a repartir pour cette specialite et cette session.");
+        }
+        int n = nombre != null ? nombre : (candidats + taille - 1) / taille;
+        if (n > candidats) {
+            throw new IllegalArgumentException("Plus de groupes (" + n + ") que d'etudiants a repartir (" + candidats + ").");
+        }
+        if (taille != null && (long) n * taille < candidats) {
+            throw new IllegalArgumentException(candidats + " etudiants a repartir ne tiennent pas dans "
+                + n + " groupes de " + taille + ".");
+        }
+        return n;
+    }
+
+    // Rounds of one student per groupe, strongest first to the weakest groupe
+    static void equilibrer(List<Candidat> candidats, List<Lot> lots) {
+        List<Candidat> notes = new ArrayList<>();
+        List<Candidat> sansNote = new ArrayList<>();
+        for (Candidat c : candidats) {
+            (c.moyenne() != null ? notes : sansNote).add(c);
+        }
+        notes.sort(Comparator.comparing(Candidat::moyenne).reversed());
+        int k = lots.size();
+        for (int from = 0; from < notes.size(); from += k) {
+            List<Lot> ordre = new ArrayList<>(lots);
+            ordre.sort(Comparator.comparingDouble((Lot l) -> l.somme));
+            List<Candidat> tour = notes.subList(from, Math.min(notes.size(), from + k));
+            for (int i = 0; i < tour.size(); i++) {
+                ordre.get(i).add(tour.get(i));
+            }
+        }
+        // Stable by position, so sizes stay within one of each other
+        PriorityQueue<Integer> plusPetits = new PriorityQueue<>(
+            Comparator.comparingInt((Integer i) -> lots.get(i).membres.size()).thenComparingInt(i -> i));
+        for (int i = 0; i < k; i++) plusPetits.add(i);
+        for (Candidat c : sansNote) {
+            int i = plusPetits.poll();
+            lots.get(i).add(c);
+            plusPetits.add(i);
+        }
+    }
+
+    private void creer(SessionPedagogique session, Specialite specialite, PartitionRequest request, List<Lot> lots) {
+        Set<Cours> cours = new HashSet<>();
+        if (request.getCoursCodes() != null) {
+            for (String code : request.getCoursCodes()) {
+                if (code == null || code.isBlank()) continue;
+                Cours c = coursRepository.findById(code).orElse(null);
+                if (c == null) throw new IllegalArgumentException("Cours inconnu : " + code);
+                cours.add(c);
+            }
+        }
+        for (Lot lot : lots) {
+            Groupe g = new Groupe(lot.nom);
+            g.setSession(session);
+            g.setSpecialite(specialite);
+            g.setCapacite(request.getTaille());
+            g.getCours().addAll(cours);
+            lot.id = groupeRepository.save(g).getId();
+            List<Long> ids = lot.membres.stream().map(Candidat::id).toList();
+            for (int from = 0; from < ids.size(); from += MEMBERSHIP_CHUNK) {
+                groupeRepository.addEtudiants(lot.id, ids.subList(from, Math.min(ids.size(), from + MEMBERSHIP_CHUNK)));
+            }
+            membershipIndex.groupeChanged(lot.id);
+            groupePlacesService.membershipChanged(lot.id);
+            lot.job = groupeSyncService.enqueue(lot.id, Set.of(), Set.of());
+        }
+        // The join-table inserts bypass the entity callbacks
+        dataVersionListener.touched(Groupe.class);
+        logger.info("Partition of specialite {} in session {}: {} groupes created",
+            specialite.getId(), session.getId(), lots.size());
+    }
+
+    // Room is kept for the " G<n>" suffix within the name limit
+    private static String prefixe(SessionPedagogique session, Specialite specialite, String prefixe, int nombre) {
+        String p = prefixe != null && !prefixe.isBlank() ? prefixe.trim()
+            : session.getAnneeScolaire() == null ? specialite.getNom()
+            : specialite.getNom() + " " + session.getAnneeScolaire();
+        int max = NOM_MAX - (" G" + nombre).length();
+        return p.length() > max ? p.substring(0, max).trim() : p;
+    }
+}
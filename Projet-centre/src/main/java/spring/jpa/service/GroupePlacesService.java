@@ -0,0 +1,246 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import spring.jpa.model.Groupe;
+import spring.jpa.model.GroupeAttente;
+import spring.jpa.model.GroupeSyncJob;
+import spring.jpa.repository.GroupeAttenteRepository;
+import spring.jpa.repository.GroupeRepository;
+
+/**
+ * Self-service seats of a groupe: capacity, seat claims and the FIFO
+ * waitlist.
+ *
+ * Groupe.effectif counts the members. A claim is one conditional UPDATE
+ * (GroupeRepository.claimSeat) that only increments while a seat is free, so
+ * concurrent claims can never go past the capacity; nothing else locks the
+ * groupe row. A student who finds the groupe full is queued; whenever a seat
+ * frees up (a student leaves, the capacity grows, an admin removes members)
+ * the head of the queue is promoted in the same transaction: the seat is
+ * claimed first, then the head is taken with a conditional delete, so two
+ * promoters never hand out the same entry.
+ *
+ * Operations run READ COMMITTED: every read sees the rows committed so far
+ * rather than a snapshot from the start of the transaction (an admission
+ * batch runs several requests in one), and a failed claim holds no lock.
+ * A student queued while a seat was being freed can miss that promotion, as
+ * their entry was not committed yet; the periodic sweep promotes them.
+ *
+ * Admin membership writes bypass the capacity; they recount effectif and
+ * promote through {@link #membershipChanged(Long)}.
+ */
+@Service
+public class GroupePlacesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupePlacesService.class);
+
+    public enum Statut { INSCRIT, EN_ATTENTE, DEJA_INSCRIT, DEJA_EN_ATTENTE }
+
+    /**
+     * Outcome of a seat request: position in the queue (1 = next) when
+     * waiting, the inscription sync job when a seat was taken.
+     */
+    public record Demande(Statut statut, Long position, GroupeSyncJob job) {
+    }
+
+    // Students promoted from the queue, and the sync job of their inscriptions
+    public record Promotion(List<Long> etudiants, GroupeSyncJob job) {
+    }
+
+    private final GroupeRepository groupeRepository;
+    private final GroupeAttenteRepository attenteRepository;
+    private final GroupeSyncService groupeSyncService;
+    private final MembershipIndex membershipIndex;
+    private final DataVersionListener dataVersionListener;
+    private final TransactionTemplate tx;
+
+    public GroupePlacesService(GroupeRepository groupeRepository,
+                               GroupeAttenteRepository attenteRepository,
+                               GroupeSyncService groupeSyncService,
+                               MembershipIndex membershipIndex,
+                               DataVersionListener dataVersionListener,
+                               PlatformTransactionManager transactionManager) {
+        this.groupeRepository = groupeRepository;
+        this.attenteRepository = attenteRepository;
+        this.groupeSyncService = groupeSyncService;
+        this.membershipIndex = membershipIndex;
+        this.dataVersionListener = dataVersionListener;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Takes a seat for the student, or queues them when the groupe is full
+     * (or others are already waiting).
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public Demande demander(Long groupeId, Long etudiantId) {
+        if (!groupeRepository.findEtudiantIdsIn(groupeId, List.of(etudiantId)).isEmpty()) {
+            return new Demande(Statut.DEJA_INSCRIT, null, null);
+        }
+        Optional<GroupeAttente> waiting = attenteRepository.findByGroupeIdAndEtudiantId(groupeId, etudiantId);
+        if (waiting.isPresent()) {
+            return new Demande(Statut.DEJA_EN_ATTENTE, position(waiting.get()), null);
+        }
+        // Nobody jumps the queue
+        if (!attenteRepository.existsByGroupeId(groupeId)
+                && groupeRepository.claimSeat(groupeId) == 1) {
+            if (groupeRepository.addEtudiants(groupeId, List.of(etudiantId)) == 0) {
+                // Member since our snapshot, or unknown id
+                groupeRepository.releaseSeat(groupeId);
+                return new Demande(Statut.DEJA_INSCRIT, null, null);
+            }
+            return new Demande(Statut.INSCRIT, null, added(groupeId, Set.of(etudiantId)));
+        }
+        GroupeAttente entry = attenteRepository.save(new GroupeAttente(groupeId, etudiantId));
+        // Seats left free in front of a queue (capacity raised) go to its head first
+        Promotion promotion = promote(groupeId);
+        if (promotion.etudiants().contains(etudiantId)) {
+            return new Demande(Statut.INSCRIT, null, promotion.job());
+        }
+        return new Demande(Statut.EN_ATTENTE, position(entry), null);
+    }
+
+    /**
+     * Gives the student's seat back (or leaves the queue) and promotes the
+     * next in line. False when they neither had a seat nor were waiting.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public boolean quitter(Long groupeId, Long etudiantId) {
+        if (groupeRepository.removeEtudiants(groupeId, List.of(etudiantId)) == 0) {
+            return attenteRepository.removeEtudiant(groupeId, etudiantId) > 0;
+        }
+        groupeRepository.releaseSeat(groupeId);
+        dataVersionListener.touched(Groupe.class);
+        membershipIndex.etudiantsRemoved(groupeId, Set.of(etudiantId));
+        groupeSyncService.enqueueEtudiants(groupeId, Set.of(etudiantId), Set.of(etudiantId),
+            new HashSet<>(groupeRepository.findCoursCodes(groupeId)));
+        promote(groupeId);
+        return true;
+    }
+
+    /**
+     * Gives free seats to the head of the queue, one claim at a time: the
+     * seat is claimed first, then the head is taken off the queue.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public Promotion promote(Long groupeId) {
+        List<Long> promoted = new ArrayList<>();
+        while (groupeRepository.claimSeat(groupeId) == 1) {
+            GroupeAttente head = takeHead(groupeId);
+            if (head == null) {
+                groupeRepository.releaseSeat(groupeId);
+                break;
+            }
+            if (groupeRepository.addEtudiants(groupeId, List.of(head.getEtudiantId())) == 0) {
+                // Already a member (admin write) or deleted: the entry is dropped, the seat goes on
+                groupeRepository.releaseSeat(groupeId);
+                continue;
+            }
+            promoted.add(head.getEtudiantId());
+        }
+        if (promoted.isEmpty()) return new Promotion(promoted, null);
+        logger.info("Groupe {}: {} student(s) promoted from the waitlist", groupeId, promoted.size());
+        return new Promotion(promoted, added(groupeId, new HashSet<>(promoted)));
+    }
+
+    /**
+     * Call after a membership or capacity write that did not go through the
+     * seat counter (admin endpoints): recounts effectif and promotes.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public Promotion membershipChanged(Long groupeId) {
+        groupeRepository.recountEffectif(groupeId);
+        return promote(groupeId);
+    }
+
+    @Transactional
+    public void groupeDeleted(Long groupeId) {
+        attenteRepository.deleteAllOfGroupe(groupeId);
+    }
+
+    // The student's seats are freed by the caller's membership cleanup, see membershipChanged
+    @Transactional
+    public void etudiantDeleted(Long etudiantId) {
+        attenteRepository.deleteAllOfEtudiant(etudiantId);
+    }
+
+    // Position in the queue (1 = next), null when not waiting
+    @Transactional(readOnly = true)
+    public Long position(Long groupeId, Long etudiantId) {
+        return attenteRepository.findByGroupeIdAndEtudiantId(groupeId, etudiantId).map(this::position).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public long enAttente(Long groupeId) {
+        return attenteRepository.countByGroupeId(groupeId);
+    }
+
+    // Counters of groupes created or filled before the capacity existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void recountAll() {
+        try {
+            groupeRepository.recountEffectifs();
+        } catch (RuntimeException ex) {
+            logger.warn("Groupe effectif recount failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Promotes the students left waiting in front of a free seat (queued
+     * while it was being freed), one transaction per groupe.
+     */
+    @Scheduled(fixedDelayString = "${app.groupes.places.sweep-ms:30000}")
+    void promoteWaiting() {
+        try {
+            for (Long groupeId : attenteRepository.findGroupeIdsWithFreeSeats()) {
+                tx.executeWithoutResult(status -> promote(groupeId));
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Waitlist sweep failed: {}", ex.getMessage());
+        }
+    }
+
+    // Oldest entry, taken off the queue; null when the queue is empty. Another
+    // transaction deleting it first (a promoter, the student leaving) makes the
+    // delete wait for it and find nothing: the next head is read then. Inside
+    // a caller's REPEATABLE READ transaction the read would keep returning the
+    // gone head, so that gives up instead (the sweep promotes later).
+    private GroupeAttente takeHead(Long groupeId) {
+        Long gone = null;
+        while (true) {
+            GroupeAttente head = attenteRepository.findFirstByGroupeIdOrderByIdAsc(groupeId).orElse(null);
+            if (head == null || head.getId().equals(gone)) return null;
+            if (attenteRepository.remove(head.getId()) == 1) return head;
+            gone = head.getId();
+        }
+    }
+
+    private long position(GroupeAttente entry) {
+        return attenteRepository.countByGroupeIdAndIdLessThan(entry.getGroupeId(), entry.getId()) + 1;
+    }
+
+    private GroupeSyncJob added(Long groupeId, Set<Long> etudiantIds) {
+        dataVersionListener.touched(Groupe.class);
+        membershipIndex.etudiantsAdded(groupeId, etudiantIds);
+        return groupeSyncService.enqueueEtudiants(groupeId, etudiantIds, Set.of(),
+            new HashSet<>(groupeRepository.findCoursCodes(groupeId)));
+    }
+}
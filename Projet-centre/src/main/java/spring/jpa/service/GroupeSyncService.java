@@ -0,0 +1,342 @@
+package spring.jpa.service;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.GroupeSyncJob;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.GroupeSyncJobRepository;
+
+/**
+ * Durable queue of groupe reconciliations.
+ *
+ * A groupe write stores a {@link GroupeSyncJob} in its own transaction and
+ * returns; the job is handed to a small worker pool once that transaction
+ * has committed (and by a periodic poll, which also picks up the jobs left
+ * by a restart). Each job runs EnrollmentService.reconcileGroupe() from the
+ * membership saved in the job to the groupe's current one, then refreshes
+ * the groupe's reporting cube cells, in one transaction.
+ *
+ * Jobs sharing a student run one at a time in queue order: a job is only
+ * started when none of its students belongs to a running job or to an
+ * earlier job still waiting. A failed job is retried with exponential
+ * backoff, which is safe because reconciliation is idempotent, and marked
+ * ECHEC after max-attempts. Ordering holds within one application instance.
+ */
+@Service
+public class GroupeSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupeSyncService.class);
+
+    // Waiting jobs examined per dispatch round
+    private static final int DISPATCH_WINDOW = 200;
+
+    private final GroupeSyncJobRepository jobRepository;
+    private final GroupeRepository groupeRepository;
+    private final EtudiantRepository etudiantRepository;
+    private final CoursRepository coursRepository;
+    private final EnrollmentService enrollmentService;
+    private final ReportCubeService reportCubeService;
+    private final TransactionTemplate tx;
+    private final ExecutorService workers;
+    private final ExecutorService dispatcher;
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+    private final int threads;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long retentionMs;
+
+    // Students of the running jobs, and the progress of those jobs
+    private final Set<Long> busy = new HashSet<>();
+    private final Map<Long, int[]> progress = new ConcurrentHashMap<>();
+
+    public GroupeSyncService(
+            GroupeSyncJobRepository jobRepository,
+            GroupeRepository groupeRepository,
+            EtudiantRepository etudiantRepository,
+            CoursRepository coursRepository,
+            EnrollmentService enrollmentService,
+            ReportCubeService reportCubeService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.groupes.sync.threads:2}") int threads,
+            @Value("${app.groupes.sync.max-attempts:5}") int maxAttempts,
+            @Value("${app.groupes.sync.backoff-ms:5000}") long backoffMs,
+            @Value("${app.groupes.sync.retention-days:7}") long retentionDays) {
+        this.jobRepository = jobRepository;
+        this.groupeRepository = groupeRepository;
+        this.etudiantRepository = etudiantRepository;
+        this.coursRepository = coursRepository;
+        this.enrollmentService = enrollmentService;
+        this.reportCubeService = reportCubeService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.threads = Math.max(1, threads);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.retentionMs = TimeUnit.DAYS.toMillis(retentionDays);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "groupe-sync-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "groupe-sync-dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues the reconciliation of a groupe whose membership was
+     * oldEtudiants x oldCours before the change; call inside the writer's
+     * transaction. The job starts after that transaction commits.
+     */
+    public GroupeSyncJob enqueue(Long groupeId, Collection<Etudiant> oldEtudiants, Collection<Cours> oldCours) {
+        Set<Long> etudiantIds = new HashSet<>();
+        for (Etudiant e : oldEtudiants) {
+            if (e != null && e.getId() != null) etudiantIds.add(e.getId());
+        }
+        Set<String> codes = new HashSet<>();
+        for (Cours c : oldCours) {
+            if (c != null && c.getCode() != null) codes.add(c.getCode());
+        }
+        return submit(new GroupeSyncJob(groupeId, etudiantIds, codes));
+    }
+
+    /**
+     * Queues the reconciliation of some students of a groupe only: cibles
+     * are the students added or removed, anciens those of them who were
+     * members before the change, cours the groupe's courses then.
+     */
+    public GroupeSyncJob enqueueEtudiants(Long groupeId, Set<Long> cibles, Set<Long> anciens, Set<String> cours) {
+        return submit(GroupeSyncJob.ofEtudiants(groupeId, cibles, anciens, cours));
+    }
+
+    // Same for some courses of a groupe, with the groupe's students then
+    public GroupeSyncJob enqueueCours(Long groupeId, Set<String> cibles, Set<String> anciens, Set<Long> etudiants) {
+        return submit(GroupeSyncJob.ofCours(groupeId, cibles, anciens, etudiants));
+    }
+
+    private GroupeSyncJob submit(GroupeSyncJob pending) {
+        GroupeSyncJob job = jobRepository.save(pending);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        }
+        return job;
+    }
+
+    public GroupeSyncJob get(Long id) {
+        return jobRepository.findById(id).orElse(null);
+    }
+
+    public List<GroupeSyncJob> recent(Long groupeId, int limit) {
+        return jobRepository.findByGroupeIdOrderByIdDesc(groupeId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * (courses done, courses to process) of a running job, or null.
+     */
+    public int[] progress(Long jobId) {
+        return progress.get(jobId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void resume() {
+        try {
+            Integer requeued = tx.execute(status -> jobRepository.requeueRunning());
+            if (requeued != null && requeued > 0) {
+                logger.info("{} interrupted groupe sync job(s) requeued", requeued);
+            }
+            wake();
+        } catch (RuntimeException ex) {
+            logger.warn("Groupe sync queue could not be resumed: {}", ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.groupes.sync.poll-ms:5000}")
+    void poll() {
+        wake();
+    }
+
+    // Dispatch on the dispatcher thread; wake-ups arriving meanwhile are merged
+    private void wake() {
+        if (!wakePending.compareAndSet(false, true)) return;
+        try {
+            dispatcher.execute(() -> {
+                wakePending.set(false);
+                try {
+                    dispatch();
+                } catch (RuntimeException ex) {
+                    logger.warn("Groupe sync dispatch failed: {}", ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            wakePending.set(false);
+        }
+    }
+
+    /**
+     * Starts the waiting jobs that may run now, in queue order.
+     */
+    synchronized void dispatch() {
+        int free = threads - progress.size();
+        if (free <= 0) return;
+        long now = System.currentTimeMillis();
+        // Students of earlier jobs still waiting: later jobs on them must wait too
+        Set<Long> blocked = new HashSet<>();
+        for (GroupeSyncJob job : jobRepository.findByStatutOrderByIdAsc(GroupeSyncJob.Statut.EN_ATTENTE,
+                PageRequest.of(0, DISPATCH_WINDOW))) {
+            Set<Long> students = students(job);
+            boolean due = job.getProchainEssai() == null || job.getProchainEssai().getTime() <= now;
+            boolean startable = free > 0 && due && disjoint(students, busy) && disjoint(students, blocked);
+            if (!startable || !claim(job.getId())) {
+                blocked.addAll(students);
+                continue;
+            }
+            busy.addAll(students);
+            progress.put(job.getId(), new int[2]);
+            free--;
+            Long jobId = job.getId();
+            workers.execute(() -> run(jobId, students));
+        }
+    }
+
+    private boolean claim(Long id) {
+        Integer claimed = tx.execute(status -> jobRepository.claim(id));
+        return claimed != null && claimed == 1;
+    }
+
+    // Every student whose inscriptions the job may touch: the targets of an
+    // ETUDIANTS job, old and current members otherwise
+    private Set<Long> students(GroupeSyncJob job) {
+        if (job.getPortee() == GroupeSyncJob.Portee.ETUDIANTS) {
+            return new HashSet<>(job.getEtudiantsCibles());
+        }
+        Set<Long> students = new HashSet<>(job.getAnciensEtudiants());
+        students.addAll(groupeRepository.findEtudiantIds(job.getGroupeId()));
+        return students;
+    }
+
+    private static boolean disjoint(Set<Long> a, Set<Long> b) {
+        for (Long id : a) {
+            if (b.contains(id)) return false;
+        }
+        return true;
+    }
+
+    private void run(Long jobId, Set<Long> students) {
+        long start = System.currentTimeMillis();
+        try {
+            EnrollmentService.Reconciliation result = tx.execute(status -> {
+                GroupeSyncJob job = jobRepository.findById(jobId).orElseThrow();
+                Groupe groupe = groupeRepository.findById(job.getGroupeId()).orElse(null);
+                Collection<Etudiant> newEtudiants = groupe == null ? List.of() : groupe.getEtudiants();
+                Collection<Cours> newCours = groupe == null ? List.of() : groupe.getCours();
+                // A scoped job only reconciles the pairs of its targets
+                if (job.getPortee() == GroupeSyncJob.Portee.ETUDIANTS) {
+                    Set<Long> cibles = job.getEtudiantsCibles();
+                    newEtudiants = newEtudiants.stream().filter(e -> cibles.contains(e.getId())).toList();
+                } else if (job.getPortee() == GroupeSyncJob.Portee.COURS) {
+                    Set<String> cibles = job.getCoursCibles();
+                    newCours = newCours.stream().filter(c -> cibles.contains(c.getCode())).toList();
+                }
+                List<Etudiant> oldEtudiants = etudiantRepository.findAllById(job.getAnciensEtudiants());
+                List<Cours> oldCours = coursRepository.findAllById(job.getAnciensCours());
+
+                EnrollmentService.Reconciliation r = enrollmentService.reconcileGroupe(job.getGroupeId(),
+                    oldEtudiants, oldCours, newEtudiants, newCours,
+                    (done, total) -> progress.put(jobId, new int[] { done, total }));
+                if (groupe != null) reportCubeService.rebuildGroupe(groupe.getId());
+                else reportCubeService.groupeDeleted(job.getGroupeId());
+
+                job.setStatut(GroupeSyncJob.Statut.TERMINE);
+                job.setInscrites(r.inscrites());
+                job.setRetirees(r.retirees());
+                job.setErreur(null);
+                job.setTermineLe(new Date());
+                return r;
+            });
+            logger.info("Groupe sync job {} done in {} ms: {} inscrites, {} retirees", jobId,
+                System.currentTimeMillis() - start, result.inscrites(), result.retirees());
+        } catch (RuntimeException ex) {
+            failed(jobId, ex);
+        } finally {
+            synchronized (this) {
+                busy.removeAll(students);
+                progress.remove(jobId);
+            }
+            wake();
+        }
+    }
+
+    private void failed(Long jobId, RuntimeException ex) {
+        String message = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        try {
+            tx.executeWithoutResult(status -> jobRepository.findById(jobId).ifPresent(job -> {
+                job.setTentatives(job.getTentatives() + 1);
+                job.setErreur(message.length() > 1000 ? message.substring(0, 1000) : message);
+                if (job.getTentatives() >= maxAttempts) {
+                    job.setStatut(GroupeSyncJob.Statut.ECHEC);
+                    job.setTermineLe(new Date());
+                } else {
+                    job.setStatut(GroupeSyncJob.Statut.EN_ATTENTE);
+                    long delay = backoffMs << Math.min(10, job.getTentatives() - 1);
+                    job.setProchainEssai(new Date(System.currentTimeMillis() + delay));
+                }
+            }));
+            logger.warn("Groupe sync job {} failed: {}", jobId, message);
+        } catch (RuntimeException e) {
+            // Stays EN_COURS; requeued at the next start
+            logger.error("Groupe sync job {} failed and could not be updated: {}", jobId, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.groupes.sync.cleanup-ms:3600000}")
+    void forgetOldJobs() {
+        Date cutoff = new Date(System.currentTimeMillis() - retentionMs);
+        tx.executeWithoutResult(status -> jobRepository.deleteAll(jobRepository.findByStatutInAndTermineLeBefore(
+            List.of(GroupeSyncJob.Statut.TERMINE, GroupeSyncJob.Statut.ECHEC), cutoff)));
+    }
+}
@@ -0,0 +1,88 @@
+package spring.jpa.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import spring.jpa.model.Note;
+
+/**
+ * Brings notes written before sparse storage (Note.graded) up to date.
+ *
+ * The schema update adds the graded column as 0 to every existing row, so
+ * real grades would read as ungraded. Every note written since is graded, so
+ * a row still at 0 is a legacy one: the 0/0/0 placeholders that enrollment
+ * used to insert are deleted (an absent row reads the same), duplicates of
+ * an (etudiant, cours) pair are reduced to the latest row, and the rest are
+ * marked graded. Then the unique constraint on the pair can be created.
+ *
+ * Runs before the summaries are built at startup, and rebuilds them when it
+ * changed anything. A no-op once done.
+ */
+@Component
+public class LegacyNotesMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyNotesMigration.class);
+
+    private static final String DELETE_PLACEHOLDERS = "delete from note where graded = false "
+        + "and note_examen = 0 and note_ds = 0 and note_oral = 0";
+
+    // The derived table lets MySQL read the table it deletes from
+    private static final String DELETE_DUPLICATES = "delete from note where id not in "
+        + "(select id from (select max(id) as id from note group by etudiant_id, cours_code) latest)";
+
+    private static final String MARK_GRADED = "update note set graded = true where graded = false";
+
+    // Same name as on the entity: the schema update would only add it once duplicates are gone
+    private static final String UNIQUE_PAIR = "alter table note add constraint uk_note_etudiant_cours "
+        + "unique (etudiant_id, cours_code)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GradeStatsService gradeStatsService;
+    private final ReportCubeService reportCubeService;
+    private final DataVersionListener dataVersionListener;
+
+    public LegacyNotesMigration(JdbcTemplate jdbcTemplate,
+                                GradeStatsService gradeStatsService,
+                                ReportCubeService reportCubeService,
+                                DataVersionListener dataVersionListener) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.gradeStatsService = gradeStatsService;
+        this.reportCubeService = reportCubeService;
+        this.dataVersionListener = dataVersionListener;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrate() {
+        int placeholders;
+        int duplicates;
+        int graded;
+        try {
+            placeholders = jdbcTemplate.update(DELETE_PLACEHOLDERS);
+            duplicates = jdbcTemplate.update(DELETE_DUPLICATES);
+            graded = jdbcTemplate.update(MARK_GRADED);
+        } catch (RuntimeException ex) {
+            logger.warn("Legacy notes migration failed: {}", ex.getMessage());
+            return;
+        }
+        if (duplicates > 0) {
+            try {
+                jdbcTemplate.execute(UNIQUE_PAIR);
+            } catch (RuntimeException ex) {
+                logger.debug("Note unique constraint not added: {}", ex.getMessage());
+            }
+        }
+        if (placeholders + duplicates + graded == 0) return;
+        logger.info("Legacy notes migrated: {} placeholders and {} duplicates deleted, {} notes marked graded",
+            placeholders, duplicates, graded);
+        dataVersionListener.touched(Note.class);
+        gradeStatsService.rebuildAll();
+        reportCubeService.rebuildAll();
+    }
+}
@@ -0,0 +1,284 @@
+package spring.jpa.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+
+/**
+ * In-memory index of student ids as compressed bitmaps: the members of each
+ * groupe and the enrolled students of each course.
+ *
+ * Bitmaps are loaded from the database on first use and all of them are
+ * built at startup. The write paths report their changes (applied once their
+ * transaction has committed): GradeStatsService for enrollments, the groupe
+ * controller for membership. A published bitmap is never modified, updates
+ * replace it with a modified copy, so readers need no lock; the returned
+ * bitmaps must not be modified either.
+ *
+ * A load that raced with a change is used but not kept, so a bitmap read
+ * before a commit never hides that commit's change. Student ids must fit in
+ * an int: a larger id turns caching off, bitmaps are then read from the
+ * database on every call and leave such ids out.
+ */
+@Service
+public class MembershipIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipIndex.class);
+
+    private final GroupeRepository groupeRepository;
+    private final InscriptionRepository inscriptionRepository;
+    private final EnrollmentMode enrollmentMode;
+    private final TransactionTemplate readTx;
+
+    private final Map<Long, RoaringBitmap> byGroupe = new ConcurrentHashMap<>();
+    private final Map<String, RoaringBitmap> byCours = new ConcurrentHashMap<>();
+    // Bumped by every change; a load only caches its result if it did not move
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    public MembershipIndex(GroupeRepository groupeRepository,
+                           InscriptionRepository inscriptionRepository,
+                           EnrollmentMode enrollmentMode,
+                           PlatformTransactionManager transactionManager) {
+        this.groupeRepository = groupeRepository;
+        this.inscriptionRepository = inscriptionRepository;
+        this.enrollmentMode = enrollmentMode;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+    }
+
+    // ---- Queries ----
+
+    public RoaringBitmap etudiantsOfGroupe(long groupeId) {
+        return get(byGroupe, groupeId, id -> bitmap(groupeRepository.findEtudiantIds(id)));
+    }
+
+    public RoaringBitmap etudiantsOfCours(String code) {
+        return get(byCours, code, c -> bitmap(inscriptionRepository.findEtudiantIdsByCours(c)));
+    }
+
+    public boolean isMember(long groupeId, long etudiantId) {
+        if (!fits(etudiantId)) return groupeRepository.findEtudiantIds(groupeId).contains(etudiantId);
+        return etudiantsOfGroupe(groupeId).contains((int) etudiantId);
+    }
+
+    public boolean isEnrolled(String code, long etudiantId) {
+        if (!fits(etudiantId)) return inscriptionRepository.findEtudiantIdsByCours(code).contains(etudiantId);
+        return etudiantsOfCours(code).contains((int) etudiantId);
+    }
+
+    public static boolean intersects(RoaringBitmap a, RoaringBitmap b) {
+        return RoaringBitmap.intersects(a, b);
+    }
+
+    public Map<String, Object> stats() {
+        long bytes = 0;
+        long ids = 0;
+        for (RoaringBitmap b : byGroupe.values()) { bytes += b.getSizeInBytes(); ids += b.getLongCardinality(); }
+        for (RoaringBitmap b : byCours.values()) { bytes += b.getSizeInBytes(); ids += b.getLongCardinality(); }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("actif", enabled);
+        stats.put("groupes", byGroupe.size());
+        stats.put("cours", byCours.size());
+        stats.put("identifiants", ids);
+        stats.put("octets", bytes);
+        return stats;
+    }
+
+    // ---- Changes, applied after commit ----
+
+    public void enrolled(String code, Collection<Long> etudiantIds) {
+        afterCommit(() -> update(byCours, code, b -> etudiantIds.forEach(id -> add(b, id))));
+    }
+
+    public void unenrolled(String code, Collection<Long> etudiantIds) {
+        afterCommit(() -> update(byCours, code, b -> etudiantIds.forEach(id -> remove(b, id))));
+    }
+
+    public void etudiantsAdded(long groupeId, Collection<Long> etudiantIds) {
+        afterCommit(() -> {
+            update(byGroupe, groupeId, b -> etudiantIds.forEach(id -> add(b, id)));
+            membershipChanged();
+        });
+    }
+
+    public void etudiantsRemoved(long groupeId, Collection<Long> etudiantIds) {
+        afterCommit(() -> {
+            update(byGroupe, groupeId, b -> etudiantIds.forEach(id -> remove(b, id)));
+            membershipChanged();
+        });
+    }
+
+    // Any other groupe change (created, replaced, deleted, courses changed): reloaded on next use
+    public void groupeChanged(long groupeId) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            byGroupe.remove(groupeId);
+            membershipChanged();
+        });
+    }
+
+    // Courses added to or removed from a groupe: only derived enrollments move
+    public void groupeCoursChanged() {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            membershipChanged();
+        });
+    }
+
+    public void coursDeleted(String code) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            byCours.remove(code);
+        });
+    }
+
+    public void etudiantDeleted(long etudiantId) {
+        if (!fits(etudiantId)) return;
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            int id = (int) etudiantId;
+            byGroupe.replaceAll((k, b) -> b.contains(id) ? without(b, id) : b);
+            byCours.replaceAll((k, b) -> b.contains(id) ? without(b, id) : b);
+        });
+    }
+
+    // Derived enrollments follow membership: course bitmaps are reloaded on next use
+    private void membershipChanged() {
+        if (enrollmentMode.isDerived()) byCours.clear();
+    }
+
+    // ---- Loading ----
+
+    @EventListener(ApplicationReadyEvent.class)
+    void warmUp() {
+        build();
+    }
+
+    /**
+     * Drops every bitmap and builds them again. Returns the number of bitmaps.
+     */
+    public int rebuildAll() {
+        generation.incrementAndGet();
+        byGroupe.clear();
+        byCours.clear();
+        return build();
+    }
+
+    // Builds every bitmap with two streamed queries; bitmaps loaded or changed
+    // meanwhile are left alone
+    private int build() {
+        long start = System.currentTimeMillis();
+        long before = generation.get();
+        Map<Long, RoaringBitmap> groupes = new HashMap<>();
+        Map<String, RoaringBitmap> cours = new HashMap<>();
+        try {
+            readTx.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = groupeRepository.streamMemberships()) {
+                    rows.forEach(r -> add(groupes.computeIfAbsent(((Number) r[0]).longValue(), k -> new RoaringBitmap()),
+                        ((Number) r[1]).longValue()));
+                }
+                try (Stream<Object[]> rows = inscriptionRepository.streamEnrolledPairs()) {
+                    rows.forEach(r -> add(cours.computeIfAbsent((String) r[0], k -> new RoaringBitmap()),
+                        ((Number) r[1]).longValue()));
+                }
+            });
+        } catch (RuntimeException ex) {
+            logger.warn("Membership index build failed, bitmaps will load on demand: {}", ex.getMessage());
+            return 0;
+        }
+        if (!enabled || generation.get() != before) return 0;
+        groupes.forEach((k, b) -> byGroupe.putIfAbsent(k, compact(b)));
+        cours.forEach((k, b) -> byCours.putIfAbsent(k, compact(b)));
+        logger.info("Membership index built: {} groupes, {} courses in {} ms",
+            groupes.size(), cours.size(), System.currentTimeMillis() - start);
+        return groupes.size() + cours.size();
+    }
+
+    private <K> RoaringBitmap get(Map<K, RoaringBitmap> map, K key, Function<K, RoaringBitmap> loader) {
+        RoaringBitmap cached = enabled ? map.get(key) : null;
+        if (cached != null) return cached;
+        long before = generation.get();
+        RoaringBitmap loaded = compact(loader.apply(key));
+        if (enabled && generation.get() == before) map.putIfAbsent(key, loaded);
+        return loaded;
+    }
+
+    // Copy-on-write: readers keep the bitmap they got
+    private <K> void update(Map<K, RoaringBitmap> map, K key, java.util.function.Consumer<RoaringBitmap> change) {
+        generation.incrementAndGet();
+        map.computeIfPresent(key, (k, b) -> {
+            RoaringBitmap copy = b.clone();
+            change.accept(copy);
+            return compact(copy);
+        });
+    }
+
+    private RoaringBitmap bitmap(Collection<Long> ids) {
+        RoaringBitmap b = new RoaringBitmap();
+        for (Long id : ids) add(b, id);
+        return b;
+    }
+
+    private void add(RoaringBitmap b, long id) {
+        if (fits(id)) b.add((int) id);
+    }
+
+    // An id out of range would wrap onto another student's bit
+    private void remove(RoaringBitmap b, long id) {
+        if (fits(id)) b.remove((int) id);
+    }
+
+    private boolean fits(long id) {
+        if (id >= 0 && id <= Integer.MAX_VALUE) return true;
+        if (enabled) {
+            enabled = false;
+            byGroupe.clear();
+            byCours.clear();
+            logger.warn("Student id {} does not fit the membership index; index disabled", id);
+        }
+        return false;
+    }
+
+    private static RoaringBitmap without(RoaringBitmap b, int id) {
+        RoaringBitmap copy = b.clone();
+        copy.remove(id);
+        return compact(copy);
+    }
+
+    private static RoaringBitmap compact(RoaringBitmap b) {
+        b.runOptimize();
+        return b;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,483 @@
+package spring.jpa.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import spring.jpa.dto.NoteImportResult;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Note;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Imports the grades of one course from a CSV or XLSX upload.
+ * Rows are read as a stream (SAX events for XLSX) and written in batched
+ * upserts, so memory stays bounded by the batch size whatever the file size.
+ *
+ * Expected header (case/accents ignored): matricule and/or email, then any of
+ * examen, ds, oral. Blank grade cells keep the current value.
+ */
+@Service
+public class NoteImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteImportService.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final double MAX_GRADE = 20.0;
+    static final String BATCH_FAILED = "Erreur d'enregistrement, ligne non importee.";
+
+    private final EtudiantRepository etudiantRepository;
+    private final InscriptionRepository inscriptionRepository;
+    private final NoteRepository noteRepository;
+    private final NoteWriteBuffer noteWriteBuffer;
+    private final GradeStatsService gradeStatsService;
+    private final TransactionTemplate transactionTemplate;
+
+    public NoteImportService(
+            EtudiantRepository etudiantRepository,
+            InscriptionRepository inscriptionRepository,
+            NoteRepository noteRepository,
+            NoteWriteBuffer noteWriteBuffer,
+            GradeStatsService gradeStatsService,
+            PlatformTransactionManager transactionManager) {
+        this.etudiantRepository = etudiantRepository;
+        this.inscriptionRepository = inscriptionRepository;
+        this.noteRepository = noteRepository;
+        this.noteWriteBuffer = noteWriteBuffer;
+        this.gradeStatsService = gradeStatsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public NoteImportResult importGrades(Cours cours, MultipartFile file) throws IOException {
+        NoteImportResult result = new NoteImportResult();
+        RowSink sink = new RowSink(cours, result);
+        String name = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase(Locale.ROOT);
+
+        if (name.endsWith(".xls")) {
+            throw new IllegalArgumentException("Format .xls non supporte, utilisez .xlsx ou .csv.");
+        }
+        if (name.endsWith(".xlsx")) {
+            readXlsx(file, sink);
+        } else {
+            try (InputStream in = file.getInputStream()) {
+                readCsv(in, sink);
+            } catch (IOException e) {
+                logger.warn("Unreadable CSV grade import {}", file.getOriginalFilename(), e);
+                throw new IOException("Fichier CSV illisible.", e);
+            }
+        }
+        sink.finish();
+        return result;
+    }
+
+    // ===== readers =====
+
+    private void readCsv(InputStream in, RowSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int rowNumber = 0;
+        char delimiter = 0;
+        while ((line = reader.readLine()) != null) {
+            rowNumber++;
+            if (rowNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (delimiter == 0) {
+                delimiter = detectDelimiter(line);
+            }
+            // A quoted field may span several physical lines
+            StringBuilder record = new StringBuilder(line);
+            while (hasOpenQuote(record)) {
+                String next = reader.readLine();
+                if (next == null) break;
+                record.append('\n').append(next);
+            }
+            sink.accept(rowNumber, splitCsv(record.toString(), delimiter));
+        }
+    }
+
+    private void readXlsx(MultipartFile file, RowSink sink) throws IOException {
+        // OPCPackage needs random access; a temp file keeps the zip out of the heap
+        Path temp = Files.createTempFile("notes-import-", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.warn("Could not store XLSX grade import {}", file.getOriginalFilename(), e);
+                throw new IOException("Fichier XLSX illisible.", e);
+            }
+            try (OPCPackage pkg = OPCPackage.open(temp.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                if (!sheets.hasNext()) return;
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                        reader.getStylesTable(), strings, new SheetRows(sink), new DataFormatter(Locale.ROOT), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            } catch (UnsupportedFileFormatException e) {
+                logger.warn("Unreadable XLSX grade import {}", file.getOriginalFilename(), e);
+                throw new IOException("Fichier XLSX illisible.", e);
+            } catch (IllegalArgumentException e) {
+                // Header errors raised by RowSink
+                throw e;
+            } catch (Exception e) {
+                logger.warn("Unreadable XLSX grade import {}", file.getOriginalFilename(), e);
+                throw new IOException("Fichier XLSX illisible.", e);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static final class SheetRows implements SheetContentsHandler {
+        private final RowSink sink;
+        private final List<String> cells = new ArrayList<>();
+
+        private SheetRows(RowSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            sink.accept(rowNum + 1, new ArrayList<>(cells));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+            while (cells.size() < col) cells.add("");
+            cells.add(formattedValue);
+        }
+    }
+
+    // ===== row handling =====
+
+    /**
+     * Receives raw rows, interprets the header and flushes validated rows by batch.
+     */
+    private final class RowSink {
+        private final Cours cours;
+        private final NoteImportResult result;
+        private final List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+        private int colMatricule = -1;
+        private int colEmail = -1;
+        private int colExamen = -1;
+        private int colDs = -1;
+        private int colOral = -1;
+        private boolean headerRead;
+
+        private RowSink(Cours cours, NoteImportResult result) {
+            this.cours = cours;
+            this.result = result;
+        }
+
+        void accept(int rowNumber, List<String> cells) {
+            if (isBlank(cells)) return;
+            if (!headerRead) {
+                readHeader(cells);
+                headerRead = true;
+                return;
+            }
+            result.incrementRowsRead();
+
+            ImportRow row = new ImportRow(rowNumber);
+            row.matricule = cell(cells, colMatricule);
+            row.email = cell(cells, colEmail);
+            if (row.matricule.isEmpty() && row.email.isEmpty()) {
+                result.addError(rowNumber, "Matricule ou email manquant.");
+                return;
+            }
+            try {
+                row.examen = grade(cell(cells, colExamen));
+                row.ds = grade(cell(cells, colDs));
+                row.oral = grade(cell(cells, colOral));
+            } catch (IllegalArgumentException e) {
+                result.addError(rowNumber, e.getMessage());
+                return;
+            }
+            batch.add(row);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void finish() {
+            if (!headerRead) {
+                throw new IllegalArgumentException("Fichier vide.");
+            }
+            flush();
+        }
+
+        private void readHeader(List<String> cells) {
+            for (int i = 0; i < cells.size(); i++) {
+                switch (normalizeHeader(cells.get(i))) {
+                    case "matricule" -> colMatricule = i;
+                    case "email", "mail", "courriel" -> colEmail = i;
+                    case "examen", "noteexamen", "exam" -> colExamen = i;
+                    case "ds", "noteds" -> colDs = i;
+                    case "oral", "noteoral" -> colOral = i;
+                    default -> { }
+                }
+            }
+            if (colMatricule < 0 && colEmail < 0) {
+                throw new IllegalArgumentException("En-tete invalide: colonne matricule ou email requise.");
+            }
+            if (colExamen < 0 && colDs < 0 && colOral < 0) {
+                throw new IllegalArgumentException("En-tete invalide: au moins une colonne examen, ds ou oral requise.");
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) return;
+            List<ImportRow> rows = new ArrayList<>(batch);
+            batch.clear();
+            try {
+                BatchOutcome outcome = transactionTemplate.execute(status -> upsert(cours, rows));
+                for (ImportRow row : outcome.rejected.keySet()) {
+                    result.addError(row.rowNumber, outcome.rejected.get(row));
+                }
+                for (int i = 0; i < outcome.created; i++) result.incrementCreated();
+                for (int i = 0; i < outcome.updated; i++) result.incrementUpdated();
+            } catch (RuntimeException e) {
+                // The cause may carry SQL or schema details: keep it in the log only
+                logger.warn("Grade import batch failed for course {}", cours.getCode(), e);
+                for (ImportRow row : rows) {
+                    result.addError(row.rowNumber, BATCH_FAILED);
+                }
+            }
+        }
+    }
+
+    private BatchOutcome upsert(Cours cours, List<ImportRow> rows) {
+        BatchOutcome outcome = new BatchOutcome();
+
+        Set<String> matricules = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (ImportRow row : rows) {
+            if (!row.matricule.isEmpty()) matricules.add(row.matricule);
+            else emails.add(row.email);
+        }
+        Map<String, Etudiant> byMatricule = new HashMap<>();
+        if (!matricules.isEmpty()) {
+            for (Etudiant e : etudiantRepository.findByMatriculeIn(matricules)) {
+                byMatricule.put(e.getMatricule(), e);
+            }
+        }
+        Map<String, Etudiant> byEmail = new HashMap<>();
+        if (!emails.isEmpty()) {
+            for (Etudiant e : etudiantRepository.findByEmailIn(emails)) {
+                if (e.getEmail() != null) byEmail.put(e.getEmail().toLowerCase(Locale.ROOT), e);
+            }
+        }
+
+        Map<ImportRow, Etudiant> resolved = new LinkedHashMap<>();
+        for (ImportRow row : rows) {
+            Etudiant e = !row.matricule.isEmpty()
+                ? byMatricule.get(row.matricule)
+                : byEmail.get(row.email.toLowerCase(Locale.ROOT));
+            if (e == null) {
+                outcome.rejected.put(row, "Etudiant introuvable.");
+            } else {
+                resolved.put(row, e);
+            }
+        }
+        if (resolved.isEmpty()) return outcome;
+
+        Set<Long> ids = new HashSet<>();
+        for (Etudiant e : resolved.values()) ids.add(e.getId());
+        Set<Long> enrolled = new HashSet<>(inscriptionRepository.findEnrolledEtudiantIds(cours, ids));
+        Map<Long, Note> notes = new HashMap<>();
+        for (Note n : noteRepository.lockByCoursAndEtudiantIds(cours, ids)) {
+            notes.putIfAbsent(n.getEtudiant().getId(), n);
+        }
+
+        Set<Long> created = new HashSet<>();
+        Set<Long> withdrawn = new HashSet<>();
+        GradeStatsService.Changes stats = gradeStatsService.changes();
+        for (Map.Entry<ImportRow, Etudiant> entry : resolved.entrySet()) {
+            ImportRow row = entry.getKey();
+            Etudiant e = entry.getValue();
+            if (!enrolled.contains(e.getId())) {
+                outcome.rejected.put(row, "Etudiant non inscrit a ce cours.");
+                continue;
+            }
+            Note note = notes.get(e.getId());
+            if (note == null) {
+                note = new Note(0, 0, 0, e, cours);
+                notes.put(e.getId(), note);
+                created.add(e.getId());
+                outcome.created++;
+            } else if (!created.contains(e.getId())) {
+                outcome.updated++;
+            }
+            // Withdraw a note's previous values once, even if the file repeats the student
+            if (note.getId() != null && withdrawn.add(e.getId())) {
+                stats.noteRemoved(note);
+            }
+            if (row.examen != null) note.setNoteExamen(row.examen);
+            if (row.ds != null) note.setNoteDs(row.ds);
+            if (row.oral != null) note.setNoteOral(row.oral);
+            note.setValeur(0);
+            note.setGraded(true);
+            outcome.touched.add(note);
+        }
+
+        noteRepository.saveAll(outcome.touched);
+        Set<Long> added = new HashSet<>();
+        for (Note n : outcome.touched) {
+            noteWriteBuffer.discard(n.getId());
+            if (added.add(n.getEtudiant().getId())) stats.noteAdded(n);
+        }
+        stats.apply();
+        return outcome;
+    }
+
+    private static final class ImportRow {
+        private final int rowNumber;
+        private String matricule = "";
+        private String email = "";
+        private Double examen;
+        private Double ds;
+        private Double oral;
+
+        private ImportRow(int rowNumber) {
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    private static final class BatchOutcome {
+        private final Map<ImportRow, String> rejected = new LinkedHashMap<>();
+        private final Set<Note> touched = new LinkedHashSet<>();
+        private int created;
+        private int updated;
+    }
+
+    // ===== parsing helpers =====
+
+    private static Double grade(String raw) {
+        if (raw.isEmpty()) return null;
+        double value;
+        try {
+            value = Double.parseDouble(raw.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Note invalide: " + raw);
+        }
+        if (value < 0 || value > MAX_GRADE || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Note hors bornes (0-20): " + raw);
+        }
+        return value;
+    }
+
+    private static String cell(List<String> cells, int index) {
+        if (index < 0 || index >= cells.size() || cells.get(index) == null) return "";
+        return cells.get(index).trim();
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        for (String c : cells) {
+            if (c != null && !c.isBlank()) return false;
+        }
+        return true;
+    }
+
+    private static String normalizeHeader(String header) {
+        if (header == null) return "";
+        String stripped = Normalizer.normalize(header, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    private static char detectDelimiter(String header) {
+        int semicolons = 0, commas = 0, tabs = 0;
+        for (char ch : header.toCharArray()) {
+            if (ch == ';') semicolons++;
+            else if (ch == ',') commas++;
+            else if (ch == '\t') tabs++;
+        }
+        if (tabs > semicolons && tabs > commas) return '\t';
+        return semicolons >= commas && semicolons > 0 ? ';' : ',';
+    }
+
+    private static boolean hasOpenQuote(CharSequence record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') quotes++;
+        }
+        return quotes % 2 != 0;
+    }
+
+    private static List<String> splitCsv(String record, char delimiter) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char ch = record.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == delimiter) {
+                cells.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        cells.add(current.toString());
+        return cells;
+    }
+}
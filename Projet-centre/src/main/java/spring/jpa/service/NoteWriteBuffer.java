@@ -0,0 +1,193 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import spring.jpa.model.Note;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Optional write-behind buffer for grade edits (app.notes.write-behind.enabled).
+ * Edits are kept per note id (latest value wins) and written in batched
+ * transactions by a background flusher; reads overlay the pending values.
+ */
+@Service
+public class NoteWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteWriteBuffer.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final NoteRepository noteRepository;
+    private final GradeStatsService gradeStatsService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+
+    private final Map<Long, PendingGrade> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    public NoteWriteBuffer(
+            NoteRepository noteRepository,
+            GradeStatsService gradeStatsService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.notes.write-behind.enabled:false}") boolean enabled,
+            @Value("${app.notes.write-behind.flush-interval-ms:250}") long flushIntervalMs) {
+        this.noteRepository = noteRepository;
+        this.gradeStatsService = gradeStatsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "note-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher == null) return;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Drain whatever is left before the datasource goes away
+        flush();
+        if (!pending.isEmpty()) {
+            logger.error("{} buffered note edits could not be flushed on shutdown", pending.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers an edit; a later edit of the same note replaces it.
+     */
+    public void submit(Long noteId, double noteExamen, double noteDs, double noteOral) {
+        pending.put(noteId, new PendingGrade(noteExamen, noteDs, noteOral));
+    }
+
+    /**
+     * Drops a pending edit, e.g. when the note is written directly or deleted.
+     */
+    public void discard(Long noteId) {
+        if (noteId != null) pending.remove(noteId);
+    }
+
+    /**
+     * Returns the note as it will be once flushed. The entity itself is left
+     * untouched; a detached copy is returned when an edit is pending.
+     */
+    public Note overlay(Note note) {
+        if (note == null || note.getId() == null) return note;
+        PendingGrade grade = pending.get(note.getId());
+        if (grade == null) return note;
+        Note copy = new Note(grade.noteExamen, grade.noteDs, grade.noteOral, note.getEtudiant(), note.getCours());
+        copy.setId(note.getId());
+        copy.setValeur(note.getValeur());
+        copy.setGraded(true);
+        return copy;
+    }
+
+    public List<Note> overlay(List<Note> notes) {
+        if (pending.isEmpty()) return notes;
+        List<Note> result = new ArrayList<>(notes.size());
+        for (Note n : notes) {
+            result.add(overlay(n));
+        }
+        return result;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the current snapshot of pending edits in batched transactions.
+     * An entry is only written if it is still pending once its note is
+     * locked, and only removed if it was not replaced while being written.
+     */
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<Map.Entry<Long, PendingGrade>> snapshot = new ArrayList<>(new HashMap<>(pending).entrySet());
+        for (int from = 0; from < snapshot.size(); from += BATCH_SIZE) {
+            List<Map.Entry<Long, PendingGrade>> batch = snapshot.subList(from, Math.min(snapshot.size(), from + BATCH_SIZE));
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            for (Map.Entry<Long, PendingGrade> entry : batch) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<Long, PendingGrade>> batch) {
+        Map<Long, PendingGrade> byId = new HashMap<>();
+        for (Map.Entry<Long, PendingGrade> entry : batch) {
+            byId.put(entry.getKey(), entry.getValue());
+        }
+        List<Note> notes = new ArrayList<>();
+        GradeStatsService.Changes stats = gradeStatsService.changes();
+        for (Note note : noteRepository.lockAllById(byId.keySet())) {
+            PendingGrade grade = byId.get(note.getId());
+            // Checked under the row lock: a direct write discards the edit
+            // before committing, a newer edit replaces it (next flush)
+            if (pending.get(note.getId()) != grade) continue;
+            notes.add(note);
+            stats.noteRemoved(note);
+            note.setNoteExamen(grade.noteExamen);
+            note.setNoteDs(grade.noteDs);
+            note.setNoteOral(grade.noteOral);
+            note.setValeur(0);
+            note.setGraded(true);
+            stats.noteAdded(note);
+        }
+        noteRepository.saveAll(notes);
+        stats.apply();
+        // Notes deleted in the meantime are simply dropped
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            logger.warn("Note write-behind flush failed, will retry: {}", ex.getMessage());
+        }
+    }
+
+    private static final class PendingGrade {
+        private final double noteExamen;
+        private final double noteDs;
+        private final double noteOral;
+
+        private PendingGrade(double noteExamen, double noteDs, double noteOral) {
+            this.noteExamen = noteExamen;
+            this.noteDs = noteDs;
+            this.noteOral = noteOral;
+        }
+    }
+}
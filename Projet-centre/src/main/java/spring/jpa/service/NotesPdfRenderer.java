@@ -0,0 +1,127 @@
+package spring.jpa.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import spring.jpa.model.Cours;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Writes the notes PDF report straight to an output stream.
+ *
+ * Rows come from one streamed query ordered by course. Each course section
+ * (title + table) is added to the document, and its bytes flushed, once the
+ * course is read, so memory holds one course at a time for an all-courses
+ * report. Sections are built on the calling thread: the document is a single
+ * PdfWriter, which lays them out one after the other anyway.
+ */
+@Service
+public class NotesPdfRenderer {
+
+    private final NoteRepository noteRepository;
+
+    public NotesPdfRenderer(NoteRepository noteRepository) {
+        this.noteRepository = noteRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public void renderAllCourses(OutputStream out) throws IOException {
+        try (Stream<Object[]> rows = noteRepository.streamNoteReportRows()) {
+            render("Notes Report", rows, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void renderCourse(Cours cours, OutputStream out) throws IOException {
+        try (Stream<Object[]> rows = noteRepository.streamNoteReportRowsByCours(cours)) {
+            render("Notes - " + cours.getCode() + " - " + cours.getTitre(), rows, out);
+        }
+    }
+
+    private void render(String title, Stream<Object[]> rows, OutputStream out) throws IOException {
+        Document document = new Document();
+        try {
+            PdfWriter.getInstance(document, out);
+            document.open();
+            document.add(new Paragraph(title));
+
+            String currentCode = null;
+            List<Object[]> section = new ArrayList<>();
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                String code = (String) row[0];
+                if (currentCode != null && !currentCode.equals(code)) {
+                    write(section, document, out);
+                    section = new ArrayList<>();
+                }
+                currentCode = code;
+                section.add(row);
+            }
+            if (!section.isEmpty()) {
+                write(section, document, out);
+            }
+            if (currentCode == null) {
+                document.add(new Paragraph("Aucune note."));
+            }
+            document.close();
+        } catch (DocumentException e) {
+            throw new IOException("PDF generation failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Adds one course section and pushes the bytes out
+    private void write(List<Object[]> rows, Document document, OutputStream out)
+            throws DocumentException, IOException {
+        for (Element element : buildSection(rows)) {
+            document.add(element);
+        }
+        out.flush();
+    }
+
+    private List<Element> buildSection(List<Object[]> rows) {
+        Object[] first = rows.get(0);
+        String title = first[1] != null ? first[0] + " - " + first[1] : (String) first[0];
+
+        PdfPTable table = new PdfPTable(4);
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        table.addCell(header("Etudiant"));
+        table.addCell(header("Examen"));
+        table.addCell(header("DS"));
+        table.addCell(header("Oral"));
+
+        for (Object[] row : rows) {
+            String nom = row[2] == null ? "" : (String) row[2];
+            String prenom = row[3] == null ? "" : (String) row[3];
+            table.addCell(nom + " " + prenom);
+            table.addCell(grade(row[4]));
+            table.addCell(grade(row[5]));
+            table.addCell(grade(row[6]));
+        }
+        return List.of(new Paragraph(title), table, new Paragraph(" "));
+    }
+
+    private static PdfPCell header(String text) {
+        PdfPCell cell = new PdfPCell(new Paragraph(text));
+        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        return cell;
+    }
+
+    // Ungraded enrollments print as 0.0, like the synthesized notes did
+    private static String grade(Object value) {
+        return String.valueOf(value == null ? 0.0 : ((Number) value).doubleValue());
+    }
+}
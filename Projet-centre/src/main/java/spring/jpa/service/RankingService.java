@@ -0,0 +1,145 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import spring.jpa.dto.RankEntry;
+import spring.jpa.repository.NoteRepository;
+import spring.jpa.service.GradingEngine.StudentAverages;
+
+/**
+ * Class rank, percentile and top-N over the students of a course, groupe or
+ * session. Top-N and single-student lookups are ranked by the database with
+ * window functions over NoteRepository.ROW_AVERAGE, so only the returned rows
+ * are materialized. The bulk lists (also per specialite) need every student:
+ * those rank the primitive averages of GradingEngine in one sort.
+ *
+ * Rank follows SQL RANK(): 1 + number of strictly better averages.
+ * Percentile follows PERCENT_RANK() on ascending averages, in %.
+ */
+@Service
+public class RankingService {
+
+    private final NoteRepository noteRepository;
+    private final GradingEngine gradingEngine;
+
+    public RankingService(NoteRepository noteRepository, GradingEngine gradingEngine) {
+        this.noteRepository = noteRepository;
+        this.gradingEngine = gradingEngine;
+    }
+
+    public StudentAverages forSession(Long sessionId) {
+        return gradingEngine.studentAverages(gradingEngine.load(noteRepository.findGradeRowsBySession(sessionId)));
+    }
+
+    public StudentAverages forGroupe(Long groupeId) {
+        return gradingEngine.studentAverages(gradingEngine.load(noteRepository.findGradeRowsByGroupe(groupeId)));
+    }
+
+    public StudentAverages forSpecialite(Long specialiteId) {
+        return gradingEngine.studentAverages(gradingEngine.load(noteRepository.findGradeRowsBySpecialite(specialiteId)));
+    }
+
+    // ===== Top-N, best first; ties keep the lower student id first =====
+
+    public List<RankEntry> topOfCours(String code, int n) {
+        return entries(noteRepository.findTopByCours(code, coefExamen(), coefDs(), coefOral(), PageRequest.of(0, n)));
+    }
+
+    public List<RankEntry> topOfGroupe(Long groupeId, int n) {
+        return entries(noteRepository.findTopByGroupe(groupeId, coefExamen(), coefDs(), coefOral(), PageRequest.of(0, n)));
+    }
+
+    public List<RankEntry> topOfSession(Long sessionId, int n) {
+        return entries(noteRepository.findTopBySession(sessionId, coefExamen(), coefDs(), coefOral(), PageRequest.of(0, n)));
+    }
+
+    // ===== Standing of one student, or null when they are not part of the scope =====
+
+    public RankEntry rankInCours(String code, long etudiantId) {
+        return first(noteRepository.findRankInCours(code, etudiantId, coefExamen(), coefDs(), coefOral()));
+    }
+
+    public RankEntry rankInGroupe(Long groupeId, long etudiantId) {
+        return first(noteRepository.findRankInGroupe(groupeId, etudiantId, coefExamen(), coefDs(), coefOral()));
+    }
+
+    public RankEntry rankInSession(Long sessionId, long etudiantId) {
+        return first(noteRepository.findRankInSession(sessionId, etudiantId, coefExamen(), coefDs(), coefOral()));
+    }
+
+    /**
+     * Every student with rank and percentile, best first (one sort, no rescans).
+     */
+    public List<RankEntry> ranked(StudentAverages averages) {
+        int size = averages.size();
+        int[] order = order(averages);
+
+        List<RankEntry> result = new ArrayList<>(size);
+        int k = 0;
+        while (k < size) {
+            // Tie block [k, end): same rank, same number of students below
+            int end = k + 1;
+            double value = averages.average(order[k]);
+            while (end < size && averages.average(order[end]) == value) end++;
+            int rank = k + 1;
+            for (int j = k; j < end; j++) {
+                int i = order[j];
+                double percentile = size > 1 ? (size - end) * 100.0 / (size - 1) : 0.0;
+                result.add(new RankEntry(rank, size, percentile, averages.etudiantId(i), value));
+            }
+            k = end;
+        }
+        return result;
+    }
+
+    // Row indices best first: bottom-up merge sort on an int[], so nothing is boxed
+    private static int[] order(StudentAverages averages) {
+        int size = averages.size();
+        int[] order = new int[size];
+        int[] buffer = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, size);
+                int a = lo, b = mid, k = lo;
+                while (a < mid && b < hi) {
+                    buffer[k++] = compare(averages, order[b], order[a]) < 0 ? order[b++] : order[a++];
+                }
+                while (a < mid) buffer[k++] = order[a++];
+                while (b < hi) buffer[k++] = order[b++];
+                System.arraycopy(buffer, lo, order, lo, hi - lo);
+            }
+        }
+        return order;
+    }
+
+    // Negative when row a ranks before row b
+    private static int compare(StudentAverages averages, int a, int b) {
+        int byAverage = Double.compare(averages.average(b), averages.average(a));
+        return byAverage != 0 ? byAverage : Long.compare(averages.etudiantId(a), averages.etudiantId(b));
+    }
+
+    // Rows of NoteRepository.RANKED_START: etudiant id, moyenne, rang, percentile (0..1), effectif
+    private static List<RankEntry> entries(List<Object[]> rows) {
+        List<RankEntry> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new RankEntry(((Number) row[2]).intValue(), ((Number) row[4]).intValue(),
+                ((Number) row[3]).doubleValue() * 100.0, ((Number) row[0]).longValue(), ((Number) row[1]).doubleValue()));
+        }
+        return result;
+    }
+
+    private static RankEntry first(List<Object[]> rows) {
+        List<RankEntry> entries = entries(rows);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    private double coefExamen() { return gradingEngine.getDefaultCoefExamen(); }
+    private double coefDs() { return gradingEngine.getDefaultCoefDs(); }
+    private double coefOral() { return gradingEngine.getDefaultCoefOral(); }
+}
@@ -0,0 +1,162 @@
+package spring.jpa.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local file store for generated reports, addressed by a SHA-256 of what the
+ * report was built from (type, parameters, data versions): the same request
+ * on unchanged data maps to the same file and is not rendered twice.
+ *
+ * Files are written to a temporary name and moved into place, so a reader
+ * never sees a partial artifact. Artifacts older than the retention period,
+ * then the least recently used ones above the size cap, are evicted.
+ */
+@Service
+public class ReportArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportArtifactStore.class);
+
+    private final Path root;
+    private final Duration retention;
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    public ReportArtifactStore(
+            @Value("${app.reports.store.dir:${java.io.tmpdir}/projet-centre-reports}") String dir,
+            @Value("${app.reports.store.retention-hours:24}") long retentionHours,
+            @Value("${app.reports.store.max-mb:1024}") long maxMb) throws IOException {
+        this.root = Paths.get(dir);
+        this.retention = Duration.ofHours(retentionHours);
+        this.maxBytes = maxMb * 1024 * 1024;
+        Files.createDirectories(root);
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path path(String key, String extension) {
+        return root.resolve(key + "." + extension);
+    }
+
+    /**
+     * Returns the artifact for this key, rendering it first if it is missing.
+     * Concurrent calls for the same key render once; the others wait and reuse it.
+     * Artifact.cached() tells whether the file was already there.
+     */
+    public Artifact getOrCreate(String key, String extension, Writer writer) throws IOException {
+        Path target = path(key, extension);
+        if (Files.exists(target)) {
+            touch(target);
+            return new Artifact(target, true);
+        }
+        Object lock = locks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                if (Files.exists(target)) {
+                    touch(target);
+                    return new Artifact(target, true);
+                }
+                Path tmp = Files.createTempFile(root, key, ".part");
+                try {
+                    try (OutputStream out = Files.newOutputStream(tmp)) {
+                        writer.write(out);
+                    }
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                return new Artifact(target, false);
+            }
+        } finally {
+            locks.remove(key, lock);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reports.store.evict-interval-ms:600000}")
+    public void evict() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        List<StoredFile> kept = new ArrayList<>();
+        long total = 0;
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                // Leftover .part files belong to a crashed render once they are this old
+                if (modified < cutoff) {
+                    if (Files.deleteIfExists(file)) removed++;
+                } else if (!file.getFileName().toString().endsWith(".part")) {
+                    long size = Files.size(file);
+                    kept.add(new StoredFile(file, modified, size));
+                    total += size;
+                }
+            }
+            if (total > maxBytes) {
+                kept.sort(Comparator.comparingLong(StoredFile::modified));
+                for (StoredFile file : kept) {
+                    if (total <= maxBytes) break;
+                    if (Files.deleteIfExists(file.path())) {
+                        total -= file.size();
+                        removed++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Report artifact eviction failed: {}", e.getMessage());
+        }
+        if (removed > 0) {
+            logger.info("Evicted {} report artifacts", removed);
+        }
+    }
+
+    // Cache hits count as use for the retention and the size-based eviction
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Evicted in the meantime: the caller will notice when it opens the file
+        }
+    }
+
+    private record StoredFile(Path path, long modified, long size) {
+    }
+
+    public record Artifact(Path path, boolean cached) {
+    }
+}
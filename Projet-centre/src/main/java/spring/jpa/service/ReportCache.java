@@ -0,0 +1,133 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.CubeCell;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.model.SessionPedagogique;
+import spring.jpa.model.Specialite;
+
+/**
+ * In-memory cache of report results, bounded by entry count (LRU).
+ *
+ * An entry is keyed by report name and parameters and remembers the
+ * {@link DataVersions} snapshot of the entities it was computed from. It is
+ * served only while that snapshot is current, so any write to those entities
+ * makes it stale at once: no TTL. A stale entry is recomputed and replaced in
+ * place. Two concurrent misses on the same key both compute; the last one wins.
+ *
+ * Cached values are shared between callers and must not be modified.
+ */
+@Service
+public class ReportCache {
+
+    // Everything a grade report can read
+    public static final Class<?>[] GRADES = { Note.class, Inscription.class, Cours.class, Etudiant.class,
+        Groupe.class, SessionPedagogique.class, Specialite.class };
+
+    // Cube roll-ups: grade writes reach the cells as deltas, membership
+    // changes through rebuilds that may run after the change committed
+    public static final Class<?>[] CUBE = { Note.class, Inscription.class, Cours.class, Etudiant.class,
+        Groupe.class, SessionPedagogique.class, Specialite.class, CubeCell.class };
+
+    // Enrollment counts per course; derived enrollments follow groupe membership
+    public static final Class<?>[] ENROLLMENTS = { Inscription.class, Cours.class, Groupe.class };
+
+    private final DataVersions dataVersions;
+    private final int maxEntries;
+    private final Map<List<Object>, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReportCache(DataVersions dataVersions,
+                       @Value("${app.reports.cache.max-entries:500}") int maxEntries) {
+        this.dataVersions = dataVersions;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+                if (size() <= ReportCache.this.maxEntries) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    private record Entry(String version, Object value) {
+    }
+
+    /**
+     * Cached result of report(params) while the dependsOn entities are
+     * unchanged, otherwise compute() (which must not return null).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String report, Class<?>[] dependsOn, Supplier<T> compute, Object... params) {
+        List<Object> key = key(report, params);
+        // Read before computing: a write during compute() leaves the entry stale
+        String version = dataVersions.snapshot(dependsOn);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version().equals(version)) {
+                    hits.incrementAndGet();
+                    return (T) entry.value();
+                }
+                stale.incrementAndGet();
+            }
+            misses.incrementAndGet();
+        }
+        T value = Objects.requireNonNull(compute.get());
+        synchronized (entries) {
+            entries.put(key, new Entry(version, value));
+        }
+        return value;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entrees", size);
+        stats.put("maxEntrees", maxEntries);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("perimees", stale.get());
+        stats.put("evictions", evictions.get());
+        stats.put("tauxHit", h + m == 0 ? 0.0 : h * 100.0 / (h + m));
+        return stats;
+    }
+
+    private static List<Object> key(String report, Object... params) {
+        List<Object> key = new ArrayList<>(params.length + 1);
+        key.add(report);
+        Collections.addAll(key, params);
+        return key;
+    }
+}
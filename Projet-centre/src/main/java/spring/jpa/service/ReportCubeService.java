@@ -0,0 +1,369 @@
+package spring.jpa.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.dto.CubeRow;
+import spring.jpa.model.CubeCell;
+import spring.jpa.model.CubeCellKey;
+import spring.jpa.repository.CubeCellRepository;
+
+/**
+ * Pre-aggregated reporting cube: effectif, sum, sum of squares and pass count
+ * of the course average per (session, specialite, groupe, cours) cell, where
+ * the cell holds the enrollments of the groupe's students in the groupe's
+ * courses (the scope of the groupe/session reports). Specialite and session
+ * are the groupe's.
+ *
+ * A student in two groupes that share a course is in both groupe cells, so
+ * roll-ups without the groupe read a second, groupe-free grain: per cours,
+ * and per session and/or specialite or across them all (CubeCellKey.ALL),
+ * each cell counting an enrollment once however many of its groupes match.
+ * Summing those over courses stays exact, as an enrollment has one course.
+ *
+ * Grade and enrollment changes arrive as deltas through GradeStatsService;
+ * membership changes (groupe students, courses, session, specialite) rebuild
+ * the cells of that groupe with one GROUP BY, and the groupe-free cells of
+ * its courses. Roll-ups sum the stored cells, so they never scan notes or
+ * inscriptions.
+ *
+ * Rebuilds may run after the change that caused them has committed (see
+ * GroupeSyncService), so they bump the CubeCell data version themselves:
+ * cached roll-ups depend on it (ReportCache.CUBE).
+ */
+@Service
+public class ReportCubeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCubeService.class);
+
+    // IN lists of the membership lookup are split to stay under driver limits
+    private static final int LOOKUP_CHUNK = 1000;
+
+    public enum Dimension { SESSION, SPECIALITE, GROUPE, COURS }
+
+    /**
+     * Change of one (etudiant, cours) enrollment, to be added to every cell
+     * of a groupe that contains that student and course, and once to each
+     * groupe-free cell those groupes fall in.
+     */
+    public record Delta(long etudiantId, String coursCode, long effectif, double somme, double sommeCarres, long reussis) {
+    }
+
+    private final CubeCellRepository cubeCellRepository;
+    private final GradingEngine gradingEngine;
+    private final DataVersionListener dataVersionListener;
+
+    public ReportCubeService(CubeCellRepository cubeCellRepository, GradingEngine gradingEngine,
+                             DataVersionListener dataVersionListener) {
+        this.cubeCellRepository = cubeCellRepository;
+        this.gradingEngine = gradingEngine;
+        this.dataVersionListener = dataVersionListener;
+    }
+
+    /**
+     * Adds the deltas to their cells; must run inside the caller's transaction.
+     */
+    public void applyDeltas(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) return;
+        Map<CubeCellKey, double[]> byCell = new HashMap<>();
+        Map<Delta, Set<CubeCellKey>> totals = new HashMap<>();
+        List<Delta> list = new ArrayList<>(deltas);
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK) {
+            List<Delta> chunk = list.subList(from, Math.min(list.size(), from + LOOKUP_CHUNK));
+            Map<String, Delta> byPair = new HashMap<>();
+            Set<Long> ids = new HashSet<>();
+            Set<String> codes = new HashSet<>();
+            for (Delta d : chunk) {
+                byPair.put(d.etudiantId() + "|" + d.coursCode(), d);
+                ids.add(d.etudiantId());
+                codes.add(d.coursCode());
+            }
+            for (Object[] m : cubeCellRepository.findMemberships(ids, codes)) {
+                Delta d = byPair.get(((Number) m[3]).longValue() + "|" + m[4]);
+                if (d == null) continue;
+                add(byCell.computeIfAbsent(key(m[0], m[1], m[2], (String) m[4]), k -> new double[4]), d);
+                totals.computeIfAbsent(d, k -> new HashSet<>()).addAll(totalKeys(m[0], m[1], (String) m[4]));
+            }
+        }
+        totals.forEach((d, keys) -> keys.forEach(k -> add(byCell.computeIfAbsent(k, x -> new double[4]), d)));
+
+        // A missing cell is created empty (racing writers both succeed), then incremented
+        for (Map.Entry<CubeCellKey, double[]> entry : byCell.entrySet()) {
+            CubeCellKey k = entry.getKey();
+            double[] v = entry.getValue();
+            if (cubeCellRepository.applyDelta(k, (long) v[0], v[1], v[2], (long) v[3]) == 0) {
+                cubeCellRepository.insertIfAbsent(k.getSessionId(), k.getSpecialiteId(), k.getGroupeId(), k.getCoursCode());
+                cubeCellRepository.applyDelta(k, (long) v[0], v[1], v[2], (long) v[3]);
+            }
+        }
+    }
+
+    private static void add(double[] acc, Delta d) {
+        acc[0] += d.effectif();
+        acc[1] += d.somme();
+        acc[2] += d.sommeCarres();
+        acc[3] += d.reussis();
+    }
+
+    // The groupe-free cells an enrollment of a groupe with this session and specialite falls in
+    private static List<CubeCellKey> totalKeys(Object sessionId, Object specialiteId, String cours) {
+        long session = id(sessionId);
+        long specialite = id(specialiteId);
+        return List.of(
+            new CubeCellKey(session, specialite, CubeCellKey.ALL, cours),
+            new CubeCellKey(session, CubeCellKey.ALL, CubeCellKey.ALL, cours),
+            new CubeCellKey(CubeCellKey.ALL, specialite, CubeCellKey.ALL, cours),
+            new CubeCellKey(CubeCellKey.ALL, CubeCellKey.ALL, CubeCellKey.ALL, cours));
+    }
+
+    // Groupe-free cell rows (as CubeCellRepository.CELLS) from the membership
+    // rows of CubeCellRepository.PAIRS, which come grouped by enrollment
+    private static List<Object[]> totalRows(List<Object[]> pairs) {
+        Map<CubeCellKey, double[]> byCell = new LinkedHashMap<>();
+        Set<CubeCellKey> keys = new HashSet<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            Object[] p = pairs.get(i);
+            keys.addAll(totalKeys(p[0], p[1], (String) p[3]));
+            Object[] next = i + 1 < pairs.size() ? pairs.get(i + 1) : null;
+            if (next != null && next[2].equals(p[2]) && next[3].equals(p[3])) continue;
+            double average = number(p[4]);
+            for (CubeCellKey k : keys) {
+                double[] acc = byCell.computeIfAbsent(k, x -> new double[4]);
+                acc[0] += 1;
+                acc[1] += average;
+                acc[2] += average * average;
+                acc[3] += average >= 10 ? 1 : 0;
+            }
+            keys.clear();
+        }
+        List<Object[]> rows = new ArrayList<>(byCell.size());
+        byCell.forEach((k, v) -> rows.add(new Object[] {
+            k.getSessionId(), k.getSpecialiteId(), k.getGroupeId(), k.getCoursCode(), v[0], v[1], v[2], v[3] }));
+        return rows;
+    }
+
+    // Recomputes the groupe-free cells of these courses
+    private void rebuildTotals(Collection<String> codes) {
+        if (codes.isEmpty()) return;
+        replace(cubeCellRepository.findTotalsByCours(codes), totalRows(cubeCellRepository.findPairsByCours(codes,
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral())));
+    }
+
+    /**
+     * Recomputes the cells of one groupe; call after its membership changed
+     * (and after the matching enrollment writes).
+     */
+    @Transactional
+    public void rebuildGroupe(Long groupeId) {
+        List<CubeCell> existing = cubeCellRepository.findCells(null, null, groupeId, null);
+        List<Object[]> rows = cubeCellRepository.aggregateCellsByGroupe(groupeId,
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral());
+        Set<String> codes = new HashSet<>();
+        existing.forEach(c -> codes.add(c.getId().getCoursCode()));
+        rows.forEach(r -> codes.add((String) r[3]));
+        replace(existing, rows);
+        rebuildTotals(codes);
+        dataVersionListener.touched(CubeCell.class);
+    }
+
+    /**
+     * Recomputes the cells of one course; call after its grading scheme changed.
+     */
+    @Transactional
+    public void rebuildCours(String code) {
+        List<Object[]> rows = new ArrayList<>(cubeCellRepository.aggregateCellsByCours(code,
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral()));
+        rows.addAll(totalRows(cubeCellRepository.findPairsByCours(List.of(code),
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral())));
+        replace(cubeCellRepository.findByIdCoursCode(code), rows);
+        dataVersionListener.touched(CubeCell.class);
+    }
+
+    @Transactional
+    public void groupeDeleted(Long groupeId) {
+        List<CubeCell> cells = cubeCellRepository.findCells(null, null, groupeId, null);
+        Set<String> codes = new HashSet<>();
+        cells.forEach(c -> codes.add(c.getId().getCoursCode()));
+        cubeCellRepository.deleteAll(cells);
+        rebuildTotals(codes);
+        dataVersionListener.touched(CubeCell.class);
+    }
+
+    @Transactional
+    public void coursDeleted(String code) {
+        cubeCellRepository.deleteAll(cubeCellRepository.findByIdCoursCode(code));
+        dataVersionListener.touched(CubeCell.class);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIfEmpty() {
+        try {
+            if (cubeCellRepository.count() == 0) {
+                rebuildAll();
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Initial reporting cube build failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the groupe cells with one GROUP BY and the groupe-free ones
+     * from one pass over the memberships. Returns the number of cells.
+     */
+    @Transactional
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(cubeCellRepository.aggregateCells(
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral()));
+        rows.addAll(totalRows(cubeCellRepository.findPairs(
+            gradingEngine.getDefaultCoefExamen(), gradingEngine.getDefaultCoefDs(), gradingEngine.getDefaultCoefOral())));
+        int count = replace(cubeCellRepository.findAll(), rows);
+        dataVersionListener.touched(CubeCell.class);
+        logger.info("Reporting cube rebuilt: {} cells in {} ms", count, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    // Overwrites the existing cells with the recomputed rows (see
+    // CubeCellRepository.CELLS), inserting and removing as needed. Goes
+    // through the loaded entities rather than a bulk delete + insert, so cells
+    // already in the persistence context are never left stale.
+    private int replace(List<CubeCell> existing, List<Object[]> rows) {
+        Map<CubeCellKey, CubeCell> byKey = new HashMap<>();
+        for (CubeCell c : existing) byKey.put(c.getId(), c);
+        List<CubeCell> created = new ArrayList<>();
+        for (Object[] row : rows) {
+            CubeCellKey key = key(row[0], row[1], row[2], (String) row[3]);
+            CubeCell c = byKey.remove(key);
+            if (c == null) {
+                created.add(cell(key, number(row[4]), number(row[5]), number(row[6]), number(row[7])));
+            } else {
+                c.setEffectif((long) number(row[4]));
+                c.setSomme(number(row[5]));
+                c.setSommeCarres(number(row[6]));
+                c.setReussis((long) number(row[7]));
+            }
+        }
+        cubeCellRepository.deleteAll(byKey.values());
+        cubeCellRepository.saveAll(created);
+        return rows.size();
+    }
+
+    /**
+     * Rolls the filtered cells up to the given dimensions (none = grand total).
+     * Groupe cells are read when the groupe is a dimension or a filter, the
+     * groupe-free cells at the session/specialite grain asked for otherwise.
+     * Lines are ordered by their dimension values.
+     */
+    @Transactional(readOnly = true)
+    public List<CubeRow> rollup(Set<Dimension> dims, Long sessionId, Long specialiteId, Long groupeId, String cours) {
+        List<CubeCell> cells;
+        if (dims.contains(Dimension.GROUPE) || groupeId != null) {
+            cells = cubeCellRepository.findCells(sessionId, specialiteId, groupeId, cours);
+        } else {
+            cells = cubeCellRepository.findTotals(
+                dims.contains(Dimension.SESSION) || sessionId != null ? sessionId : CubeCellKey.ALL,
+                dims.contains(Dimension.SPECIALITE) || specialiteId != null ? specialiteId : CubeCellKey.ALL,
+                cours);
+        }
+        Map<List<Object>, double[]> groups = new LinkedHashMap<>();
+        for (CubeCell c : cells) {
+            CubeCellKey k = c.getId();
+            List<Object> key = Arrays.asList(
+                dims.contains(Dimension.SESSION) ? k.getSessionId() : null,
+                dims.contains(Dimension.SPECIALITE) ? k.getSpecialiteId() : null,
+                dims.contains(Dimension.GROUPE) ? k.getGroupeId() : null,
+                dims.contains(Dimension.COURS) ? k.getCoursCode() : null);
+            double[] acc = groups.computeIfAbsent(key, x -> new double[4]);
+            acc[0] += c.getEffectif();
+            acc[1] += c.getSomme();
+            acc[2] += c.getSommeCarres();
+            acc[3] += c.getReussis();
+        }
+
+        List<CubeRow> result = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, double[]> entry : groups.entrySet()) {
+            List<Object> key = entry.getKey();
+            double[] acc = entry.getValue();
+            CubeRow row = new CubeRow((Long) key.get(0), (Long) key.get(1), (Long) key.get(2), (String) key.get(3));
+            long n = (long) acc[0];
+            row.setEffectif(n);
+            if (n > 0) {
+                double mean = acc[1] / n;
+                row.setMoyenne(mean);
+                row.setEcartType(Math.sqrt(Math.max(0, acc[2] / n - mean * mean)));
+                row.setTauxReussite(acc[3] * 100.0 / n);
+            }
+            result.add(row);
+        }
+        result.sort(ReportCubeService::compareRows);
+        return result;
+    }
+
+    public static Set<Dimension> parseDimensions(String value) {
+        Set<Dimension> dims = EnumSet.noneOf(Dimension.class);
+        if (value == null || value.isBlank()) return dims;
+        for (String part : value.split(",")) {
+            if (part.isBlank()) continue;
+            try {
+                dims.add(Dimension.valueOf(part.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Dimension inconnue: " + part.trim()
+                    + " (session, specialite, groupe, cours)");
+            }
+        }
+        return dims;
+    }
+
+    private static int compareRows(CubeRow a, CubeRow b) {
+        int c = compare(a.getSessionId(), b.getSessionId());
+        if (c == 0) c = compare(a.getSpecialiteId(), b.getSpecialiteId());
+        if (c == 0) c = compare(a.getGroupeId(), b.getGroupeId());
+        if (c == 0) c = compare(a.getCours(), b.getCours());
+        return c;
+    }
+
+    private static <T extends Comparable<T>> int compare(T a, T b) {
+        if (Objects.equals(a, b)) return 0;
+        if (a == null) return -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+
+    private static CubeCellKey key(Object sessionId, Object specialiteId, Object groupeId, String cours) {
+        return new CubeCellKey(id(sessionId), id(specialiteId), id(groupeId), cours);
+    }
+
+    private static CubeCell cell(CubeCellKey key, double effectif, double somme, double sommeCarres, double reussis) {
+        CubeCell cell = new CubeCell(key);
+        cell.setEffectif((long) effectif);
+        cell.setSomme(somme);
+        cell.setSommeCarres(sommeCarres);
+        cell.setReussis((long) reussis);
+        return cell;
+    }
+
+    private static long id(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static double number(Object value) {
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+}
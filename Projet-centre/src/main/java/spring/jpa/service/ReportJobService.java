@@ -0,0 +1,247 @@
+package spring.jpa.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import spring.jpa.dto.ReportJob;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.model.SessionPedagogique;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.SessionPedagogiqueRepository;
+
+/**
+ * Heavy reports rendered in the background instead of on a request thread.
+ *
+ * submit() validates the request and queues it on a small bounded pool; when
+ * the queue is full it is refused (RejectedExecutionException) rather than
+ * piling up. The artifact goes to the {@link ReportArtifactStore} under a key
+ * made of the type, the parameters and the versions of the data it reads, so
+ * asking again for the same report on unchanged data is served from disk.
+ * Finished jobs are forgotten after the store's retention period.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobService.class);
+
+    private final ReportArtifactStore store;
+    private final DataVersions dataVersions;
+    private final CoursRepository coursRepository;
+    private final ThreadPoolExecutor workers;
+    private final long retentionMs;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ReportType> types = new LinkedHashMap<>();
+
+    public ReportJobService(
+            ReportArtifactStore store,
+            DataVersions dataVersions,
+            CoursRepository coursRepository,
+            SessionPedagogiqueRepository sessionRepository,
+            GroupeRepository groupeRepository,
+            NotesPdfRenderer notesPdfRenderer,
+            ExportService exportService,
+            TranscriptRenderer transcriptRenderer,
+            @Value("${app.reports.jobs.threads:2}") int threads,
+            @Value("${app.reports.jobs.queue-capacity:20}") int queueCapacity,
+            @Value("${app.reports.store.retention-hours:24}") long retentionHours) {
+        this.store = store;
+        this.dataVersions = dataVersions;
+        this.coursRepository = coursRepository;
+        this.retentionMs = TimeUnit.HOURS.toMillis(retentionHours);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "report-job-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+        register(new ReportType("notes-pdf", "pdf", MediaType.APPLICATION_PDF_VALUE,
+            new Class<?>[] { Note.class, Inscription.class, Cours.class, Etudiant.class }, List.of(), false,
+            (params, out) -> {
+                Cours cours = cours(params);
+                if (cours != null) notesPdfRenderer.renderCourse(cours, out);
+                else notesPdfRenderer.renderAllCourses(out);
+            }));
+        // Tabular exports: notes-csv, notes-xlsx, inscriptions-csv, ...
+        exportService.datasets().forEach((name, dataset) -> {
+            for (ExportService.Format format : ExportService.Format.values()) {
+                register(new ReportType(name + "-" + format.extension(), format.extension(), format.mediaType(),
+                    dataset.dependsOn(), List.of(), true,
+                    (params, out) -> exportService.export(name, filter(params), format, out)));
+            }
+        });
+        // Transcript ZIPs of a session or groupe
+        Class<?>[] transcriptData = { Note.class, Inscription.class, Cours.class, Etudiant.class,
+            Groupe.class, SessionPedagogique.class };
+        register(new ReportType("releves-session", "zip", "application/zip", transcriptData, List.of("session"), true,
+            (params, out) -> transcriptRenderer.renderSession(sessionRepository.findById(id(params, "session"))
+                .orElseThrow(() -> new IllegalArgumentException("Session introuvable")), out)));
+        register(new ReportType("releves-groupe", "zip", "application/zip", transcriptData, List.of("groupe"), true,
+            (params, out) -> transcriptRenderer.renderGroupe(groupeRepository.findById(id(params, "groupe"))
+                .orElseThrow(() -> new IllegalArgumentException("Groupe introuvable")), out)));
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface Renderer {
+        void render(Map<String, String> params, OutputStream out) throws IOException;
+    }
+
+    /**
+     * A kind of report: file extension, content type, the entities whose
+     * changes invalidate it, its mandatory parameters, whether only admins
+     * may request it, and how to write it.
+     */
+    public record ReportType(String name, String extension, String mediaType, Class<?>[] dependsOn,
+                             List<String> required, boolean adminOnly, Renderer renderer) {
+    }
+
+    public void register(ReportType type) {
+        types.put(type.name(), type);
+    }
+
+    public Collection<String> typeNames() {
+        return types.keySet();
+    }
+
+    public ReportType type(String name) {
+        return types.get(name);
+    }
+
+    /**
+     * Queues a job. IllegalArgumentException for an unknown type or bad
+     * parameters, RejectedExecutionException when the queue is full.
+     */
+    public ReportJob submit(String typeName, Map<String, String> params, String owner) {
+        ReportType type = typeName == null ? null : types.get(typeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Type de rapport inconnu: " + typeName + " (types: " + types.keySet() + ")");
+        }
+        Map<String, String> normalized = new TreeMap<>();
+        params.forEach((k, v) -> {
+            if (v != null && !v.isBlank()) normalized.put(k, v.trim());
+        });
+        for (String name : type.required()) {
+            if (!normalized.containsKey(name)) {
+                throw new IllegalArgumentException("Parametre requis: " + name);
+            }
+        }
+        // Fail early on an unknown course or a malformed id
+        cours(normalized);
+        filter(normalized);
+
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), type.name(), normalized, owner);
+        jobs.put(job.getId(), job);
+        try {
+            workers.execute(() -> run(job, type));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public ReportJob get(String id) {
+        return jobs.get(id);
+    }
+
+    // Most recent first
+    public List<ReportJob> list(String owner) {
+        List<ReportJob> result = new ArrayList<>();
+        for (ReportJob job : jobs.values()) {
+            if (owner == null || owner.equals(job.getOwner())) result.add(job);
+        }
+        result.sort((a, b) -> b.getCreeLe().compareTo(a.getCreeLe()));
+        return result;
+    }
+
+    public int queued() {
+        return workers.getQueue().size();
+    }
+
+    private void run(ReportJob job, ReportType type) {
+        job.setStatut(ReportJob.Statut.EN_COURS);
+        long start = System.currentTimeMillis();
+        try {
+            // Versions are read before rendering: a write during the render bumps them past this key
+            String key = ReportArtifactStore.key(type.name(), job.getParams().toString(),
+                dataVersions.snapshot(type.dependsOn()));
+            ReportArtifactStore.Artifact artifact = store.getOrCreate(key, type.extension(),
+                out -> type.renderer().render(job.getParams(), out));
+            job.setArtefact(key);
+            job.setFichier(artifact.path());
+            job.setCache(artifact.cached());
+            job.setTaille(Files.size(artifact.path()));
+            job.setStatut(ReportJob.Statut.TERMINE);
+            logger.info("Report job {} ({}) done in {} ms{}", job.getId(), type.name(),
+                System.currentTimeMillis() - start, artifact.cached() ? " (cached)" : "");
+        } catch (Exception e) {
+            logger.warn("Report job {} ({}) failed: {}", job.getId(), type.name(), e.getMessage());
+            job.setErreur(e.getMessage());
+            job.setStatut(ReportJob.Statut.ECHEC);
+        } finally {
+            job.setTermineLe(new Date());
+        }
+    }
+
+    private Cours cours(Map<String, String> params) {
+        String code = params.get("cours");
+        if (code == null) return null;
+        return coursRepository.findById(code)
+            .orElseThrow(() -> new IllegalArgumentException("Cours introuvable: " + code));
+    }
+
+    private static ExportService.Filter filter(Map<String, String> params) {
+        return new ExportService.Filter(params.get("cours"), id(params, "groupe"), id(params, "session"));
+    }
+
+    private static Long id(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) return null;
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parametre " + name + " invalide: " + value);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reports.store.evict-interval-ms:600000}")
+    void forgetOldJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> job.getTermineLe() != null && job.getTermineLe().getTime() < cutoff);
+    }
+}
@@ -0,0 +1,238 @@
+package spring.jpa.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import jakarta.annotation.PreDestroy;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.SessionPedagogique;
+import spring.jpa.repository.NoteRepository;
+
+/**
+ * Transcripts (releves de notes): one PDF per student of a session or groupe,
+ * written as a ZIP stream.
+ *
+ * The grades of the whole scope come from one streamed query ordered by
+ * student; each student's rows are handed to a worker pool that renders the
+ * PDF, and finished PDFs are added to the ZIP in student order. At most a few
+ * PDFs are in flight, so memory stays bounded whatever the number of students.
+ */
+@Service
+public class TranscriptRenderer {
+
+    private final NoteRepository noteRepository;
+    private final GradingEngine gradingEngine;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+
+    public TranscriptRenderer(NoteRepository noteRepository, GradingEngine gradingEngine) {
+        this.noteRepository = noteRepository;
+        this.gradingEngine = gradingEngine;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "transcript-render-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = threads * 2;
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns the number of transcripts written.
+     */
+    @Transactional(readOnly = true)
+    public int renderSession(SessionPedagogique session, OutputStream out) throws IOException {
+        String scope = "Session " + session.getSemestre() + " " + session.getAnneeScolaire();
+        try (Stream<Object[]> rows = noteRepository.streamTranscriptRowsBySession(session.getId())) {
+            return render(scope, rows, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public int renderGroupe(Groupe groupe, OutputStream out) throws IOException {
+        String scope = "Groupe " + groupe.getNom();
+        if (groupe.getSession() != null) {
+            scope += " - " + groupe.getSession().getSemestre() + " " + groupe.getSession().getAnneeScolaire();
+        }
+        try (Stream<Object[]> rows = noteRepository.streamTranscriptRowsByGroupe(groupe.getId())) {
+            return render(scope, rows, out);
+        }
+    }
+
+    private int render(String scope, Stream<Object[]> rows, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // The PDFs are already compressed: do not spend CPU on it twice
+        zip.setLevel(Deflater.BEST_SPEED);
+        Deque<Future<Transcript>> pending = new ArrayDeque<>();
+        int count = 0;
+        try {
+            long currentId = Long.MIN_VALUE;
+            List<Object[]> student = new ArrayList<>();
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                long id = ((Number) row[0]).longValue();
+                if (!student.isEmpty() && id != currentId) {
+                    submit(scope, student, pending, zip);
+                    student = new ArrayList<>();
+                    count++;
+                }
+                currentId = id;
+                student.add(row);
+            }
+            if (!student.isEmpty()) {
+                submit(scope, student, pending, zip);
+                count++;
+            }
+            while (!pending.isEmpty()) {
+                writeNext(pending, zip);
+            }
+            zip.finish();
+            zip.flush();
+            return count;
+        } finally {
+            for (Future<Transcript> f : pending) f.cancel(true);
+        }
+    }
+
+    private void submit(String scope, List<Object[]> rows, Deque<Future<Transcript>> pending, ZipOutputStream zip)
+            throws IOException {
+        pending.addLast(workers.submit(() -> buildTranscript(scope, rows)));
+        while (pending.size() >= maxInFlight) {
+            writeNext(pending, zip);
+        }
+    }
+
+    private void writeNext(Deque<Future<Transcript>> pending, ZipOutputStream zip) throws IOException {
+        Transcript transcript;
+        try {
+            transcript = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Transcript generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Transcript failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        zip.putNextEntry(new ZipEntry(transcript.fileName()));
+        zip.write(transcript.pdf());
+        zip.closeEntry();
+        zip.flush();
+    }
+
+    private Transcript buildTranscript(String scope, List<Object[]> rows) throws DocumentException {
+        Object[] first = rows.get(0);
+        long etudiantId = ((Number) first[0]).longValue();
+        String matricule = text(first[10]);
+        String nom = text(first[11]);
+        String prenom = text(first[12]);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        Document document = new Document();
+        PdfWriter.getInstance(document, buffer);
+        document.open();
+        document.add(new Paragraph("Relevé de notes", new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD)));
+        document.add(new Paragraph(scope));
+        document.add(new Paragraph(nom + " " + prenom + " (" + matricule + ")"));
+        document.add(new Paragraph(" "));
+
+        PdfPTable table = new PdfPTable(new float[] { 3, 1, 1, 1, 1.2f, 1, 1.5f });
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        for (String h : new String[] { "Cours", "Examen", "DS", "Oral", "Moyenne", "Crédits", "Résultat" }) {
+            PdfPCell cell = new PdfPCell(new Phrase(h));
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            table.addCell(cell);
+        }
+
+        // Ungraded courses are listed with '-' but count as 0/0/0 in the general
+        // average, as in the grade reports (GradeStatsService, rankings)
+        GradeMatrix matrix = gradingEngine.load(rows);
+        double[] averages = gradingEngine.rowAverages(matrix);
+        double credits = 0;
+        double validated = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] row = rows.get(r);
+            double rowCredits = gradingEngine.scheme(row)[3];
+            credits += rowCredits;
+            table.addCell(row[13] != null ? row[1] + " - " + row[13] : text(row[1]));
+            if (!Boolean.TRUE.equals(row[9])) {
+                for (int i = 0; i < 4; i++) table.addCell("-");
+                table.addCell(grade(rowCredits));
+                table.addCell("-");
+                continue;
+            }
+            double avg = averages[r];
+            boolean passed = avg >= GradingEngine.PASS_MARK;
+            if (passed) validated += rowCredits;
+            table.addCell(grade(number(row[2])));
+            table.addCell(grade(number(row[3])));
+            table.addCell(grade(number(row[4])));
+            table.addCell(grade(avg));
+            table.addCell(grade(rowCredits));
+            table.addCell(passed ? "Validé" : "Non validé");
+        }
+        document.add(table);
+        document.add(new Paragraph(" "));
+        document.add(new Paragraph("Moyenne générale: " + grade(gradingEngine.creditAverage(matrix))));
+        document.add(new Paragraph("Crédits validés: " + grade(validated) + " / " + grade(credits)));
+        document.close();
+
+        return new Transcript(fileName(etudiantId, matricule, nom, prenom), buffer.toByteArray());
+    }
+
+    // matricule_nom_prenom_id.pdf, ASCII only so every unzip tool keeps the
+    // name; the id keeps two students with the same name apart
+    private static String fileName(long etudiantId, String matricule, String nom, String prenom) {
+        String raw = matricule + "_" + nom + "_" + prenom + "_" + etudiantId;
+        String ascii = Normalizer.normalize(raw, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return ascii.replaceAll("[^A-Za-z0-9_-]+", "-").toLowerCase(Locale.ROOT) + ".pdf";
+    }
+
+    private static String grade(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static double number(Object value) {
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    private static String text(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private record Transcript(String fileName, byte[] pdf) {
+    }
+}
@@ -0,0 +1,89 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class AdmissionQueueTests {
+
+    // Disabled: no workers, batches are taken by hand
+    private static AdmissionQueue queue(int capacity, int batchSize) {
+        return new AdmissionQueue(null, false, capacity, 1, batchSize, 5, 30);
+    }
+
+    private static AdmissionQueue.Ticket submit(AdmissionQueue queue, long etudiantId, String cle) {
+        return queue.submit(etudiantId, "e" + etudiantId, "place", cle, () -> new AdmissionQueue.Resultat(200, null));
+    }
+
+    @Test
+    void studentsAreServedRoundRobin() throws Exception {
+        AdmissionQueue queue = queue(100, 2);
+        AdmissionQueue.Ticket a1 = submit(queue, 1, "groupe:1");
+        AdmissionQueue.Ticket a2 = submit(queue, 1, "groupe:2");
+        AdmissionQueue.Ticket a3 = submit(queue, 1, "groupe:3");
+        AdmissionQueue.Ticket b1 = submit(queue, 2, "groupe:1");
+        AdmissionQueue.Ticket c1 = submit(queue, 3, "groupe:1");
+
+        // One ticket per student and round: a1 b1 c1 a2 a3
+        assertEquals(1, queue.position(a1));
+        assertEquals(2, queue.position(b1));
+        assertEquals(3, queue.position(c1));
+        assertEquals(4, queue.position(a2));
+        assertEquals(5, queue.position(a3));
+
+        List<AdmissionQueue.Ticket> first = queue.take();
+        assertEquals(List.of(a1, b1), first);
+        assertNull(queue.position(a1));
+        assertEquals(AdmissionQueue.Statut.EN_COURS, a1.getStatut());
+        queue.done(first);
+
+        // Student 1 went to the back of the rotation after being served
+        List<AdmissionQueue.Ticket> second = queue.take();
+        assertEquals(List.of(c1, a2), second);
+        queue.done(second);
+        assertEquals(List.of(a3), queue.take());
+    }
+
+    @Test
+    void aStudentRunsOneTicketAtATime() throws Exception {
+        AdmissionQueue queue = queue(100, 10);
+        AdmissionQueue.Ticket a1 = submit(queue, 1, "groupe:1");
+        AdmissionQueue.Ticket a2 = submit(queue, 1, "groupe:1");
+        AdmissionQueue.Ticket b1 = submit(queue, 2, "groupe:1");
+
+        List<AdmissionQueue.Ticket> first = queue.take();
+        assertEquals(List.of(a1, b1), first);
+        // a2 waits for a1's batch, whatever the room left in this one
+        assertEquals(1, queue.position(a2));
+        queue.done(first);
+        assertEquals(List.of(a2), queue.take());
+    }
+
+    @Test
+    void aFullQueueRefuses() throws Exception {
+        AdmissionQueue queue = queue(2, 10);
+        assertNotNull(submit(queue, 1, "groupe:1"));
+        assertNotNull(submit(queue, 2, "groupe:1"));
+        assertNull(submit(queue, 3, "groupe:1"));
+        assertEquals(1L, queue.stats().get("refuses"));
+
+        // Taking tickets makes room again
+        queue.take();
+        assertNotNull(submit(queue, 3, "groupe:1"));
+    }
+
+    @Test
+    void aBatchRunsOneKeyAfterAnother() {
+        AdmissionQueue queue = queue(100, 10);
+        AdmissionQueue.Ticket a = submit(queue, 1, "groupe:2");
+        AdmissionQueue.Ticket b = submit(queue, 2, "groupe:1");
+        AdmissionQueue.Ticket c = submit(queue, 3, "groupe:2");
+
+        Map<String, List<AdmissionQueue.Ticket>> byKey = AdmissionQueue.byKey(List.of(a, b, c));
+        assertEquals(List.of("groupe:1", "groupe:2"), List.copyOf(byKey.keySet()));
+        assertEquals(List.of(a, c), byKey.get("groupe:2"));
+    }
+}
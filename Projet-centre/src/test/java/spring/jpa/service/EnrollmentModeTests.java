@@ -0,0 +1,71 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import spring.jpa.dto.InscriptionRow;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+
+// Own database: this context recreates the schema and the view in derived mode
+@SpringBootTest(properties = {
+    "app.inscriptions.derived.enabled=true",
+    "spring.datasource.url=jdbc:h2:mem:centre-derive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=20000" })
+@ActiveProfiles("test")
+class EnrollmentModeTests {
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @Transactional
+    void aPairCoveredByTwoGroupesIsOneDerivedEnrollment() {
+        Cours cours = coursRepository.save(new Cours("DER1", "Derive", "d", null));
+        Etudiant e = etudiantRepository.save(new Etudiant("D-1", "Nom", "Prenom", "d1@centre.tn", new Date()));
+        for (String nom : List.of("Derive A", "Derive B")) {
+            Groupe g = new Groupe(nom);
+            g.getCours().add(cours);
+            g.getEtudiants().add(e);
+            groupeRepository.save(g);
+        }
+        groupeRepository.flush();
+
+        List<InscriptionRow> rows = inscriptionRepository.findByCours(cours);
+        assertEquals(1, rows.size());
+        assertNull(rows.get(0).getId());
+        assertEquals(e.getId(), rows.get(0).getEtudiant().getId());
+        assertEquals(List.of(e.getId()), inscriptionRepository.findEtudiantIdsByCours("DER1"));
+        try (Stream<Object[]> export = inscriptionRepository.streamExportRows("DER1", null, null)) {
+            assertEquals(1, export.count());
+        }
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "select count(*) from inscription_effective where cours_code = 'DER1'", Integer.class));
+    }
+}
@@ -0,0 +1,98 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import spring.jpa.dto.TimeseriesPoint;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.InscriptionRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EnrollmentTimeseriesServiceTests {
+
+    @Autowired
+    private EnrollmentTimeseriesService service;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Test
+    void concurrentFirstDeltasOfADayAreAllCounted() throws Exception {
+        coursRepository.save(new Cours("SERIE1", "Serie", "d", null));
+        LocalDate jour = LocalDate.of(2020, 3, 2);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                long etudiantId = 1000 + i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    transactionTemplate.executeWithoutResult(tx -> service.applyDeltas(
+                        List.of(new EnrollmentTimeseriesService.Delta(jour, etudiantId, "SERIE1", 1))));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(16, day(jour, "SERIE1").getInscriptions());
+    }
+
+    @Test
+    void rebuildKeepsTheNetEqualToTheEnrollments() {
+        Cours cours = coursRepository.save(new Cours("SERIE2", "Serie", "d", null));
+        Etudiant reste = etudiantRepository.save(new Etudiant("T-1", "Nom", "Prenom", "t1@centre.tn", new Date()));
+        Inscription inscription = inscriptionRepository.save(new Inscription(new Date(), reste, cours));
+        LocalDate jour = EnrollmentTimeseriesService.jour(inscription.getDateInscription());
+        // Recorded history: two enrollments that day, one withdrawn since
+        transactionTemplate.executeWithoutResult(tx -> service.applyDeltas(List.of(
+            new EnrollmentTimeseriesService.Delta(jour, reste.getId(), "SERIE2", 1),
+            new EnrollmentTimeseriesService.Delta(jour, 999_999L, "SERIE2", 1),
+            new EnrollmentTimeseriesService.Delta(jour, 999_999L, "SERIE2", -1))));
+        assertEquals(1, day(jour, "SERIE2").getNet());
+
+        service.rebuildAll();
+        TimeseriesPoint point = day(jour, "SERIE2");
+        assertEquals(1, point.getInscriptions());
+        assertEquals(0, point.getDesinscriptions());
+        assertEquals(1, point.getNet());
+    }
+
+    private TimeseriesPoint day(LocalDate jour, String cours) {
+        List<TimeseriesPoint> points = service.timeseries(jour, jour, EnrollmentTimeseriesService.Granularity.DAY,
+            EnrollmentTimeseriesService.Split.TOTAL, cours, null);
+        assertEquals(1, points.size());
+        return points.get(0);
+    }
+}
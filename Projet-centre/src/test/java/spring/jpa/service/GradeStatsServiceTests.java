@@ -0,0 +1,206 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.controller.NoteRESTController;
+import spring.jpa.dto.CoursInscriptionCount;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.model.NoteTotals;
+import spring.jpa.model.User;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.CoursStatsRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.EtudiantStatsRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+import spring.jpa.repository.UserRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GradeStatsServiceTests {
+
+    @Autowired
+    private NoteRESTController noteController;
+
+    @Autowired
+    private GradeStatsService gradeStatsService;
+
+    @Autowired
+    private GradingEngine gradingEngine;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CoursStatsRepository coursStatsRepository;
+
+    @Autowired
+    private EtudiantStatsRepository etudiantStatsRepository;
+
+    @Test
+    void concurrentWritesKeepTheSummariesExact() throws Exception {
+        Principal admin = admin("stats-admin");
+        Cours cours = coursRepository.save(new Cours("STAT1", "Statistiques", "d", null));
+        List<Etudiant> etudiants = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Etudiant e = etudiantRepository.save(new Etudiant("S-" + i, "Nom" + i, "Prenom" + i, "s" + i + "@centre.tn", new Date()));
+            inscriptionRepository.save(new Inscription(new Date(), e, cours));
+            etudiants.add(e);
+        }
+
+        // First grades of a course without summary rows yet: the rows are created once
+        List<Callable<Object>> premieres = new ArrayList<>();
+        for (Etudiant e : etudiants) {
+            premieres.add(() -> noteController.saveNote(note(e, cours, 10), admin));
+        }
+        concurrently(premieres);
+        assertEquals(20, coursStatsRepository.findById("STAT1").orElseThrow().getTotals().getNotes());
+
+        // Concurrent edits of one note: each withdraws the value the previous one wrote
+        Etudiant cible = etudiants.get(0);
+        Long noteId = ((Note) noteController.saveNote(note(cible, cours, 10), admin).getBody()).getId();
+        List<Callable<Object>> edits = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            double valeur = i % 20;
+            edits.add(() -> noteController.updateNote(noteId, note(null, null, valeur), admin));
+        }
+        concurrently(edits);
+
+        NoteTotals totals = coursStatsRepository.findById("STAT1").orElseThrow().getTotals();
+        Note finale = (Note) noteController.getNoteById(noteId, admin).getBody();
+        assertEquals(20, totals.getNotes());
+        assertEquals(19 * 10 + finale.getNoteExamen(), totals.getSumExamen(), 1e-9);
+        assertEquals(finale.getNoteExamen(),
+            etudiantStatsRepository.findById(cible.getId()).orElseThrow().getTotals().getSumExamen(), 1e-9);
+    }
+
+    @Test
+    void firstStartBuildsMissingSummaries() {
+        Cours cours = coursRepository.save(new Cours("STAT2", "Premier demarrage", "d", null));
+        Etudiant e = etudiantRepository.save(new Etudiant("S-START", "Nom", "Prenom", "sstart@centre.tn", new Date()));
+        inscriptionRepository.save(new Inscription(new Date(), e, cours));
+        coursStatsRepository.deleteAllInBatch();
+        etudiantStatsRepository.deleteAllInBatch();
+
+        gradeStatsService.rebuildIfEmpty();
+
+        assertEquals(1, coursStatsRepository.findById("STAT2").orElseThrow().getTotals().getInscrits());
+        assertTrue(etudiantStatsRepository.findById(e.getId()).isPresent());
+    }
+
+    @Test
+    void sqlAggregatesMatchTheInMemoryReports() {
+        // Grades per course and student; -1 leaves the enrollment ungraded
+        double[][] grades = { { 12, 8, 15, 10, 9.5 }, { 14, -1, 6 }, { 11 } };
+        List<Cours> courses = new ArrayList<>();
+        for (int c = 0; c < grades.length; c++) {
+            Cours cours = coursRepository.save(new Cours("AGG" + c, "Agregat " + c, "d", null));
+            courses.add(cours);
+            for (int i = 0; i < grades[c].length; i++) {
+                Etudiant e = etudiantRepository.save(
+                    new Etudiant("A-" + c + "-" + i, "Nom", "Prenom", "a" + c + i + "@centre.tn", new Date()));
+                inscriptionRepository.save(new Inscription(new Date(), e, cours));
+                if (grades[c][i] < 0) continue;
+                Note n = new Note(grades[c][i], grades[c][i] + 1, grades[c][i] - 1, e, cours);
+                n.setGraded(true);
+                noteRepository.save(n);
+            }
+        }
+        gradeStatsService.rebuildAll();
+
+        // Former /reports/cours/top: groupingBy over every inscription, most followed first
+        Map<String, Long> counts = inscriptionRepository.findAll().stream()
+            .collect(Collectors.groupingBy(i -> i.getCours().getCode(), Collectors.counting()));
+        List<String> expected = counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(10).map(Map.Entry::getKey).toList();
+        List<CoursInscriptionCount> top = inscriptionRepository.findTopCourses(PageRequest.of(0, 10));
+        assertEquals(expected, top.stream().map(CoursInscriptionCount::getCode).toList());
+        for (CoursInscriptionCount row : top) {
+            assertEquals(counts.get(row.getCode()).longValue(), row.getInscriptions());
+            assertEquals(coursRepository.findById(row.getCode()).orElseThrow().getTitre(), row.getTitre());
+        }
+
+        // Former taux-reussite: passing notes counted in memory, an ungraded enrollment failing
+        for (Cours cours : courses) {
+            long passing = noteRepository.findByCours(cours).stream()
+                .filter(n -> gradingEngine.noteAverage(n) >= GradingEngine.PASS_MARK).count();
+            long inscrits = counts.get(cours.getCode());
+            NoteTotals totals = gradeStatsService.coursStats(cours.getCode()).getTotals();
+            assertEquals(inscrits, totals.getInscrits());
+            assertEquals(passing, totals.getPassMoyenne());
+        }
+        // With every enrollment graded this is the old passing notes / notes
+        List<Note> notes = noteRepository.findByCours(courses.get(0));
+        long passing = notes.stream().filter(n -> gradingEngine.noteAverage(n) >= GradingEngine.PASS_MARK).count();
+        NoteTotals totals = gradeStatsService.coursStats("AGG0").getTotals();
+        assertEquals(passing * 100.0 / notes.size(), totals.getPassMoyenne() * 100.0 / totals.getInscrits(), 1e-9);
+    }
+
+    private Principal admin(String username) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("x");
+        u.setRole("ADMIN");
+        userRepository.save(u);
+        return () -> username;
+    }
+
+    private static Note note(Etudiant e, Cours c, double valeur) {
+        Note n = new Note(valeur, valeur, valeur, e, c);
+        return n;
+    }
+
+    private static <T> List<T> concurrently(List<Callable<T>> operations) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> operation : operations) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return operation.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) results.add(f.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
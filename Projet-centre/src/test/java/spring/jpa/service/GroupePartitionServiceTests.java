@@ -0,0 +1,152 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.dto.PartitionRequest;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.SessionPedagogique;
+import spring.jpa.model.Specialite;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.SessionPedagogiqueRepository;
+import spring.jpa.repository.SpecialiteRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GroupePartitionServiceTests {
+
+    @Autowired
+    private GroupePartitionService service;
+
+    @Autowired
+    private SessionPedagogiqueRepository sessionRepository;
+
+    @Autowired
+    private SpecialiteRepository specialiteRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Test
+    void balancedGroupesDifferByOneAndHaveCloseAverages() {
+        Random random = new Random(42);
+        List<GroupePartitionService.Candidat> candidats = new ArrayList<>();
+        for (long i = 0; i < 103; i++) {
+            Double moyenne = i % 10 == 0 ? null : 4 + random.nextDouble() * 14;
+            candidats.add(new GroupePartitionService.Candidat(i, "Nom" + i, "Prenom", moyenne));
+        }
+        List<GroupePartitionService.Lot> lots = lots(4);
+        GroupePartitionService.equilibrer(candidats, lots);
+
+        int min = lots.stream().mapToInt(l -> l.getMembres().size()).min().orElseThrow();
+        int max = lots.stream().mapToInt(l -> l.getMembres().size()).max().orElseThrow();
+        assertTrue(max - min <= 1, "sizes " + min + ".." + max);
+        assertEquals(103, lots.stream().mapToInt(l -> l.getMembres().size()).sum());
+
+        double low = lots.stream().mapToDouble(GroupePartitionService.Lot::getMoyenne).min().orElseThrow();
+        double high = lots.stream().mapToDouble(GroupePartitionService.Lot::getMoyenne).max().orElseThrow();
+        assertTrue(high - low < 0.5, "averages spread " + (high - low));
+    }
+
+    @Test
+    void groupeCountFollowsNombreOrTaille() {
+        assertEquals(3, GroupePartitionService.nombreDeGroupes(25, 3, null));
+        assertEquals(3, GroupePartitionService.nombreDeGroupes(25, null, 10));
+        assertEquals(5, GroupePartitionService.nombreDeGroupes(25, 5, 5));
+    }
+
+    @Test
+    void impossibleRequestsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(25, null, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(25, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(25, null, -1));
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(0, 2, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(3, 4, null));
+        // 4 groupes of 5 cannot hold 25 students
+        assertThrows(IllegalArgumentException.class, () -> GroupePartitionService.nombreDeGroupes(25, 4, 5));
+    }
+
+    @Test
+    void concurrentPartitionsPlaceEachStudentOnce() throws Exception {
+        SessionPedagogique session = sessionRepository.save(new SessionPedagogique("S1", "2030-2031"));
+        Specialite specialite = specialiteRepository.save(new Specialite("Partition", "d"));
+        List<Etudiant> etudiants = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Etudiant e = new Etudiant("P-" + i, "Nom" + i, "Prenom" + i, "p" + i + "@centre.tn", new Date());
+            e.setSpecialite(specialite);
+            etudiants.add(e);
+        }
+        etudiantRepository.saveAll(etudiants);
+
+        List<Callable<List<GroupePartitionService.Lot>>> partitions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String prefixe = "Lot" + i;
+            partitions.add(() -> {
+                PartitionRequest request = new PartitionRequest();
+                request.setNombre(2);
+                request.setPrefixe(prefixe);
+                try {
+                    return service.partitionner(session, specialite, request);
+                } catch (IllegalArgumentException e) {
+                    // Nobody left for a later one
+                    return List.of();
+                }
+            });
+        }
+
+        Set<Long> places = new HashSet<>();
+        int total = 0;
+        for (List<GroupePartitionService.Lot> lots : concurrently(partitions)) {
+            for (GroupePartitionService.Lot lot : lots) {
+                for (GroupePartitionService.Candidat c : lot.getMembres()) {
+                    places.add(c.id());
+                    total++;
+                }
+            }
+        }
+        assertEquals(40, total);
+        assertEquals(40, places.size());
+    }
+
+    private static List<GroupePartitionService.Lot> lots(int n) {
+        List<GroupePartitionService.Lot> lots = new ArrayList<>();
+        for (int i = 1; i <= n; i++) lots.add(new GroupePartitionService.Lot("G" + i));
+        return lots;
+    }
+
+    private static <T> List<T> concurrently(List<Callable<T>> operations) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(operations.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> operation : operations) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return operation.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) results.add(f.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
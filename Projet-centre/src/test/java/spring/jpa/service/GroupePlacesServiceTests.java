@@ -0,0 +1,163 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.GroupeAttente;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeAttenteRepository;
+import spring.jpa.repository.GroupeRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GroupePlacesServiceTests {
+
+    @Autowired
+    private GroupePlacesService places;
+
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Autowired
+    private GroupeAttenteRepository attenteRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Test
+    void concurrentClaimsNeverOverbookAndPromoteInOrder() throws Exception {
+        Groupe groupe = groupe("Ruee", 50);
+        List<Long> etudiants = etudiants("R", 1000);
+
+        Map<GroupePlacesService.Statut, Integer> statuts = new EnumMap<>(GroupePlacesService.Statut.class);
+        for (GroupePlacesService.Demande d : concurrently(etudiants.stream()
+                .<Callable<GroupePlacesService.Demande>>map(id -> () -> places.demander(groupe.getId(), id))
+                .toList())) {
+            statuts.merge(d.statut(), 1, Integer::sum);
+        }
+        assertEquals(50, statuts.get(GroupePlacesService.Statut.INSCRIT));
+        assertEquals(950, statuts.get(GroupePlacesService.Statut.EN_ATTENTE));
+        assertSeats(groupe.getId(), 50);
+        assertEquals(950, attenteRepository.countByGroupeId(groupe.getId()));
+
+        // Members leave while newcomers ask: the seats go to the head of the queue only
+        List<Long> file = queue(groupe.getId());
+        List<Long> partants = groupeRepository.findEtudiantIds(groupe.getId()).subList(0, 20);
+        List<Long> nouveaux = etudiants("N", 20);
+        List<Callable<Object>> operations = new ArrayList<>();
+        partants.forEach(id -> operations.add(() -> places.quitter(groupe.getId(), id)));
+        nouveaux.forEach(id -> operations.add(() -> places.demander(groupe.getId(), id)));
+        concurrently(operations);
+
+        assertSeats(groupe.getId(), 50);
+        List<Long> membres = groupeRepository.findEtudiantIds(groupe.getId());
+        assertTrue(membres.containsAll(file.subList(0, 20)), "the first 20 in line are promoted");
+        nouveaux.forEach(id -> assertFalse(membres.contains(id), "no newcomer jumps the queue"));
+        List<Long> reste = queue(groupe.getId());
+        assertEquals(file.subList(20, file.size()), reste.subList(0, file.size() - 20));
+        assertTrue(reste.subList(file.size() - 20, reste.size()).containsAll(nouveaux));
+    }
+
+    @Test
+    void promotionInsideARequestReturnsItsSyncJob() {
+        Groupe groupe = groupe("Agrandi", 1);
+        List<Long> etudiants = etudiants("A", 3);
+        assertEquals(GroupePlacesService.Statut.INSCRIT, places.demander(groupe.getId(), etudiants.get(0)).statut());
+        assertEquals(GroupePlacesService.Statut.EN_ATTENTE, places.demander(groupe.getId(), etudiants.get(1)).statut());
+
+        // Capacity raised behind the service's back: the next request promotes the head, then itself
+        Groupe g = groupeRepository.findById(groupe.getId()).orElseThrow();
+        g.setCapacite(3);
+        groupeRepository.save(g);
+        GroupePlacesService.Demande demande = places.demander(groupe.getId(), etudiants.get(2));
+
+        assertEquals(GroupePlacesService.Statut.INSCRIT, demande.statut());
+        assertNotNull(demande.job());
+        assertSeats(groupe.getId(), 3);
+        assertEquals(0, attenteRepository.countByGroupeId(groupe.getId()));
+    }
+
+    @Test
+    void theSweepPromotesStudentsLeftInFrontOfAFreeSeat() {
+        Groupe groupe = groupe("Oublie", 1);
+        List<Long> etudiants = etudiants("O", 2);
+        places.demander(groupe.getId(), etudiants.get(0));
+        places.demander(groupe.getId(), etudiants.get(1));
+
+        Groupe g = groupeRepository.findById(groupe.getId()).orElseThrow();
+        g.setCapacite(2);
+        groupeRepository.save(g);
+        places.promoteWaiting();
+
+        assertSeats(groupe.getId(), 2);
+        assertEquals(0, attenteRepository.countByGroupeId(groupe.getId()));
+    }
+
+    private void assertSeats(Long groupeId, int capacite) {
+        int effectif = ((Number) groupeRepository.findPlaces(groupeId).get(0)[1]).intValue();
+        assertTrue(effectif <= capacite, "effectif " + effectif + " over capacite " + capacite);
+        assertEquals(effectif, groupeRepository.findEtudiantIds(groupeId).size());
+        assertEquals(capacite, effectif);
+    }
+
+    private List<Long> queue(Long groupeId) {
+        return attenteRepository.findAll().stream()
+            .filter(a -> a.getGroupeId().equals(groupeId))
+            .sorted(Comparator.comparing(GroupeAttente::getId))
+            .map(GroupeAttente::getEtudiantId)
+            .toList();
+    }
+
+    private Groupe groupe(String nom, int capacite) {
+        Groupe g = new Groupe(nom);
+        g.setCapacite(capacite);
+        return groupeRepository.save(g);
+    }
+
+    private List<Long> etudiants(String prefixe, int n) {
+        List<Etudiant> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(new Etudiant(prefixe + "-" + i, "Nom" + i, "Prenom" + i, prefixe + i + "@centre.tn", new Date()));
+        }
+        return etudiantRepository.saveAll(list).stream().map(Etudiant::getId).toList();
+    }
+
+    // Runs the operations together from 64 threads; fails on the first error
+    private static <T> List<T> concurrently(List<Callable<T>> operations) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> operation : operations) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return operation.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) results.add(f.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Inscription;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.CoursStatsRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.InscriptionRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LegacyNotesMigrationTests {
+
+    @Autowired
+    private LegacyNotesMigration migration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private CoursStatsRepository coursStatsRepository;
+
+    @Test
+    void legacyRowsAreGradedAndPlaceholdersDropped() {
+        Cours cours = coursRepository.save(new Cours("LEG1", "Legacy", "d", null));
+        Etudiant note = etudiantRepository.save(new Etudiant("L-1", "Nom", "Prenom", "l1@centre.tn", new Date()));
+        Etudiant vide = etudiantRepository.save(new Etudiant("L-2", "Nom", "Prenom", "l2@centre.tn", new Date()));
+        inscriptionRepository.save(new Inscription(new Date(), note, cours));
+        inscriptionRepository.save(new Inscription(new Date(), vide, cours));
+        // As the schema update leaves them: a real grade and an enrollment placeholder, both at graded = 0
+        legacy(900001L, 14, 12, 10, note, cours);
+        legacy(900002L, 0, 0, 0, vide, cours);
+
+        migration.migrate();
+
+        assertEquals(1, count("select count(*) from note where cours_code = 'LEG1'"));
+        assertEquals(1, count("select count(*) from note where id = 900001 and graded = true"));
+        assertEquals(1, coursStatsRepository.findById("LEG1").orElseThrow().getTotals().getNotes());
+
+        // Nothing left to do the second time
+        migration.migrate();
+        assertEquals(1, count("select count(*) from note where cours_code = 'LEG1'"));
+    }
+
+    private void legacy(long id, double examen, double ds, double oral, Etudiant e, Cours c) {
+        jdbcTemplate.update("insert into note (id, valeur, note_examen, note_ds, note_oral, graded, etudiant_id, cours_code) "
+            + "values (?, 0, ?, ?, ?, false, ?, ?)", id, examen, ds, oral, e.getId(), c.getCode());
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
@@ -0,0 +1,214 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import spring.jpa.dto.NoteImportResult;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Note;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+
+// Parser and batch handling over mocked repositories; fixtures live in src/test/resources/import
+class NoteImportServiceTests {
+
+    private final Cours cours = new Cours("IMP1", "Import", "d", null);
+    private final Map<Long, Etudiant> etudiants = new HashMap<>();
+    private final Set<Long> enrolled = Set.of(1L, 2L, 3L);
+    private final List<Note> existing = new ArrayList<>();
+
+    private EtudiantRepository etudiantRepository;
+    private InscriptionRepository inscriptionRepository;
+    private NoteRepository noteRepository;
+    private NoteImportService service;
+
+    @BeforeEach
+    void setUp() {
+        // M4 exists but is not enrolled in the course
+        for (long id = 1; id <= 4; id++) {
+            Etudiant e = new Etudiant("M" + id, "Nom" + id, "Prenom", "m" + id + "@centre.tn", new Date());
+            e.setId(id);
+            etudiants.put(id, e);
+        }
+        etudiantRepository = mock(EtudiantRepository.class);
+        inscriptionRepository = mock(InscriptionRepository.class);
+        noteRepository = mock(NoteRepository.class);
+        when(etudiantRepository.findByMatriculeIn(any())).thenAnswer(inv -> {
+            Collection<String> matricules = inv.getArgument(0);
+            return etudiants.values().stream().filter(e -> matricules.contains(e.getMatricule())).toList();
+        });
+        when(etudiantRepository.findByEmailIn(any())).thenAnswer(inv -> {
+            Collection<String> emails = inv.getArgument(0);
+            return etudiants.values().stream()
+                .filter(e -> emails.stream().anyMatch(m -> m.equalsIgnoreCase(e.getEmail()))).toList();
+        });
+        when(inscriptionRepository.findEnrolledEtudiantIds(any(), any())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(1);
+            return ids.stream().filter(enrolled::contains).toList();
+        });
+        when(noteRepository.lockByCoursAndEtudiantIds(any(), any())).thenAnswer(inv -> List.copyOf(existing));
+
+        GradeStatsService gradeStatsService = mock(GradeStatsService.class);
+        when(gradeStatsService.changes()).thenReturn(mock(GradeStatsService.Changes.class, RETURNS_SELF));
+        service = new NoteImportService(etudiantRepository, inscriptionRepository, noteRepository,
+            mock(NoteWriteBuffer.class), gradeStatsService, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void semicolonFileWithBomAndQuotedFields() throws Exception {
+        Note note = new Note(5, 6, 7, etudiants.get(1L), cours);
+        note.setId(10L);
+        existing.add(note);
+
+        NoteImportResult result = service.importGrades(cours, fixture("semicolon-bom.csv"));
+
+        // The quoted name holds a delimiter and a line break without shifting the grade columns
+        assertEquals(2, result.getRowsRead());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(0, result.getRejected());
+
+        Map<Long, Note> saved = saved();
+        assertEquals(12.5, saved.get(1L).getNoteExamen(), 1e-9);
+        assertEquals(14, saved.get(1L).getNoteDs(), 1e-9);
+        // A blank cell keeps the current value
+        assertEquals(7, saved.get(1L).getNoteOral(), 1e-9);
+        assertEquals(15, saved.get(2L).getNoteExamen(), 1e-9);
+        assertEquals(8, saved.get(2L).getNoteOral(), 1e-9);
+    }
+
+    @Test
+    void commaFileMatchesStudentsByEmail() throws Exception {
+        NoteImportResult result = service.importGrades(cours, fixture("comma.csv"));
+
+        assertEquals(2, result.getRowsRead());
+        assertEquals(2, result.getCreated());
+        Map<Long, Note> saved = saved();
+        assertEquals(13.5, saved.get(1L).getNoteDs(), 1e-9);
+        assertEquals(9, saved.get(3L).getNoteExamen(), 1e-9);
+    }
+
+    @Test
+    void tabFileIsDetected() throws Exception {
+        NoteImportResult result = service.importGrades(cours, fixture("tab.csv"));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(12, saved().get(1L).getNoteOral(), 1e-9);
+    }
+
+    @Test
+    void invalidRowsAreReportedOneByOne() throws Exception {
+        NoteImportResult result = service.importGrades(cours, fixture("errors.csv"));
+
+        assertEquals(6, result.getRowsRead());
+        assertEquals(1, result.getCreated());
+        assertEquals(5, result.getRejected());
+        Map<Integer, String> errors = new HashMap<>();
+        for (NoteImportResult.RowError e : result.getErrors()) errors.put(e.getRow(), e.getMessage());
+        assertEquals("Note invalide: abc", errors.get(2));
+        assertEquals("Note hors bornes (0-20): 21", errors.get(3));
+        assertEquals("Matricule ou email manquant.", errors.get(4));
+        assertEquals("Etudiant introuvable.", errors.get(5));
+        assertEquals("Etudiant non inscrit a ce cours.", errors.get(6));
+        assertEquals(Set.of(3L), saved().keySet());
+    }
+
+    @Test
+    void xlsxFileIsReadFromTheFirstSheet() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Notes");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Matricule");
+            header.createCell(1).setCellValue("Examen");
+            header.createCell(2).setCellValue("Oral");
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue("M1");
+            first.createCell(1).setCellValue(16.25);
+            first.createCell(2).setCellValue(11);
+            // Missing cell B3 and an empty row 4 before the last student
+            Row second = sheet.createRow(2);
+            second.createCell(0).setCellValue("M2");
+            second.createCell(2).setCellValue(9);
+            Row third = sheet.createRow(4);
+            third.createCell(0).setCellValue("M3");
+            third.createCell(1).setCellValue("10,5");
+            workbook.write(out);
+        }
+
+        NoteImportResult result = service.importGrades(cours, new MockMultipartFile("file", "notes.xlsx", null, out.toByteArray()));
+
+        assertEquals(3, result.getRowsRead());
+        assertEquals(3, result.getCreated());
+        Map<Long, Note> saved = saved();
+        assertEquals(16.25, saved.get(1L).getNoteExamen(), 1e-9);
+        assertEquals(0, saved.get(2L).getNoteExamen(), 1e-9);
+        assertEquals(9, saved.get(2L).getNoteOral(), 1e-9);
+        assertEquals(10.5, saved.get(3L).getNoteExamen(), 1e-9);
+    }
+
+    @Test
+    void anUnreadableXlsxGetsAFixedMessage() {
+        MockMultipartFile file = new MockMultipartFile("file", "notes.xlsx", null, "pas un zip".getBytes());
+        IOException e = assertThrows(IOException.class, () -> service.importGrades(cours, file));
+        assertEquals("Fichier XLSX illisible.", e.getMessage());
+    }
+
+    @Test
+    void aFailedBatchRejectsItsRowsWithoutLeakingTheCause() throws Exception {
+        when(noteRepository.saveAll(any())).thenThrow(
+            new DataIntegrityViolationException("Duplicate entry '1-IMP1' for key 'note.UK_note_etudiant_cours'"));
+
+        NoteImportResult result = service.importGrades(cours, fixture("semicolon-bom.csv"));
+
+        // The whole batch is rolled back: nothing counted as written, every row rejected
+        assertEquals(0, result.getCreated());
+        assertEquals(0, result.getUpdated());
+        assertEquals(2, result.getRejected());
+        for (NoteImportResult.RowError e : result.getErrors()) {
+            assertEquals(NoteImportService.BATCH_FAILED, e.getMessage());
+        }
+    }
+
+    private static MockMultipartFile fixture(String name) throws IOException {
+        try (InputStream in = NoteImportServiceTests.class.getResourceAsStream("/import/" + name)) {
+            return new MockMultipartFile("file", name, "text/csv", in.readAllBytes());
+        }
+    }
+
+    // Notes passed to saveAll, by student id
+    @SuppressWarnings("unchecked")
+    private Map<Long, Note> saved() {
+        ArgumentCaptor<Iterable<Note>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(noteRepository, atLeastOnce()).saveAll(captor.capture());
+        Map<Long, Note> notes = new HashMap<>();
+        for (Iterable<Note> batch : captor.getAllValues()) {
+            for (Note n : batch) notes.put(n.getEtudiant().getId(), n);
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,84 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Note;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.NoteRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NoteWriteBufferTests {
+
+    @Autowired
+    private NoteWriteBuffer buffer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Test
+    void aDirectWriteIsNotOverwrittenByAnOlderBufferedEdit() throws Exception {
+        Cours cours = coursRepository.save(new Cours("WB1", "Tampon", "d", null));
+        Etudiant e = etudiantRepository.save(new Etudiant("W-1", "Nom", "Prenom", "w1@centre.tn", new Date()));
+        Note note = new Note(10, 10, 10, e, cours);
+        note.setGraded(true);
+        Long id = noteRepository.save(note).getId();
+        buffer.submit(id, 5, 5, 5);
+
+        // The flush takes its snapshot, then waits for the row lock held by a direct write
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> direct = pool.submit(() -> transactionTemplate.executeWithoutResult(tx -> {
+                Note n = noteRepository.lockById(id).orElseThrow();
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                buffer.discard(id);
+                n.setNoteExamen(18);
+                noteRepository.save(n);
+            }));
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            Thread flush = new Thread(buffer::flush);
+            flush.start();
+            Thread.sleep(500);
+            release.countDown();
+            direct.get();
+            flush.join();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(18, noteRepository.findById(id).orElseThrow().getNoteExamen(), 1e-9);
+        assertEquals(0, buffer.pendingCount());
+    }
+}
@@ -0,0 +1,116 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.dto.RankEntry;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+import spring.jpa.service.GradingEngine.StudentAverages;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RankingServiceTests {
+
+    @Autowired
+    private RankingService ranking;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Test
+    void percentileFollowsPercentRank() {
+        StudentAverages averages = new StudentAverages(new long[] { 1, 2, 3, 4 }, new double[] { 12, 15, 12, 8 });
+        List<RankEntry> ranked = ranking.ranked(averages);
+
+        assertEquals(List.of(2L, 1L, 3L, 4L), ranked.stream().map(RankEntry::getEtudiantId).toList());
+        assertEquals(List.of(1, 2, 2, 4), ranked.stream().map(RankEntry::getRang).toList());
+        assertEquals(100.0, ranked.get(0).getPercentile(), 1e-9);
+        assertEquals(100.0 / 3, ranked.get(1).getPercentile(), 1e-9);
+        assertEquals(0.0, ranked.get(3).getPercentile(), 1e-9);
+    }
+
+    @Test
+    void databaseRanksMatchTheInMemoryRanking() {
+        Cours a = coursRepository.save(new Cours("RANG1", "Rang A", "d", null));
+        Cours b = coursRepository.save(new Cours("RANG2", "Rang B", "d", null));
+        Groupe g = new Groupe("Rang");
+        g.getCours().addAll(List.of(a, b));
+        int[][] grades = { { 12, 14 }, { 15, 9 }, { 12, 14 }, { 8, 8 }, { 18, 3 }, { -1, 11 } };
+        for (int i = 0; i < grades.length; i++) {
+            Etudiant e = etudiantRepository.save(new Etudiant("R-" + i, "Nom" + i, "Prenom", "r" + i + "@centre.tn", new Date()));
+            g.getEtudiants().add(e);
+            grade(e, a, grades[i][0]);
+            grade(e, b, grades[i][1]);
+        }
+        g = groupeRepository.save(g);
+
+        List<RankEntry> expected = ranking.ranked(ranking.forGroupe(g.getId()));
+        List<RankEntry> top = ranking.topOfGroupe(g.getId(), 4);
+        assertEquals(4, top.size());
+        for (int k = 0; k < top.size(); k++) {
+            assertSame(expected.get(k), top.get(k));
+        }
+        for (RankEntry e : expected) {
+            assertSame(e, ranking.rankInGroupe(g.getId(), e.getEtudiantId()));
+        }
+        assertNull(ranking.rankInGroupe(g.getId(), -1));
+    }
+
+    @Test
+    void aLoneStudentIsAtPercentileZero() {
+        Cours cours = coursRepository.save(new Cours("RANG3", "Seul", "d", null));
+        Etudiant e = etudiantRepository.save(new Etudiant("R-SEUL", "Nom", "Prenom", "rseul@centre.tn", new Date()));
+        grade(e, cours, 14);
+
+        RankEntry entry = ranking.rankInCours("RANG3", e.getId());
+        assertEquals(1, entry.getRang());
+        assertEquals(1, entry.getEffectif());
+        assertEquals(0.0, entry.getPercentile(), 1e-9);
+        assertEquals(14, entry.getMoyenne(), 1e-9);
+    }
+
+    // Enrolls the student; a negative grade leaves the course ungraded
+    private void grade(Etudiant e, Cours cours, int grade) {
+        inscriptionRepository.save(new Inscription(new Date(), e, cours));
+        if (grade < 0) return;
+        Note n = new Note(grade, grade, grade, e, cours);
+        n.setGraded(true);
+        noteRepository.save(n);
+    }
+
+    private static void assertSame(RankEntry expected, RankEntry actual) {
+        assertEquals(expected.getEtudiantId(), actual.getEtudiantId());
+        assertEquals(expected.getRang(), actual.getRang());
+        assertEquals(expected.getEffectif(), actual.getEffectif());
+        assertEquals(expected.getPercentile(), actual.getPercentile(), 1e-9);
+        assertEquals(expected.getMoyenne(), actual.getMoyenne(), 1e-9);
+    }
+}
@@ -0,0 +1,121 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.Principal;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import spring.jpa.controller.NoteRESTController;
+import spring.jpa.dto.CubeRow;
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.model.User;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.UserRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReportCubeServiceTests {
+
+    @Autowired
+    private ReportCubeService reportCubeService;
+
+    @Autowired
+    private NoteRESTController noteController;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataVersions dataVersions;
+
+    @Test
+    void anEnrollmentInTwoGroupesIsCountedOnceWithoutTheGroupe() {
+        Cours cours = coursRepository.save(new Cours("CUBE1", "Cube", "d", null));
+        Etudiant partage = etudiantRepository.save(new Etudiant("C-1", "Nom", "Prenom", "c1@centre.tn", new Date()));
+        Etudiant seul = etudiantRepository.save(new Etudiant("C-2", "Nom", "Prenom", "c2@centre.tn", new Date()));
+        inscriptionRepository.save(new Inscription(new Date(), partage, cours));
+        inscriptionRepository.save(new Inscription(new Date(), seul, cours));
+        Groupe a = groupe("Cube A", cours, partage, seul);
+        Groupe b = groupe("Cube B", cours, partage);
+
+        reportCubeService.rebuildAll();
+        assertEquals(2, byCours().getEffectif());
+        assertEquals(3, byGroupe().stream().mapToLong(CubeRow::getEffectif).sum());
+
+        // A grade arrives as a delta: counted once per groupe, once in the groupe-free cell
+        Principal admin = admin("cube-admin");
+        noteController.saveNote(new Note(16, 16, 16, partage, cours), admin);
+        CubeRow total = byCours();
+        assertEquals(2, total.getEffectif());
+        assertEquals(8, total.getMoyenne(), 1e-9);
+        assertEquals(16, rollup(EnumSet.of(ReportCubeService.Dimension.COURS), b.getId()).get(0).getMoyenne(), 1e-9);
+        assertEquals(8, rollup(EnumSet.of(ReportCubeService.Dimension.COURS), a.getId()).get(0).getMoyenne(), 1e-9);
+
+        // Leaving one groupe keeps the enrollment in the other; the rebuild
+        // runs after the groupe write and must itself outdate cached roll-ups
+        b.getEtudiants().clear();
+        groupeRepository.save(b);
+        String before = dataVersions.snapshot(ReportCache.CUBE);
+        reportCubeService.rebuildGroupe(b.getId());
+        assertNotEquals(before, dataVersions.snapshot(ReportCache.CUBE));
+        assertEquals(2, byCours().getEffectif());
+        assertEquals(8, byCours().getMoyenne(), 1e-9);
+    }
+
+    private CubeRow byCours() {
+        List<CubeRow> rows = rollup(EnumSet.of(ReportCubeService.Dimension.COURS), null);
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    private List<CubeRow> byGroupe() {
+        return rollup(EnumSet.of(ReportCubeService.Dimension.GROUPE), null);
+    }
+
+    private List<CubeRow> rollup(Set<ReportCubeService.Dimension> dims, Long groupeId) {
+        return reportCubeService.rollup(dims, null, null, groupeId, "CUBE1");
+    }
+
+    private Groupe groupe(String nom, Cours cours, Etudiant... etudiants) {
+        Groupe g = new Groupe(nom);
+        g.getCours().add(cours);
+        g.getEtudiants().addAll(List.of(etudiants));
+        return groupeRepository.save(g);
+    }
+
+    private Principal admin(String username) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("x");
+        u.setRole("ADMIN");
+        userRepository.save(u);
+        return () -> username;
+    }
+}
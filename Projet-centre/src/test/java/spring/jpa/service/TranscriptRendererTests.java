@@ -0,0 +1,87 @@
+package spring.jpa.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import spring.jpa.model.Cours;
+import spring.jpa.model.Etudiant;
+import spring.jpa.model.Groupe;
+import spring.jpa.model.Inscription;
+import spring.jpa.model.Note;
+import spring.jpa.repository.CoursRepository;
+import spring.jpa.repository.EtudiantRepository;
+import spring.jpa.repository.GroupeRepository;
+import spring.jpa.repository.InscriptionRepository;
+import spring.jpa.repository.NoteRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TranscriptRendererTests {
+
+    @Autowired
+    private TranscriptRenderer renderer;
+
+    @Autowired
+    private CoursRepository coursRepository;
+
+    @Autowired
+    private EtudiantRepository etudiantRepository;
+
+    @Autowired
+    private InscriptionRepository inscriptionRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private GroupeRepository groupeRepository;
+
+    @Test
+    void namesakesGetTheirOwnEntry() throws Exception {
+        Cours note = coursRepository.save(new Cours("REL1", "Note", "d", null));
+        Cours sansNote = coursRepository.save(new Cours("REL2", "Sans note", "d", null));
+        Groupe g = new Groupe("Releves");
+        g.getCours().addAll(List.of(note, sansNote));
+        for (int i = 0; i < 2; i++) {
+            // Same matricule and name: only the id tells them apart
+            Etudiant e = etudiantRepository.save(new Etudiant("HOMONYME", "Ben Ali", "Sami", "sami" + i + "@centre.tn", new Date()));
+            inscriptionRepository.save(new Inscription(new Date(), e, note));
+            inscriptionRepository.save(new Inscription(new Date(), e, sansNote));
+            Note n = new Note(12, 12, 12, e, note);
+            n.setGraded(true);
+            noteRepository.save(n);
+            g.getEtudiants().add(e);
+        }
+        g = groupeRepository.save(g);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, renderer.renderGroupe(g, out));
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                names.add(entry.getName());
+                // 12 in one course, ungraded (0) in the other: same average as the grade reports
+                String text = PdfTextExtractor.getTextFromPage(new PdfReader(zip.readAllBytes()), 1);
+                assertTrue(text.contains("Moyenne générale: 6.00"), text);
+            }
+        }
+        assertEquals(2, names.size());
+        assertNotEquals(names.get(0), names.get(1));
+    }
+}